@@ -0,0 +1,56 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+/**
+ * Username and password authentication against the user repository. Outdated password hashes are re-encoded
+ * in the background after a successful login (see AaaPasswordEncoders.scheduleUpgrade()), the default provider
+ * would hash the password a second time before the login returns.
+ */
+@Component
+public class AaaAuthenticationProvider extends DaoAuthenticationProvider {
+
+    @Autowired
+    private AaaPasswordEncoders passwordEncoders;
+    @Autowired
+    private UserDetailsManagerToUserRepositoryService userDetailsService;
+
+    @PostConstruct
+    public void init() {
+        setPasswordEncoder(passwordEncoders);
+        setUserDetailsService(userDetailsService);
+        // no UserDetailsPasswordService, the upgrade is scheduled in createSuccessAuthentication()
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication, UserDetails user) {
+        if (authentication.getCredentials() != null)
+            passwordEncoders.scheduleUpgrade(
+                    authentication.getCredentials().toString(),
+                    user.getPassword(),
+                    newPassword -> userDetailsService.updatePassword(user, newPassword));
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+}
@@ -18,6 +18,7 @@
 
 package de.mhus.ae.aaa;
 
+import de.mhus.commons.tree.ITreeNode;
 import de.mhus.commons.tree.MTree;
 import de.mhus.ae.config.AbstractUserRelatedConfig;
 import lombok.extern.slf4j.Slf4j;
@@ -25,7 +26,10 @@ import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Component
@@ -49,15 +53,47 @@ public class AaaConfiguration extends AbstractUserRelatedConfig {
     }
 
     public Set<String> getRoles(String resourceScope, String resourceName) {
-        final var values = config()
-                .getObject(resourceScope).orElse(MTree.EMPTY_MAP)
-                .getString(resourceName, null);
+        final var roles = resourceRoles(resourceScope, resourceName);
+        return roles == null ? null : roles.names();
+    }
+
+    /**
+     * Return the roles for the resource as mask or null if not configured.
+     */
+    public RoleMask getRoleMask(String resourceScope, String resourceName) {
+        final var roles = resourceRoles(resourceScope, resourceName);
+        return roles == null ? null : roles.mask();
+    }
+
+    private ResourceRoles resourceRoles(String resourceScope, String resourceName) {
+        final var roles = view(Roles.class, c -> new Roles(c, new ConcurrentHashMap<>()));
+        return roles.cache()
+                .computeIfAbsent(new RoleKey(resourceScope, resourceName), k -> {
+                    final var names = parseRoles(roles.config(), k);
+                    return Optional.ofNullable(names == null ? null : new ResourceRoles(names, RoleMask.of(names)));
+                })
+                .orElse(null);
+    }
+
+    private Set<String> parseRoles(ITreeNode config, RoleKey key) {
+        final var values = config
+                .getObject(key.scope()).orElse(MTree.EMPTY_MAP)
+                .getString(key.name(), null);
         if (values == null) return null;
         try {
             return Collections.unmodifiableSet(Arrays.stream(values.split(",")).map(v -> v.trim().toUpperCase()).collect(Collectors.toSet()) );
         } catch (Exception e) {
-            LOGGER.error("Can't create ROLE array for {} with {}", resourceName, values, e);
+            LOGGER.error("Can't create ROLE array for {} with {}", key.name(), values, e);
         }
         return null;
     }
+
+    private record Roles(ITreeNode config, Map<RoleKey, Optional<ResourceRoles>> cache) {
+    }
+
+    private record ResourceRoles(Set<String> names, RoleMask mask) {
+    }
+
+    private record RoleKey(String scope, String name) {
+    }
 }
@@ -17,6 +17,12 @@
  */
 package de.mhus.ae.aaa;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
@@ -27,17 +33,262 @@ import org.springframework.security.crypto.password.StandardPasswordEncoder;
 import org.springframework.security.crypto.scrypt.SCryptPasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+/**
+ * Password encoders with an optional cache of successful verifications and an optional bounded executor
+ * (kt2l.aaa.passwordVerify.threads, disabled by default) for the (deliberately slow) hash checks. If the
+ * executor is saturated the verification fails with an AuthenticationServiceException.
+ * The cache is keyed by an HMAC with a per process random key over the
+ * encoded and the raw password, so it holds no password material and a password change invalidates it.
+ * Only successful verifications are cached.
+ * <p>
+ * If kt2l.aaa.passwordUpgrade.enabled is set, the cost of all encoders is measured at startup and the target
+ * encoder is tuned to about targetMillis per verification (bcrypt strength). New passwords are encoded with the
+ * tuned encoder and needsUpgrade() reports weak hashes (noop, sha256) and bcrypt hashes with a lower strength.
+ * AaaAuthenticationProvider schedules them with scheduleUpgrade() after a successful login, they are re-encoded
+ * on a single background thread and stored with the UserDetailsPasswordService, the login does not wait for it.
+ * Hashes of other adaptive encoders are never downgraded.
+ */
+@Slf4j
 @Component
 public class AaaPasswordEncoders extends DelegatingPasswordEncoder implements PasswordEncoder {
 
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    @Value("${kt2l.aaa.passwordCache.enabled:false}")
+    private boolean cacheEnabled;
+    @Value("${kt2l.aaa.passwordCache.ttlSeconds:60}")
+    private long cacheTtlSeconds;
+    @Value("${kt2l.aaa.passwordCache.maxSize:1000}")
+    private int cacheMaxSize;
+    @Value("${kt2l.aaa.passwordVerify.threads:0}")
+    private int verifyThreads;
+    @Value("${kt2l.aaa.passwordVerify.queueSize:100}")
+    private int verifyQueueSize;
+
+    @Value("${kt2l.aaa.passwordUpgrade.enabled:false}")
+    private boolean upgradeEnabled;
+    @Value("${kt2l.aaa.passwordUpgrade.encoder:bcrypt}")
+    private String upgradeEncoderId;
+    @Value("${kt2l.aaa.passwordUpgrade.targetMillis:100}")
+    private long upgradeTargetMillis;
+
+    private final Map<String, PasswordEncoder> encoders;
+    private final Map<String, Long> verified = new ConcurrentHashMap<>();
+    private volatile PasswordEncoder upgradeEncoder;
+    private volatile int upgradeBCryptStrength = -1;
+    @Getter
+    private volatile Map<String, Double> encoderCosts = Map.of();
+    private SecretKeySpec cacheKey;
+    private ThreadPoolExecutor executor;
+    private ThreadPoolExecutor upgradeExecutor;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
     public AaaPasswordEncoders() {
-        super(System.getenv().getOrDefault("KT2L_DEFAULT_PASSWORD_ENCODER", "sha256"), createEncoderList());
+        this(createEncoderList());
+    }
+
+    private AaaPasswordEncoders(Map<String, PasswordEncoder> encoders) {
+        super(System.getenv().getOrDefault("KT2L_DEFAULT_PASSWORD_ENCODER", "sha256"), encoders);
+        this.encoders = encoders;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (cacheEnabled) {
+            final var key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            cacheKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+        }
+        if (verifyThreads > 0) {
+            final var counter = new AtomicInteger();
+            executor = new ThreadPoolExecutor(verifyThreads, verifyThreads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(verifyQueueSize),
+                    r -> Thread.ofPlatform().daemon().name("password-verify-" + counter.incrementAndGet()).unstarted(r),
+                    new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+        }
+        LOGGER.debug("Password verification cache {}, {} verify threads", cacheEnabled ? "enabled" : "disabled", verifyThreads);
+        if (upgradeEnabled) {
+            if (!encoders.containsKey(upgradeEncoderId))
+                LOGGER.warn("Password upgrade encoder {} not found, upgrade disabled", upgradeEncoderId);
+            else {
+                // upgrades are best effort, if the queue is full the hash is upgraded at one of the next logins
+                upgradeExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(verifyQueueSize),
+                        r -> Thread.ofPlatform().daemon().name("password-upgrade").unstarted(r),
+                        new ThreadPoolExecutor.DiscardPolicy());
+                upgradeExecutor.allowCoreThreadTimeOut(true);
+                Thread.ofPlatform().daemon().name("password-tuning").start(this::tuneEncoders);
+            }
+        }
+    }
+
+    private void tuneEncoders() {
+        try {
+            if ("bcrypt".equals(upgradeEncoderId)) {
+                final var strength = PasswordEncoderTuning.tuneBCryptStrength(upgradeTargetMillis);
+                upgradeEncoder = new BCryptPasswordEncoder(strength);
+                upgradeBCryptStrength = strength;
+                LOGGER.info("Password upgrade to bcrypt with strength {} for {}ms", strength, upgradeTargetMillis);
+            } else {
+                upgradeEncoder = encoders.get(upgradeEncoderId);
+                LOGGER.info("Password upgrade to {}", upgradeEncoderId);
+            }
+            final var costs = new TreeMap<>(PasswordEncoderTuning.measure(encoders, 3));
+            costs.put(upgradeEncoderId + " (upgrade)", PasswordEncoderTuning.measure(upgradeEncoder, 3));
+            encoderCosts = Collections.unmodifiableMap(costs);
+            costs.forEach((id, millis) -> LOGGER.info("Password encoder {}: {}ms per verification", id, String.format("%.2f", millis)));
+        } catch (Exception e) {
+            LOGGER.error("Password encoder tuning failed", e);
+        }
+    }
+
+    /**
+     * Return true if the encoded password is weaker than the current upgrade encoder, see
+     * PasswordEncoderTuning.needsUpgrade().
+     */
+    public boolean needsUpgrade(String prefixEncodedPassword) {
+        if (upgradeEncoder == null) return false;
+        return PasswordEncoderTuning.needsUpgrade(prefixEncodedPassword, upgradeEncoderId, upgradeBCryptStrength);
+    }
+
+    /**
+     * Re-encode the raw password with the upgrade encoder in the background and pass the new hash to the
+     * consumer. Does nothing if the encoded password needs no upgrade.
+     */
+    public void scheduleUpgrade(CharSequence rawPassword, String prefixEncodedPassword, Consumer<String> upgraded) {
+        final var executor = upgradeExecutor;
+        if (executor == null || rawPassword == null || !needsUpgrade(prefixEncodedPassword)) return;
+        final var password = rawPassword.toString();
+        executor.execute(() -> {
+            try {
+                upgraded.accept(encode(password));
+            } catch (Exception e) {
+                LOGGER.warn("Password upgrade failed", e);
+            }
+        });
+    }
+
+    @Override
+    public boolean upgradeEncoding(String prefixEncodedPassword) {
+        // upgrades are scheduled by AaaAuthenticationProvider, the default provider would re-encode in the login request
+        return false;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        final var encoder = upgradeEncoder;
+        if (encoder == null)
+            return super.encode(rawPassword);
+        return "{" + upgradeEncoderId + "}" + encoder.encode(rawPassword);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null)
+            executor.shutdownNow();
+        if (upgradeExecutor != null)
+            upgradeExecutor.shutdownNow();
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String prefixEncodedPassword) {
+        if (rawPassword == null || prefixEncodedPassword == null)
+            return super.matches(rawPassword, prefixEncodedPassword);
+        final var key = cacheKey == null ? null : cacheKey(rawPassword, prefixEncodedPassword);
+        if (key != null) {
+            final var expires = verified.get(key);
+            if (expires != null) {
+                if (expires > System.currentTimeMillis()) {
+                    cacheHits.incrementAndGet();
+                    return true;
+                }
+                verified.remove(key, expires);
+            }
+        }
+        final var matches = verify(rawPassword, prefixEncodedPassword);
+        if (matches && key != null)
+            putVerified(key);
+        return matches;
+    }
+
+    private boolean verify(CharSequence rawPassword, String prefixEncodedPassword) {
+        if (executor == null)
+            return super.matches(rawPassword, prefixEncodedPassword);
+        try {
+            return executor.submit(() -> super.matches(rawPassword, prefixEncodedPassword)).get();
+        } catch (RejectedExecutionException e) {
+            // not a wrong password, the login must fail as service error and not count as bad credentials
+            rejected.incrementAndGet();
+            LOGGER.warn("Password verification rejected, too many pending verifications");
+            throw new AuthenticationServiceException("Too many pending password verifications", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Interrupted while verifying password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void putVerified(String key) {
+        final var now = System.currentTimeMillis();
+        if (verified.size() >= cacheMaxSize) {
+            verified.values().removeIf(expires -> expires <= now);
+            if (verified.size() >= cacheMaxSize)
+                verified.clear();
+        }
+        verified.put(key, now + cacheTtlSeconds * 1000);
+    }
+
+    private String cacheKey(CharSequence rawPassword, String prefixEncodedPassword) {
+        try {
+            final var mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(cacheKey);
+            mac.update(prefixEncodedPassword.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Base64.getEncoder().encodeToString(mac.doFinal(rawPassword.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            LOGGER.warn("Can't create password cache key", e);
+            return null;
+        }
+    }
+
+    public void clearCache() {
+        verified.clear();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getRejectedVerifications() {
+        return rejected.get();
     }
 
-    private static Map<String, PasswordEncoder> createEncoderList() {
+    static Map<String, PasswordEncoder> createEncoderList() {
         Map encoders = new HashMap();
         encoders.put("bcrypt", new BCryptPasswordEncoder());
         encoders.put("noop", NoOpPasswordEncoder.getInstance());
@@ -25,7 +25,6 @@ import lombok.ToString;
 import java.util.Collection;
 import java.util.Set;
 
-@Builder
 @ToString
 @EqualsAndHashCode
 public class AaaUser {
@@ -45,6 +44,21 @@ public class AaaUser {
     private String provider;
     @Getter
     private String providerId;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile RoleMask roleMask;
+
+    @Builder
+    private AaaUser(String userId, String displayName, String encodedPassword, String email, String imageUrl, Collection<String> roles, String provider, String providerId) {
+        this.userId = userId;
+        this.displayName = displayName;
+        this.encodedPassword = encodedPassword;
+        this.email = email;
+        this.imageUrl = imageUrl;
+        this.roles = roles;
+        this.provider = provider;
+        this.providerId = providerId;
+    }
 
 //    public static AaaUser copy(AaaUser user) {
 //        return new AaaUser(
@@ -121,7 +135,28 @@ public class AaaUser {
         encodedPassword = newEncodedPassword;
     }
 
+    /**
+     * Return a copy of the user with the new password, the user object itself is not changed.
+     */
+    public AaaUser withEncodedPassword(String oldPassword, String newEncodedPassword) {
+        if (!validatePlainPassword(oldPassword))
+            throw new IllegalArgumentException("Old password is not correct");
+        return new AaaUser(userId, displayName, newEncodedPassword, email, imageUrl, roles, provider, providerId);
+    }
+
     public String getEncodedPassword() {
         return encodedPassword;
     }
+
+    /**
+     * Return the roles of the user as mask, created on first use.
+     */
+    public RoleMask getRoleMask() {
+        var mask = roleMask;
+        if (mask == null) {
+            mask = RoleMask.of(roles);
+            roleMask = mask;
+        }
+        return mask;
+    }
 }
@@ -33,4 +33,28 @@ public interface AaaUserRepository {
     Optional<AaaUser> getUserByUserId(String userId);
 
     Optional<AaaUser> getByEmail(String email);
+
+    /**
+     * Return the user for the external provider id, empty if not found or not supported by the repository.
+     */
+    default Optional<AaaUser> getByProvider(String provider, String providerId) {
+        return Optional.empty();
+    }
+
+    /**
+     * Create the user if it not exists, otherwise update the existing user.
+     */
+    default AaaUser createOrUpdateUser(AaaUser user) {
+        if (userExists(user.getUserId()))
+            return updateUser(user);
+        return createUser(user);
+    }
+
+    /**
+     * Replace the encoded password after a hash upgrade if the user still has the old encoded password.
+     * Return false if the password was changed meanwhile or the upgrade is not supported by the repository.
+     */
+    default boolean upgradeEncodedPassword(String userId, String oldEncodedPassword, String newEncodedPassword) {
+        return false;
+    }
 }
@@ -19,30 +19,41 @@ package de.mhus.ae.aaa;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Concurrent in memory user store. Users are stored as snapshots and replaced on change, never modified.
+ * Secondary indexes on email and (provider, providerId) are maintained on every change of the primary map.
+ * An email can be shared by more than one user, the email index holds all of them in the order they took the email.
+ */
 @Slf4j
 public class InMemoryUserRepository extends AbstractUserRepository {
 
-    private final Map<String, AaaUser> users = Collections.synchronizedMap(new HashMap<>());
+    private final Map<String, AaaUser> users = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> userIdsByEmail = new ConcurrentHashMap<>();
+    private final Map<ProviderKey, String> userIdsByProvider = new ConcurrentHashMap<>();
 
     @Override
     public void deleteUser(String userId) {
         LOGGER.info("Delete user: {}", userId);
-        users.remove(userId);
+        users.computeIfPresent(userId, (id, current) -> {
+            unindex(current);
+            return null;
+        });
     }
 
     @Override
     public void changePassword(String oldPassword, String newPassword) {
         var userId = SecurityContext.lookupUserId();
         LOGGER.info("Change password for user: {}", userId);
-        var user = users.get(userId);
-        if (user == null)
+        var updated = users.computeIfPresent(userId, (id, current) -> current.withEncodedPassword(oldPassword, newPassword));
+        if (updated == null)
             throw new IllegalArgumentException("User not found: " + userId);
-        user.setEncodedPassword(oldPassword, newPassword);
     }
 
     @Override
@@ -57,18 +68,128 @@ public class InMemoryUserRepository extends AbstractUserRepository {
 
     @Override
     public Optional<AaaUser> getByEmail(String email) {
-        return users.values().stream().filter(u -> email.equals(u.getEmail())).findFirst();
+        if (email == null) return Optional.empty();
+        final var userIds = userIdsByEmail.get(email);
+        if (userIds == null) return Optional.empty();
+        // the user who took the email first wins, later users do not take over the login
+        if (userIds.size() > 1)
+            LOGGER.warn("Email {} is used by more than one user: {}", email, userIds);
+        return getUserByUserId(userIds.getFirst());
+    }
+
+    @Override
+    public Optional<AaaUser> getByProvider(String provider, String providerId) {
+        if (provider == null || providerId == null) return Optional.empty();
+        final var userId = userIdsByProvider.get(new ProviderKey(provider, providerId));
+        return userId == null ? Optional.empty() : getUserByUserId(userId);
+    }
+
+    @Override
+    public AaaUser updateUser(AaaUser user) {
+        // update in one step, concurrent updates of the same user are not lost
+        final var result = new AaaUser[1];
+        final var found = users.computeIfPresent(user.getUserId(), (id, current) -> {
+            var updated = AaaUser.update(current, user);
+            result[0] = updated;
+            // do not update if nothing changed
+            if (current.equals(updated))
+                return current;
+            LOGGER.info("Update user: {}", updated);
+            reindex(current, updated);
+            return updated;
+        });
+        if (found == null)
+            throw new IllegalArgumentException("User not found: " + user.getUserId());
+        return result[0];
+    }
+
+    @Override
+    public AaaUser createOrUpdateUser(AaaUser user) {
+        return users.compute(user.getUserId(), (id, current) -> {
+            if (current == null) {
+                var copy = AaaUser.copyNice(user);
+                LOGGER.info("Create user: {}", copy);
+                index(copy);
+                return copy;
+            }
+            var updated = AaaUser.update(current, user);
+            if (current.equals(updated))
+                return current;
+            LOGGER.info("Update user: {}", updated);
+            reindex(current, updated);
+            return updated;
+        });
     }
 
     @Override
     protected void internalCreateUser(AaaUser user) {
         LOGGER.info("Create user: {}", user);
-        users.put(user.getUserId(), user);
+        final var existing = users.putIfAbsent(user.getUserId(), user);
+        if (existing != null)
+            throw new IllegalArgumentException("User already exists: " + user.getUserId());
+        index(user);
     }
 
     @Override
     protected void internalUpdateUser(AaaUser updatedUser) {
         LOGGER.info("Update user: {}", updatedUser);
-        users.put(updatedUser.getUserId(), updatedUser);
+        final var current = users.put(updatedUser.getUserId(), updatedUser);
+        if (current != null)
+            reindex(current, updatedUser);
+        else
+            index(updatedUser);
+    }
+
+    @Override
+    public boolean upgradeEncodedPassword(String userId, String oldEncodedPassword, String newEncodedPassword) {
+        if (userId == null || oldEncodedPassword == null || newEncodedPassword == null) return false;
+        final var changed = new boolean[1];
+        users.computeIfPresent(userId, (id, current) -> {
+            if (!oldEncodedPassword.equals(current.getEncodedPassword()))
+                return current;
+            changed[0] = true;
+            return current.withEncodedPassword(oldEncodedPassword, newEncodedPassword);
+        });
+        return changed[0];
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    private void reindex(AaaUser current, AaaUser updated) {
+        if (!Objects.equals(current.getEmail(), updated.getEmail())
+                || !Objects.equals(current.getProvider(), updated.getProvider())
+                || !Objects.equals(current.getProviderId(), updated.getProviderId()))
+            unindex(current);
+        index(updated);
+    }
+
+    private void index(AaaUser user) {
+        if (user.getEmail() != null)
+            userIdsByEmail.compute(user.getEmail(), (email, userIds) -> {
+                if (userIds == null) return List.of(user.getUserId());
+                if (userIds.contains(user.getUserId())) return userIds;
+                var copy = new ArrayList<>(userIds);
+                copy.add(user.getUserId());
+                return List.copyOf(copy);
+            });
+        if (user.getProvider() != null && user.getProviderId() != null)
+            userIdsByProvider.put(new ProviderKey(user.getProvider(), user.getProviderId()), user.getUserId());
+    }
+
+    private void unindex(AaaUser user) {
+        if (user.getEmail() != null)
+            userIdsByEmail.computeIfPresent(user.getEmail(), (email, userIds) -> {
+                if (!userIds.contains(user.getUserId())) return userIds;
+                var copy = new ArrayList<>(userIds);
+                copy.remove(user.getUserId());
+                return copy.isEmpty() ? null : List.copyOf(copy);
+            });
+        if (user.getProvider() != null && user.getProviderId() != null)
+            userIdsByProvider.remove(new ProviderKey(user.getProvider(), user.getProviderId()), user.getUserId());
+    }
+
+    private record ProviderKey(String provider, String providerId) {
     }
 }
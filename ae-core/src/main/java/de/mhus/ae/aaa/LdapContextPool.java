@@ -0,0 +1,109 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.naming.NamingException;
+import javax.naming.ldap.LdapContext;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of LDAP contexts. At most maxSize contexts are open, idle contexts are reused. Contexts
+ * failed with a NamingException are closed by invalidate() and not returned to the pool.
+ */
+@Slf4j
+class LdapContextPool implements AutoCloseable {
+
+    private final ContextFactory factory;
+    private final BlockingQueue<LdapContext> idle;
+    private final Semaphore permits;
+    private final long timeoutMillis;
+    private volatile boolean closed;
+
+    LdapContextPool(ContextFactory factory, int maxSize, long timeoutMillis) {
+        this.factory = factory;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+        this.permits = new Semaphore(maxSize, true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    LdapContext borrow() throws NamingException {
+        if (closed)
+            throw new IllegalStateException("LDAP context pool closed");
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS))
+                throw new IllegalStateException("No LDAP context available after " + timeoutMillis + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for LDAP context", e);
+        }
+        final var context = idle.poll();
+        if (context != null)
+            return context;
+        try {
+            return factory.create();
+        } catch (NamingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(LdapContext context) {
+        if (closed || !idle.offer(context))
+            closeQuietly(context);
+        permits.release();
+    }
+
+    void invalidate(LdapContext context) {
+        closeQuietly(context);
+        permits.release();
+    }
+
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LdapContext context;
+        while ((context = idle.poll()) != null)
+            closeQuietly(context);
+    }
+
+    private static void closeQuietly(LdapContext context) {
+        try {
+            context.close();
+        } catch (NamingException e) {
+            LOGGER.debug("Close LDAP context failed", e);
+        }
+    }
+
+    @FunctionalInterface
+    interface ContextFactory {
+        LdapContext create() throws NamingException;
+    }
+}
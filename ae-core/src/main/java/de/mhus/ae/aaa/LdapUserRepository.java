@@ -18,117 +18,338 @@
 package de.mhus.ae.aaa;
 
 import de.mhus.ae.aaa.oauth2.AuthProvider;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
-import javax.naming.NamingEnumeration;
+import javax.naming.CommunicationException;
 import javax.naming.NamingException;
 import javax.naming.directory.Attributes;
-import javax.naming.directory.DirContext;
-import javax.naming.directory.InitialDirContext;
 import javax.naming.directory.SearchControls;
-import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Read only user repository backed by LDAP. Contexts are taken from a bounded pool, found and not found users
+ * are cached for a limited time in a LRU cache of at most cacheSize entries. With prefetch enabled all users
+ * of the group context are loaded at startup and reloaded every prefetchRefreshSeconds, prefetched users are
+ * not subject to the cache size and TTL. The environment is read once at startup:
+ * <ul>
+ *     <li>LDAP_ENV_* - JNDI environment, e.g. LDAP_ENV_JAVA_NAMING_PROVIDER_URL for java.naming.provider.url</li>
+ *     <li>LDAP_GROUP_CONTEXT - search base</li>
+ *     <li>LDAP_USER_ID, LDAP_USER_NAME, LDAP_USER_EMAIL, LDAP_USER_ROLES, LDAP_USER_PASSWORD - attribute names</li>
+ *     <li>LDAP_ATTRIBUTES - comma separated list of attributes to return</li>
+ * </ul>
+ */
+@Slf4j
 @Component
 @ConditionalOnProperty(value = "kt2l.aaa.ldapUserRepository", havingValue = "true")
 public class LdapUserRepository extends AbstractUserRepository {
 
-    private DirContext context;
-    private String group;
+    @Value("${kt2l.aaa.ldap.poolSize:8}")
+    private int poolSize;
+    @Value("${kt2l.aaa.ldap.poolTimeoutMillis:5000}")
+    private long poolTimeoutMillis;
+    @Value("${kt2l.aaa.ldap.cacheTtlSeconds:300}")
+    private long cacheTtlSeconds;
+    @Value("${kt2l.aaa.ldap.negativeCacheTtlSeconds:30}")
+    private long negativeCacheTtlSeconds;
+    @Value("${kt2l.aaa.ldap.cacheSize:10000}")
+    private int cacheSize;
+    @Value("${kt2l.aaa.ldap.prefetch:false}")
+    private boolean prefetch;
+    @Value("${kt2l.aaa.ldap.prefetchRefreshSeconds:3600}")
+    private long prefetchRefreshSeconds;
+    @Value("${kt2l.aaa.ldap.pageSize:500}")
+    private int pageSize;
 
-    @Override
-    protected void internalCreateUser(AaaUser user) {
-        initLdapContext();
+    private LdapSettings settings;
+    private LdapContextPool pool;
+    private Map<String, CachedUser> usersById;
+    private Map<String, CachedUser> usersByEmail;
+    private volatile Map<String, AaaUser> prefetchedById = Map.of();
+    private volatile Map<String, AaaUser> prefetchedByEmail = Map.of();
+    private ScheduledExecutorService prefetchExecutor;
 
+    @PostConstruct
+    public void init() {
+        init(System.getenv());
     }
 
-    private synchronized void initLdapContext() {
-        if (context == null) {
-            try {
-                var env = new Hashtable<String, String>();
-                System.getenv().forEach((k, v) -> {
-                    if (k.startsWith("LDAP_ENV_")) {
-                        k = k.substring(9).toLowerCase().replace('_', '.').toLowerCase();
-                    }
-                });
-                context = new InitialDirContext(env);
-                group = System.getenv("LDAP_GROUP_CONTEXT");
-            } catch (NamingException e) {
-                throw new RuntimeException(e);
-            }
+    void init(Map<String, String> env) {
+        settings = LdapSettings.fromEnvironment(env);
+        pool = new LdapContextPool(() -> new InitialLdapContext(settings.environment(), null), poolSize, poolTimeoutMillis);
+        usersById = createCache();
+        usersByEmail = createCache();
+        if (prefetch) {
+            prefetchExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("ldap-prefetch").factory());
+            if (prefetchRefreshSeconds > 0)
+                prefetchExecutor.scheduleWithFixedDelay(this::prefetchUsers, 0, prefetchRefreshSeconds, TimeUnit.SECONDS);
+            else
+                prefetchExecutor.execute(this::prefetchUsers);
         }
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (prefetchExecutor != null)
+            prefetchExecutor.shutdownNow();
+        if (pool != null)
+            pool.close();
+    }
+
+    private Map<String, CachedUser> createCache() {
+        // access ordered, the least recently used entry is evicted once cacheSize is exceeded
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
     @Override
-    protected void internalUpdateUser(AaaUser updatedUser) {
-        initLdapContext();
+    protected void internalCreateUser(AaaUser user) {
+        LOGGER.warn("Create user {} not supported by LDAP repository", user.getUserId());
+    }
 
+    @Override
+    protected void internalUpdateUser(AaaUser updatedUser) {
+        LOGGER.warn("Update user {} not supported by LDAP repository", updatedUser.getUserId());
+        invalidate(updatedUser.getUserId());
     }
 
     @Override
     public void deleteUser(String userId) {
-        initLdapContext();
-
+        LOGGER.warn("Delete user {} not supported by LDAP repository", userId);
+        invalidate(userId);
     }
 
     @Override
     public void changePassword(String oldPassword, String newPassword) {
-        initLdapContext();
-
+        LOGGER.warn("Change password not supported by LDAP repository");
     }
 
     @Override
     public boolean userExists(String userId) {
-        initLdapContext();
-        return false;
+        return getUserByUserId(userId).isPresent();
     }
 
     @Override
     public Optional<AaaUser> getUserByUserId(String userId) {
-        initLdapContext();
-        var searchControls = getSearchControls();
+        if (userId == null) return Optional.empty();
+        return lookup(usersById, prefetchedById, userId, settings.userIdAttribute());
+    }
+
+    @Override
+    public Optional<AaaUser> getByEmail(String email) {
+        if (email == null || settings.emailAttribute() == null) return Optional.empty();
+        return lookup(usersByEmail, prefetchedByEmail, email, settings.emailAttribute());
+    }
+
+    /**
+     * Remove the user from the cache, the next access will search the directory again.
+     */
+    public void invalidate(String userId) {
+        final var cached = usersById.remove(userId);
+        if (cached != null && cached.user() != null && cached.user().getEmail() != null)
+            usersByEmail.remove(cached.user().getEmail());
+        synchronized (this) {
+            final var prefetched = prefetchedById.get(userId);
+            if (prefetched == null) return;
+            prefetchedById = without(prefetchedById, userId);
+            if (prefetched.getEmail() != null)
+                prefetchedByEmail = without(prefetchedByEmail, prefetched.getEmail());
+        }
+    }
+
+    /**
+     * Drop all cached and prefetched users, prefetched users are loaded again with the next refresh.
+     */
+    public void clearCache() {
+        usersById.clear();
+        usersByEmail.clear();
+        synchronized (this) {
+            prefetchedById = Map.of();
+            prefetchedByEmail = Map.of();
+        }
+    }
+
+    private static Map<String, AaaUser> without(Map<String, AaaUser> map, String key) {
+        final var copy = new HashMap<>(map);
+        copy.remove(key);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private Optional<AaaUser> lookup(Map<String, CachedUser> cache, Map<String, AaaUser> prefetched, String key, String attribute) {
+        final var prefetchedUser = prefetched.get(key);
+        if (prefetchedUser != null)
+            return Optional.of(prefetchedUser);
+        final var now = System.currentTimeMillis();
+        final var cached = cache.get(key);
+        if (cached != null && cached.expires() > now)
+            return Optional.ofNullable(cached.user());
+        final var user = search(attribute, key);
+        if (user == null)
+            cache.put(key, new CachedUser(null, now + negativeCacheTtlSeconds * 1000));
+        else
+            cache(user, now);
+        return Optional.ofNullable(user);
+    }
+
+    private void cache(AaaUser user, long now) {
+        final var entry = new CachedUser(user, now + cacheTtlSeconds * 1000);
+        usersById.put(user.getUserId(), entry);
+        if (user.getEmail() != null)
+            usersByEmail.put(user.getEmail(), entry);
+    }
+
+    private AaaUser search(String attribute, String value) {
+        LdapContext context = null;
         try {
-            NamingEnumeration<SearchResult> answer = context.search(group, System.getenv("LDAP_USER_ID") + "=" + userId, searchControls);
-            if (answer.hasMore()) {
-                return Optional.of(toAaaUser(answer.next().getAttributes()));
+            context = pool.borrow();
+            // filter arguments are escaped by the directory context
+            final var answer = context.search(settings.groupContext(), "(" + attribute + "={0})", new Object[] {value}, settings.searchControls());
+            try {
+                return answer.hasMore() ? toAaaUser(answer.next().getAttributes()) : null;
+            } finally {
+                answer.close();
             }
         } catch (NamingException e) {
+            if (e instanceof CommunicationException && context != null) {
+                pool.invalidate(context);
+                context = null;
+            }
             throw new RuntimeException(e);
+        } finally {
+            if (context != null)
+                pool.release(context);
         }
-        return Optional.empty();
     }
 
-    private AaaUser toAaaUser(Attributes attributes) {
+    /**
+     * Load all users of the group context page by page and replace the prefetched users at once. If the
+     * search fails the previous prefetched users are kept.
+     */
+    private void prefetchUsers() {
+        final var start = System.currentTimeMillis();
+        final var byId = new HashMap<String, AaaUser>();
+        final var byEmail = new HashMap<String, AaaUser>();
+        var count = 0;
+        LdapContext context = null;
         try {
-            return AaaUser.builder()
-                    .userId(attributes.get(System.getenv("LDAP_USER_ID")).get().toString())
-                    .displayName(attributes.get(System.getenv("LDAP_USER_NAME")).get().toString())
-                    .email(attributes.get(System.getenv("LDAP_USER_EMAIL")).get().toString())
-                    .roles(List.of(attributes.get(System.getenv("LDAP_USER_ROLES")).get().toString().split(",")))
-                    .encodedPassword(attributes.get(System.getenv("LDAP_USER_PASSWORD")).get().toString()) //xxx
-                    .providerId(attributes.get(System.getenv("LDAP_USER_ID") + "@local").get().toString())
-                    .provider(AuthProvider.LOCAL_AUTH_PROVIDER_ID)
-                    .build();
-        } catch (NamingException e) {
-            throw new RuntimeException(e);
+            context = pool.borrow();
+            byte[] cookie = null;
+            do {
+                context.setRequestControls(new Control[] {new PagedResultsControl(pageSize, cookie, Control.CRITICAL)});
+                final var answer = context.search(settings.groupContext(), "(" + settings.userIdAttribute() + "=*)", settings.searchControls());
+                while (answer.hasMore()) {
+                    final var user = toAaaUser(answer.next().getAttributes());
+                    if (user.getUserId() == null) continue;
+                    byId.put(user.getUserId(), user);
+                    if (user.getEmail() != null)
+                        byEmail.put(user.getEmail(), user);
+                    count++;
+                }
+                answer.close();
+                cookie = null;
+                final var controls = context.getResponseControls();
+                if (controls != null)
+                    for (var control : controls)
+                        if (control instanceof PagedResultsResponseControl paged)
+                            cookie = paged.getCookie();
+            } while (cookie != null && cookie.length > 0);
+            context.setRequestControls(null);
+            synchronized (this) {
+                prefetchedById = Collections.unmodifiableMap(byId);
+                prefetchedByEmail = Collections.unmodifiableMap(byEmail);
+            }
+            LOGGER.info("Prefetched {} LDAP users in {}ms", count, System.currentTimeMillis() - start);
+        } catch (NamingException | IOException | RuntimeException e) {
+            LOGGER.error("Prefetch of LDAP users failed after {} users", count, e);
+            if (context != null) {
+                pool.invalidate(context);
+                context = null;
+            }
+        } finally {
+            if (context != null)
+                pool.release(context);
         }
     }
 
-    @Override
-    public Optional<AaaUser> getByEmail(String email) {
-        initLdapContext();
-        return Optional.empty();
+    private AaaUser toAaaUser(Attributes attributes) throws NamingException {
+        final var userId = value(attributes, settings.userIdAttribute());
+        final var roles = value(attributes, settings.rolesAttribute());
+        return AaaUser.builder()
+                .userId(userId)
+                .displayName(value(attributes, settings.nameAttribute()))
+                .email(value(attributes, settings.emailAttribute()))
+                .roles(roles == null ? List.of() : List.of(roles.split(",")))
+                .encodedPassword(value(attributes, settings.passwordAttribute()))
+                .providerId(userId)
+                .provider(AuthProvider.LOCAL_AUTH_PROVIDER_ID)
+                .build();
     }
 
-    private static SearchControls getSearchControls() {
-        SearchControls cons = new SearchControls();
-        cons.setSearchScope(SearchControls.SUBTREE_SCOPE);
-        String[] attrIDs = System.getenv("LDAP_ATTRIBUTES").split(",");
-        cons.setReturningAttributes(attrIDs);
-        return cons;
+    private static String value(Attributes attributes, String name) throws NamingException {
+        if (name == null) return null;
+        final var attribute = attributes.get(name);
+        if (attribute == null) return null;
+        final var value = attribute.get();
+        return value == null ? null : value.toString();
+    }
+
+    private record CachedUser(AaaUser user, long expires) {
+    }
+
+    private record LdapSettings(
+            Hashtable<String, String> environment,
+            String groupContext,
+            String userIdAttribute,
+            String nameAttribute,
+            String emailAttribute,
+            String rolesAttribute,
+            String passwordAttribute,
+            SearchControls searchControls) {
+
+        static LdapSettings fromEnvironment(Map<String, String> env) {
+            final var environment = new Hashtable<String, String>();
+            env.forEach((k, v) -> {
+                if (k.startsWith("LDAP_ENV_"))
+                    environment.put(k.substring(9).toLowerCase().replace('_', '.'), v);
+            });
+            final var searchControls = new SearchControls();
+            searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+            final var attributes = env.get("LDAP_ATTRIBUTES");
+            if (attributes != null)
+                searchControls.setReturningAttributes(attributes.split(","));
+            return new LdapSettings(
+                    environment,
+                    env.getOrDefault("LDAP_GROUP_CONTEXT", ""),
+                    env.getOrDefault("LDAP_USER_ID", "uid"),
+                    env.get("LDAP_USER_NAME"),
+                    env.get("LDAP_USER_EMAIL"),
+                    env.get("LDAP_USER_ROLES"),
+                    env.get("LDAP_USER_PASSWORD"),
+                    searchControls);
+        }
     }
 
 }
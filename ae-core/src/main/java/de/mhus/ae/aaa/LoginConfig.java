@@ -0,0 +1,39 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled login configuration, see LoginConfiguration.
+ */
+public record LoginConfig(
+        boolean autoLogin,
+        boolean autoLoginLocalhostOnly,
+        String autoLoginUser,
+        boolean localAuthEnabled,
+        boolean oauth2Enabled,
+        List<LoginConfiguration.OAuthProvider> oauth2Providers,
+        Map<String, LoginConfiguration.OAuthProvider> oauth2ProvidersById,
+        List<LoginConfiguration.OAuthAccepted> oauth2Accept,
+        String redirectUrl,
+        String loginText,
+        boolean showLoginHeader,
+        String userRepositoryClass) {
+}
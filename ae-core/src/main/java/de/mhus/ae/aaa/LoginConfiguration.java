@@ -22,19 +22,30 @@ import de.mhus.commons.tree.ITreeNode;
 import de.mhus.commons.tree.MTree;
 import de.mhus.ae.config.AbstractSingleConfig;
 import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import static de.mhus.commons.tools.MString.isEmpty;
 import static de.mhus.commons.tools.MString.isSet;
 
+@Slf4j
 @Component
 public class LoginConfiguration extends AbstractSingleConfig {
 
+    private static final int MAX_ACCEPT_CACHE_SIZE = 10000;
     private static String autoLoginPassword;
+    private volatile AcceptCache acceptCache;
 
     public LoginConfiguration() {
         super("login", true);
@@ -53,15 +64,15 @@ public class LoginConfiguration extends AbstractSingleConfig {
     }
 
     public boolean isAutoLogin() {
-        return config().getBoolean("autoLogin", false);
+        return login().autoLogin();
     }
 
     public boolean isAutoLoginLocalhostOnly() {
-        return config().getBoolean("autoLoginLocalhostOnly", true);
+        return login().autoLoginLocalhostOnly();
     }
 
     public String getAutoLoginUser() {
-        return config().getString("autoLoginUser", null);
+        return login().autoLoginUser();
     }
 
     public String getLocalAutoLoginPassword() {
@@ -71,105 +82,187 @@ public class LoginConfiguration extends AbstractSingleConfig {
     }
 
     public boolean isLocalAuthEnabled() {
-        return config().getBoolean("localAuthEnabled", true);
+        return login().localAuthEnabled();
     }
 
     public boolean isOAuth2Enabled() {
-        return config().getBoolean("oauth2Enabled", false);
+        return login().oauth2Enabled();
     }
 
     public List<OAuthProvider> getOAuth2Providers() {
-        return config().getArray("oauth2Providers").orElse(MTree.EMPTY_LIST).stream().map(e -> new OAuthProvider(e)).toList();
+        return login().oauth2Providers();
     }
 
     public Optional<OAuthProvider> getOAuth2Provider(String id) {
-        return config().getArray("oauth2Providers").orElse(MTree.EMPTY_LIST).stream().filter(e -> e.getString("id").orElse("").equals(id)).findFirst().map(e -> new OAuthProvider(e));
+        return Optional.ofNullable(login().oauth2ProvidersById().get(id));
     }
 
     public List<OAuthAccepted> getOAuth2Accept() {
-        return config().getArray("oauth2Accept").orElse(MTree.EMPTY_LIST).stream().map(e -> new OAuthAccepted(e)).toList();
+        return login().oauth2Accept();
+    }
+
+    /**
+     * Return the first oauth2Accept rule accepting the user. Decisions are cached per provider, email and roles
+     * for the current compiled login configuration and dropped with it if the login section changes.
+     */
+    public Optional<OAuthAccepted> findOAuth2Accept(AaaUser user) {
+        final var login = login();
+        var cache = acceptCache;
+        if (cache == null || cache.login() != login) {
+            cache = new AcceptCache(login, new ConcurrentHashMap<>());
+            acceptCache = cache;
+        }
+        final var key = new AcceptKey(user.getProvider(), user.getEmail(), user.getRoles() == null ? Set.of() : Set.copyOf(user.getRoles()));
+        var decision = cache.decisions().get(key);
+        if (decision == null) {
+            decision = login.oauth2Accept().stream().filter(a -> a.accept(user)).findFirst();
+            if (cache.decisions().size() >= MAX_ACCEPT_CACHE_SIZE)
+                cache.decisions().clear();
+            cache.decisions().put(key, decision);
+        }
+        return decision;
     }
 
     public String getRedirectUrl() {
-        return config().getString("redirectUrl", null);
+        return login().redirectUrl();
     }
 
     public String getLoginText() {
-        return config().getString("loginText", null);
+        return login().loginText();
     }
 
     public boolean isShowLoginHeader() {
-        return config().getBoolean("showLoginHeader", true);
+        return login().showLoginHeader();
     }
 
     public String getUserRepositoryClass() {
-        return config().getString("userRepositoryClass", null);
+        return login().userRepositoryClass();
+    }
+
+    public LoginConfig login() {
+        return view(LoginConfig.class, LoginConfiguration::compile);
+    }
+
+    private static LoginConfig compile(ITreeNode config) {
+        final var providers = config.getArray("oauth2Providers").orElse(MTree.EMPTY_LIST).stream().map(e -> new OAuthProvider(e)).toList();
+        final var providersById = new HashMap<String, OAuthProvider>();
+        // first provider wins like in the former stream lookup
+        providers.forEach(p -> providersById.putIfAbsent(p.getId() == null ? "" : p.getId(), p));
+        return new LoginConfig(
+                config.getBoolean("autoLogin", false),
+                config.getBoolean("autoLoginLocalhostOnly", true),
+                config.getString("autoLoginUser", null),
+                config.getBoolean("localAuthEnabled", true),
+                config.getBoolean("oauth2Enabled", false),
+                providers,
+                Collections.unmodifiableMap(providersById),
+                config.getArray("oauth2Accept").orElse(MTree.EMPTY_LIST).stream().map(e -> new OAuthAccepted(e)).toList(),
+                config.getString("redirectUrl", null),
+                config.getString("loginText", null),
+                config.getBoolean("showLoginHeader", true),
+                config.getString("userRepositoryClass", null)
+        );
+    }
+
+    private record AcceptKey(String provider, String email, Set<String> roles) {
+    }
+
+    /**
+     * Accept decisions of one compiled login configuration, the views are immutable so the cache is kept here.
+     */
+    private record AcceptCache(LoginConfig login, Map<AcceptKey, Optional<OAuthAccepted>> decisions) {
     }
 
     public static class OAuthAccepted {
 
-        private final ITreeNode item;
+        private final String pattern;
+        private static final Pattern NEVER_MATCH = Pattern.compile("(?!)");
+        private final Pattern emailPattern;
+        private final List<Pattern> acceptRolePatterns;
+        private final String provider;
+        private final List<String> defaultRoles;
+        private final List<String> acceptRoles;
+        private final String userConfigPreset;
 
         private OAuthAccepted(ITreeNode item) {
-            this.item = item;
+            this.pattern = item.getString("pattern", null);
+            this.provider = item.getString("provider", null);
+            this.defaultRoles = Collections.unmodifiableList(MTree.getArrayValueStringList(item.getArray("defaultRoles").orElse(MTree.EMPTY_LIST)));
+            this.acceptRoles = Collections.unmodifiableList(MTree.getArrayValueStringList(item.getArray("acceptRoles").orElse(MTree.EMPTY_LIST)));
+            this.userConfigPreset = item.getString("userConfigPreset", null);
+            this.emailPattern = pattern == null ? null : compilePattern(pattern);
+            this.acceptRolePatterns = acceptRoles.stream().map(OAuthAccepted::compilePattern).toList();
+        }
+
+        private static Pattern compilePattern(String regex) {
+            try {
+                return Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                LOGGER.warn("Invalid pattern in oauth2Accept, never matches: {}", regex, e);
+                return NEVER_MATCH;
+            }
         }
 
         public String getPattern() {
-            return item.getString("pattern", null);
+            return pattern;
         }
 
         public String getProvider() {
-            return item.getString("provider", null);
+            return provider;
         }
 
         public boolean accept(AaaUser user) {
             return
                     (isEmpty(getProvider()) || getProvider().equals(user.getProvider()))
                     &&
-                    isSet(user.getEmail()) && user.getEmail().matches(getPattern())
+                    isSet(user.getEmail()) && emailPattern != null && emailPattern.matcher(user.getEmail()).matches()
                     &&
                     acceptRoles(user);
         }
 
         private boolean acceptRoles(AaaUser user) {
-            var acceptRoles = getAcceptRoles();
-            if (acceptRoles.isEmpty())
+            if (acceptRolePatterns.isEmpty())
                 return true;
+            if (user.getRoles() == null)
+                return false;
             for (String userRole : user.getRoles())
-                for (String role : acceptRoles)
-                    if (userRole.matches(role))
+                for (Pattern role : acceptRolePatterns)
+                    if (role.matcher(userRole).matches())
                         return true;
             return false;
         }
 
 
         public List<String> getDefaultRoles() {
-            return MTree.getArrayValueStringList(item.getArray("defaultRoles").orElse(MTree.EMPTY_LIST));
+            return defaultRoles;
         }
 
         public List<String> getAcceptRoles() {
-            return MTree.getArrayValueStringList(item.getArray("acceptRoles").orElse(MTree.EMPTY_LIST));
+            return acceptRoles;
         }
 
         public String getUserConfigPreset() {
-            return item.getString("userConfigPreset", null);
+            return userConfigPreset;
         }
     }
 
     public static class OAuthProvider {
 
-        private final ITreeNode item;
+        private final String id;
+        private final ITreeNode roleMapping;
+        private final Map<String, List<String>> roleMappingCache = new ConcurrentHashMap<>();
 
         private OAuthProvider(ITreeNode item) {
-            this.item = item;
+            this.id = item.getString("id", null);
+            this.roleMapping = item.getObject("roleMapping").orElse(MTree.EMPTY_MAP);
         }
 
         public String getId() {
-            return item.getString("id", null);
+            return id;
         }
 
         public List<String> getRoleMapping(String role) {
-            return MTree.getArrayValueStringList(item.getObject("roleMapping").orElse(MTree.EMPTY_MAP).getArray(role).orElse(MTree.EMPTY_LIST));
+            return roleMappingCache.computeIfAbsent(role, r -> Collections.unmodifiableList(MTree.getArrayValueStringList(roleMapping.getArray(r).orElse(MTree.EMPTY_LIST))));
         }
     }
 }
@@ -134,7 +134,11 @@ public class LoginView extends VerticalLayout implements BeforeEnterObserver {
         var rhost = req.getRemoteHost();
 
         if (loginConfig.isAutoLogin()) {
-            if (!loginConfig.isAutoLoginLocalhostOnly() || MNet.isLocalhost(rhost)) {
+            if (req.getUserPrincipal() != null) {
+                // already logged in, do not verify the password again
+                LOGGER.debug("Already authenticated as {}", req.getUserPrincipal().getName());
+                UI.getCurrent().navigate("/");
+            } else if (!loginConfig.isAutoLoginLocalhostOnly() || MNet.isLocalhost(rhost)) {
                 LOGGER.info("Do auto login for {}",loginConfig.getAutoLoginUser());
                 try {
                     req.login(loginConfig.getAutoLoginUser(), loginConfig.getLocalAutoLoginPassword());
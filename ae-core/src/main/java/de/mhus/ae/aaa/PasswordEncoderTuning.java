@@ -0,0 +1,110 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Measures the cost of password encoders on the current hardware and tunes the bcrypt strength to a target time.
+ */
+class PasswordEncoderTuning {
+
+    static final int MIN_BCRYPT_STRENGTH = 8;
+    static final int MAX_BCRYPT_STRENGTH = 16;
+    private static final int CALIBRATION_STRENGTH = 10;
+    private static final String SAMPLE_PASSWORD = "calibration-Password-1";
+    /**
+     * Encoder ids without (noop) or with a fast unsalted or single round hash.
+     */
+    static final Set<String> WEAK_ENCODER_IDS = Set.of("noop", "sha256", "MD4", "MD5", "SHA-1", "SHA-256", "ldap");
+
+    private PasswordEncoderTuning() {
+    }
+
+    /**
+     * Return the average time in milliseconds of a password verification for each encoder.
+     */
+    static Map<String, Double> measure(Map<String, PasswordEncoder> encoders, int rounds) {
+        final var result = new TreeMap<String, Double>();
+        encoders.forEach((id, encoder) -> result.put(id, measure(encoder, rounds)));
+        return result;
+    }
+
+    static double measure(PasswordEncoder encoder, int rounds) {
+        final var encoded = encoder.encode(SAMPLE_PASSWORD);
+        // warm up
+        encoder.matches(SAMPLE_PASSWORD, encoded);
+        final var start = System.nanoTime();
+        for (int i = 0; i < rounds; i++)
+            encoder.matches(SAMPLE_PASSWORD, encoded);
+        return (System.nanoTime() - start) / 1_000_000.0 / rounds;
+    }
+
+    /**
+     * Return the bcrypt strength needed for about targetMillis per verification, every step doubles the cost.
+     */
+    static int tuneBCryptStrength(long targetMillis) {
+        final var millis = measure(new BCryptPasswordEncoder(CALIBRATION_STRENGTH), 3);
+        final var steps = (int) Math.round(Math.log(targetMillis / Math.max(millis, 0.01)) / Math.log(2));
+        return Math.max(MIN_BCRYPT_STRENGTH, Math.min(MAX_BCRYPT_STRENGTH, CALIBRATION_STRENGTH + steps));
+    }
+
+    /**
+     * Return true if the encoded password ({id}hash) should be re-encoded with the upgrade encoder. Only weak
+     * encoders and bcrypt hashes with a lower strength than bcryptStrength (if set) are upgraded, hashes of other
+     * adaptive encoders (pbkdf2, scrypt, argon2 in any version) are kept to never downgrade a hash.
+     */
+    static boolean needsUpgrade(String prefixEncodedPassword, String upgradeEncoderId, int bcryptStrength) {
+        final var id = encoderId(prefixEncodedPassword);
+        if (id == null || upgradeEncoderId == null) return false;
+        if (WEAK_ENCODER_IDS.contains(id))
+            return !WEAK_ENCODER_IDS.contains(upgradeEncoderId);
+        if ("bcrypt".equals(id) && "bcrypt".equals(upgradeEncoderId) && bcryptStrength > 0) {
+            final var strength = bcryptStrength(prefixEncodedPassword.substring(id.length() + 2));
+            return strength > 0 && strength < bcryptStrength;
+        }
+        return false;
+    }
+
+    /**
+     * Return the encoder id of an encoded password ({id}hash) or null if there is no id.
+     */
+    static String encoderId(String prefixEncodedPassword) {
+        if (prefixEncodedPassword == null || !prefixEncodedPassword.startsWith("{")) return null;
+        final var end = prefixEncodedPassword.indexOf('}');
+        return end < 0 ? null : prefixEncodedPassword.substring(1, end);
+    }
+
+    /**
+     * Return the strength of a bcrypt hash ($2a$10$...) or -1 if not a bcrypt hash.
+     */
+    static int bcryptStrength(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$')
+            return -1;
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
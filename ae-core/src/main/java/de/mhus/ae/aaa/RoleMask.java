@@ -0,0 +1,90 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable set of roles as bit mask. Every role name gets a bit position on first use, the positions
+ * are shared by all masks of the application. Role names are case sensitive like the role collections.
+ */
+public final class RoleMask {
+
+    public static final RoleMask EMPTY = new RoleMask(new long[0]);
+
+    private static final Map<String, Integer> positions = new ConcurrentHashMap<>();
+    private static final Map<String, RoleMask> singles = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextPosition = new AtomicInteger();
+
+    private final long[] words;
+
+    private RoleMask(long[] words) {
+        this.words = words;
+    }
+
+    public static RoleMask of(String role) {
+        if (role == null) return EMPTY;
+        return singles.computeIfAbsent(role, r -> of(new String[] {r}));
+    }
+
+    public static RoleMask of(String ... roles) {
+        if (roles == null) return EMPTY;
+        return of(Arrays.asList(roles));
+    }
+
+    public static RoleMask of(Collection<String> roles) {
+        if (roles == null || roles.isEmpty()) return EMPTY;
+        long[] words = new long[0];
+        for (String role : roles) {
+            if (role == null) continue;
+            final int position = positions.computeIfAbsent(role, r -> nextPosition.getAndIncrement());
+            final int index = position >>> 6;
+            if (index >= words.length)
+                words = Arrays.copyOf(words, index + 1);
+            words[index] |= 1L << position;
+        }
+        return new RoleMask(words);
+    }
+
+    /**
+     * Return true if all roles of the other mask are also in this mask.
+     */
+    public boolean containsAll(RoleMask other) {
+        final var otherWords = other.words;
+        for (int i = 0; i < otherWords.length; i++) {
+            final long mine = i < words.length ? words[i] : 0L;
+            if ((otherWords[i] & ~mine) != 0L) return false;
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words)
+            if (word != 0L) return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "RoleMask" + Arrays.toString(words);
+    }
+}
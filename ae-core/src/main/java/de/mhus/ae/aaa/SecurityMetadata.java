@@ -0,0 +1,82 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import de.mhus.ae.core.ResourceId;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Security relevant annotations of a resource class. Read once per class and held by a ClassValue.
+ */
+@Getter
+public final class SecurityMetadata {
+
+    private static final ClassValue<SecurityMetadata> registry = new ClassValue<>() {
+        @Override
+        protected SecurityMetadata computeValue(Class<?> type) {
+            return new SecurityMetadata(type);
+        }
+    };
+
+    private final String resourceId;
+    /**
+     * Roles of the WithRole annotation or null if not annotated.
+     */
+    private final Set<UsersConfiguration.ROLE> roles;
+    /**
+     * Roles of the WithRole annotation as mask or null if not annotated.
+     */
+    private final RoleMask roleMask;
+
+    private SecurityMetadata(Class<?> type) {
+        final var idAnnotation = type.getAnnotation(ResourceId.class);
+        resourceId = idAnnotation != null ? idAnnotation.value() : className(type);
+        final var withRole = type.getAnnotation(WithRole.class);
+        if (withRole != null) {
+            final var set = EnumSet.noneOf(UsersConfiguration.ROLE.class);
+            set.addAll(Arrays.asList(withRole.value()));
+            roles = Collections.unmodifiableSet(set);
+            roleMask = RoleMask.of(set.stream().map(Enum::name).toList());
+        } else {
+            roles = null;
+            roleMask = null;
+        }
+    }
+
+    private static String className(Class<?> type) {
+        // like MSystem.getClassName() but without an instance
+        while (type.isAnonymousClass() && type.getEnclosingClass() != null)
+            type = type.getEnclosingClass();
+        final var name = type.getCanonicalName();
+        return name != null ? name : type.getName();
+    }
+
+    public static SecurityMetadata of(Class<?> type) {
+        return registry.get(type);
+    }
+
+    public static SecurityMetadata of(Object resource) {
+        return registry.get(resource.getClass());
+    }
+
+}
@@ -25,6 +25,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.web.authentication.logout.SecurityContextLogoutHandler;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 @Component
@@ -47,30 +50,37 @@ public class SecurityService {
     }
 
     public boolean hasRole(UsersConfiguration.ROLE role) {
-        return SecurityUtils.hasUserRoles(Set.of(role.name()));
+        return SecurityUtils.hasUserRoles(RoleMask.of(role.name()));
+    }
+
+    public boolean hasRole(UsersConfiguration.ROLE role, AaaUser user) {
+        return user != null && SecurityUtils.hasUserRoles(RoleMask.of(role.name()), user);
     }
 
     public boolean hasRole(String role) {
-        return SecurityUtils.hasUserRoles(Set.of(role));
+        return SecurityUtils.hasUserRoles(RoleMask.of(role));
     }
 
     public boolean hasRole(String resourceScope, String resourceName, String ... defaultRole) {
-        return hasRole(resourceScope, resourceName, Set.of(defaultRole));
+        var roles = configuration.getRoleMask(resourceScope, resourceName);
+        if (roles == null)
+            roles = RoleMask.of(defaultRole);
+        return SecurityUtils.hasUserRoles(roles);
     }
 
     public boolean hasRole(String resourceScope, String resourceName, Set<String> defaultRole) {
-        Set<String> roles = getRolesForResource(resourceScope, resourceName);
-        if (roles == null)
-            roles = defaultRole;
+        var roles = configuration.getRoleMask(resourceScope, resourceName);
+        if (roles == null && defaultRole != null)
+            roles = RoleMask.of(defaultRole);
         if (roles == null)
             return false;
         return SecurityUtils.hasUserRoles(roles);
     }
 
     public boolean hasRole(String resourceScope, String resourceName, Set<String> defaultRole, AaaUser user) {
-        Set<String> roles = getRolesForResource(resourceScope, resourceName);
-        if (roles == null)
-            roles = defaultRole;
+        var roles = configuration.getRoleMask(resourceScope, resourceName);
+        if (roles == null && defaultRole != null)
+            roles = RoleMask.of(defaultRole);
         if (roles == null)
             return false;
         return SecurityUtils.hasUserRoles(roles, user);
@@ -78,12 +88,33 @@ public class SecurityService {
 
     public boolean hasRole(String resourceScope, Object resource) {
         if (resource == null) return false;
-        final var roles = configuration.getRoles(resourceScope, SecurityUtils.getResourceId(resource));
+        final var roles = configuration.getRoleMask(resourceScope, SecurityUtils.getResourceId(resource));
         if (roles != null) {
             return SecurityUtils.hasUserRoles(roles);
         }
         return SecurityUtils.hasUserResourceRoles(resource);
     }
+    /**
+     * Return the resources the current user is permitted to use in the scope. The user and the
+     * configuration are resolved once for the whole collection.
+     */
+    public <T> List<T> filterPermitted(Collection<T> resources, String resourceScope) {
+        final var user = getUser();
+        if (user == null || resources == null) return List.of();
+        final var userRoles = user.getRoleMask();
+        final var result = new ArrayList<T>(resources.size());
+        for (T resource : resources) {
+            if (resource == null) continue;
+            final var metadata = SecurityMetadata.of(resource);
+            var roles = configuration.getRoleMask(resourceScope, metadata.getResourceId());
+            if (roles == null)
+                roles = metadata.getRoleMask();
+            if (roles != null && userRoles.containsAll(roles))
+                result.add(resource);
+        }
+        return result;
+    }
+
 //XXX
 //    public UserDetails getAuthenticatedUser() {
 //        SecurityContext context = SecurityContextHolder.getContext();
@@ -22,11 +22,8 @@ import com.vaadin.flow.component.UI;
 import com.vaadin.flow.server.VaadinServletRequest;
 import com.vaadin.flow.server.VaadinSession;
 import de.mhus.commons.tools.MCast;
-import de.mhus.commons.tools.MCollection;
-import de.mhus.commons.tools.MSystem;
 import de.mhus.commons.util.MUri;
 import de.mhus.ae.aaa.UsersConfiguration.ROLE;
-import de.mhus.ae.core.ResourceId;
 import jakarta.servlet.ServletException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -46,10 +43,7 @@ public class SecurityUtils {
 
     public static String getResourceId(Object resource) {
         if (resource == null) return null;
-        ResourceId idAnnotation = resource.getClass().getAnnotation(ResourceId.class);
-        if (idAnnotation != null)
-            return idAnnotation.value();
-        return MSystem.getClassName(resource);
+        return SecurityMetadata.of(resource).getResourceId();
     }
 
     public static boolean isUnsecure() {
@@ -67,9 +61,9 @@ public class SecurityUtils {
     boolean hasUserRoles(Object resource, Set<String> roles) {
         if (resource == null || roles == null) return false;
 
-        final var withRole = resource.getClass().getAnnotation(WithRole.class);
-        if (withRole == null) return false;
-        for (ROLE checkRole : withRole.value())
+        final var withRoles = SecurityMetadata.of(resource).getRoles();
+        if (withRoles == null) return false;
+        for (ROLE checkRole : withRoles)
             if (!roles.contains(checkRole.name())) return false;
         return true;
     }
@@ -101,6 +95,23 @@ public class SecurityUtils {
         return true;
     }
 
+    static boolean hasUserRoles(RoleMask roles) {
+        final var user = SecurityContext.lookupUser();
+        if (user == null) {
+            LOGGER.warn("User not found in request");
+            return false;
+        }
+        return hasUserRoles(roles, user);
+    }
+
+    static boolean hasUserRoles(RoleMask roles, AaaUser user) {
+        if (user == null) {
+            LOGGER.warn("User not found", new Throwable());
+            return false;
+        }
+        return user.getRoleMask().containsAll(roles);
+    }
+
     // do not use
     static boolean hasUserResourceRoles(Object resource) {
         final var user = SecurityContext.lookupUser();
@@ -109,22 +120,16 @@ public class SecurityUtils {
             return false;
         }
 
-        final var withRole = resource.getClass().getAnnotation(WithRole.class);
-        if (withRole == null) return false;
-
-        for (var role : withRole.value())
-            if (!user.getRoles().contains(role.name())) return false;
-        return true;
+        final var withRoles = SecurityMetadata.of(resource).getRoleMask();
+        if (withRoles == null) return false;
+        return user.getRoleMask().containsAll(withRoles);
     }
 
     // do not use
     static boolean hasUserResourceRoles(Object resource, ROLE role) {
         if (resource == null) return false;
-        final var withRole = resource.getClass().getAnnotation(WithRole.class);
-        if (withRole != null) {
-            return MCollection.contains(withRole.value(), role);
-        }
-        return false;
+        final var withRoles = SecurityMetadata.of(resource).getRoles();
+        return withRoles != null && withRoles.contains(role);
     }
 
     public static boolean authenticate(String username, String password) {
@@ -18,15 +18,18 @@
 package de.mhus.ae.aaa;
 
 import de.mhus.ae.aaa.oauth2.AuthProvider;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.stereotype.Component;
 
+@Slf4j
 @Component
-public class UserDetailsManagerToUserRepositoryService implements UserDetailsManager {
+public class UserDetailsManagerToUserRepositoryService implements UserDetailsManager, UserDetailsPasswordService {
 
     @Autowired
     private AaaUserRepositoryService userRepository;
@@ -71,6 +74,19 @@ public class UserDetailsManagerToUserRepositoryService implements UserDetailsMan
         userRepository.getRepository().changePassword(oldPassword, newPassword);
     }
 
+    /**
+     * Called from the password upgrade thread after a successful login if the password encoder reports an
+     * outdated hash, see AaaAuthenticationProvider. The old hash is kept if the repository does not support
+     * the upgrade or the password was changed in the meantime.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        if (!userRepository.getRepository().upgradeEncodedPassword(user.getUsername(), user.getPassword(), newPassword))
+            return user;
+        LOGGER.info("Upgraded password hash of user {}", user.getUsername());
+        return User.withUserDetails(user).password(newPassword).build();
+    }
+
     @Override
     public boolean userExists(String userId) {
         return userRepository.getRepository().userExists(userId);
@@ -85,6 +85,16 @@ public class UsersConfigurationRepository extends InMemoryUserRepository impleme
         return super.updateUser(user);
     }
 
+    @Override
+    public AaaUser createOrUpdateUser(AaaUser user) {
+        if (userExists(user.getUserId())) {
+            if (!usersConfig.allowUpdateUsers())
+                throw new AccessDeniedException("Update users not allowed");
+        } else if (!usersConfig.allowCreateUsers())
+            throw new AccessDeniedException("Create users not allowed");
+        return super.createOrUpdateUser(user);
+    }
+
     @Override
     public void deleteUser(String userId) {
         if (!usersConfig.allowDeleteUsers())
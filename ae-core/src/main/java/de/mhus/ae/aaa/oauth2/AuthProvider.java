@@ -139,11 +139,7 @@ public class AuthProvider {
                     }
                 }
                 // create if not exists
-                if (userRepository.getRepository().getUserByUserId(aaaUser.getUserId()).isEmpty()) {
-                    aaaUser = userRepository.getRepository().createUser(aaaUser);
-                } else {
-                    aaaUser = userRepository.getRepository().updateUser(aaaUser);
-                }
+                aaaUser = userRepository.getRepository().createOrUpdateUser(aaaUser);
             }
             return Optional.of(aaaUser);
         } catch (NoSuchElementException e) {
@@ -160,10 +156,7 @@ public class AuthProvider {
     }
 
     private LoginConfiguration.OAuthAccepted acceptUser(AaaUser aaaUser) {
-        for ( var accept : loginConfiguration.getOAuth2Accept())
-            if (accept.accept(aaaUser))
-                return accept;
-        return null;
+        return loginConfiguration.findOAuth2Accept(aaaUser).orElse(null);
     }
 
     private Optional<AaaUser> userFromOidcUser(DefaultOidcUser userDetails) {
@@ -66,7 +66,10 @@ public class LoginOAuth2UserService extends DefaultOAuth2UserService {
             throw new OAuth2AuthenticationProcessingException("Email not found from OAuth2 provider");
         }
 
-        Optional<AaaUser> userOptional = userRepository.getRepository().getByEmail(oAuth2UserInfo.getEmail());
+        final var repository = userRepository.getRepository();
+        Optional<AaaUser> userOptional = repository
+                .getByProvider(oAuth2UserRequest.getClientRegistration().getRegistrationId(), oAuth2UserInfo.getId())
+                .or(() -> repository.getByEmail(oAuth2UserInfo.getEmail()));
         AaaUser user;
         if(userOptional.isPresent()) {
             user = userOptional.get();
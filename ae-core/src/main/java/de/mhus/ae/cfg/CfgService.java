@@ -96,9 +96,8 @@ public class CfgService {
         List<CfgFactory> globalFactories = cfgFactories;
 //        List<CfgFactory> userFactories = cfgFactories.stream().filter(f -> f.isUserRelated()).toList();
         File configDir = configuration.getLocalConfigurationDirectory();
-        File globalDir = configuration.getGlobalConfigurationDirectory();
 
-        panelService.showGlobalCfgPanel(core, globalFactories, configDir, globalDir).select();
+        panelService.showGlobalCfgPanel(core, globalFactories, configDir).select();
     }
 
     public void showUserCfg(Core core) {
@@ -111,10 +110,7 @@ public class CfgService {
         var userName = SecurityContext.lookupUserId();
         File configDir = configuration.getUserConfigurationDirectory(userName);
 
-        File localUserDir = configuration.getLocalUserConfigurationDirectory(userName);
-        File localDir = configuration.getLocalConfigurationDirectory();
-        File globalDir = configuration.getGlobalConfigurationDirectory();
-        panelService.showUserCfgPanel(core, factories, configDir, localUserDir, localDir, globalDir).select();
+        panelService.showUserCfgPanel(core, factories, configDir, userName).select();
 
     }
 
@@ -26,6 +26,7 @@ import de.mhus.commons.tree.MTree;
 import de.mhus.ae.AeApplication;
 import de.mhus.ae.aaa.AaaConfiguration;
 import de.mhus.ae.aaa.SecurityService;
+import de.mhus.ae.config.Configuration;
 import de.mhus.ae.core.Core;
 import de.mhus.ae.core.DeskTab;
 import de.mhus.ae.core.DeskTabListener;
@@ -42,20 +43,22 @@ public class GlobalCfgPanel extends VerticalLayout implements DeskTabListener {
 
     @Autowired
     private SecurityService securityService;
+    @Autowired
+    private Configuration configuration;
 
     private final Core core;
     private final boolean isGlobalConfig;
     private List<CfgFactory> factories;
     private final File configDir;
-    private final File[] fallbackDirs;
+    private final String userName;
     private final List<PanelStore> panels = new LinkedList<>();
 
-    public GlobalCfgPanel(Core core, boolean isGlobalConfig, List<CfgFactory> factories, File configDir, File ... fallbackDirs) {
+    public GlobalCfgPanel(Core core, boolean isGlobalConfig, List<CfgFactory> factories, File configDir, String userName) {
         this.core = core;
         this.isGlobalConfig = isGlobalConfig;
         this.factories = factories;
         this.configDir = configDir;
-        this.fallbackDirs = fallbackDirs;
+        this.userName = userName;
     }
 
     private void save() {
@@ -67,6 +70,7 @@ public class GlobalCfgPanel extends VerticalLayout implements DeskTabListener {
 
                 ps.panel().save(content);
                 MTree.save(content, file);
+                configuration.configFileSaved(file);
             } catch (Exception t) {
                 UiUtil.showErrorNotification("Can't save panel " + ps.factory().handledConfigType());
                 LOGGER.error("Can't save panel {}", ps.factory().handledConfigType(), t);
@@ -114,21 +118,12 @@ public class GlobalCfgPanel extends VerticalLayout implements DeskTabListener {
     }
 
     private File findActualConfigFile(String handledConfigType) {
-        var file = new File(configDir, handledConfigType + ".yaml");
-        if (file.exists()) {
+        var file = configuration.findConfigFile(handledConfigType, userName);
+        if (file != null)
             LOGGER.debug("Load config {} from {}", handledConfigType, file);
-            return file;
-        } else if (fallbackDirs != null) {
-            for (File fallbackDir : fallbackDirs) {
-                var fallbackFile = new File(fallbackDir, handledConfigType + ".yaml");
-                if (fallbackFile.exists()) {
-                    LOGGER.debug("Load config {} from {}", handledConfigType, fallbackFile);
-                    return fallbackFile;
-                }
-            }
-        }
-        LOGGER.debug("Load config {} not found", handledConfigType);
-        return null;
+        else
+            LOGGER.debug("Load config {} not found", handledConfigType);
+        return file;
     }
 
     public void initUi() {
@@ -159,7 +154,7 @@ public class GlobalCfgPanel extends VerticalLayout implements DeskTabListener {
 
     @Override
     public void tabInit(DeskTab deskTab) {
-        this.factories = factories.stream().filter(f ->  securityService.hasRole(AaaConfiguration.SCOPE_CFG, f)).toList();
+        this.factories = securityService.filterPermitted(factories, AaaConfiguration.SCOPE_CFG);
         initUi();
         load();
     }
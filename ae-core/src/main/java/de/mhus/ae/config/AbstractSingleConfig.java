@@ -24,6 +24,8 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.function.Function;
+
 @Slf4j
 public abstract class AbstractSingleConfig {
 
@@ -33,8 +35,6 @@ public abstract class AbstractSingleConfig {
     @Autowired
     protected Configuration configuration;
 
-    private ITreeNode cache;
-
     protected AbstractSingleConfig(String sectionName) {
         this(sectionName, false);
     }
@@ -52,22 +52,19 @@ public abstract class AbstractSingleConfig {
     }
 
     protected ITreeNode config() {
-        synchronized (this) {
-            if (cache == null) {
-                cache = loadConfig();
-            }
-            return cache;
-        }
+        return configuration.getSection(sectionName);
     }
 
-    private ITreeNode loadConfig() {
-        return configuration.getSection(sectionName);
+    /**
+     * Return a compiled view of the section. The view is created once and recreated if the
+     * section changes.
+     */
+    protected <T> T view(Class<T> type, Function<ITreeNode, T> compiler) {
+        return configuration.getView(sectionName, null, type, compiler);
     }
 
     protected void clearCache() {
-        synchronized (this) {
-            cache = null;
-        }
+        configuration.invalidateSection(sectionName, null);
     }
 
 }
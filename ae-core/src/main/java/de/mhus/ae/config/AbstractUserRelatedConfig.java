@@ -19,13 +19,14 @@
 package de.mhus.ae.config;
 
 import de.mhus.commons.tree.ITreeNode;
-import de.mhus.commons.util.SoftHashMap;
 import de.mhus.ae.aaa.SecurityContext;
 import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.function.Function;
+
 @Slf4j
 public abstract class AbstractUserRelatedConfig {
 
@@ -36,8 +37,6 @@ public abstract class AbstractUserRelatedConfig {
     @Autowired
     private Configuration configuration;
 
-    private SoftHashMap<String, ITreeNode> cache = new SoftHashMap<>();
-
     protected AbstractUserRelatedConfig(String sectionName) {
         this(sectionName, false);
     }
@@ -54,32 +53,28 @@ public abstract class AbstractUserRelatedConfig {
         this.protectedConfig = isProtected;
     }
 
+    /**
+     * Return the section of the current user. The section is cached by the configuration
+     * and refreshed if the file changes.
+     */
     protected ITreeNode config() {
-        final var userName = SecurityContext.lookupUserId();
-        synchronized (cache) {
-            var config = cache.get(userName);
-            if (config == null) {
-                config = loadConfig(userName);
-                cache.put(userName, config);
-            }
-            return config;
-        }
+        return configuration.getSection(sectionName, SecurityContext.lookupUserId());
     }
 
-    protected void clearCache() {
-        synchronized (cache) {
-            cache.clear();
-        }
+    /**
+     * Return a compiled view of the section. The view is created once and recreated if the
+     * section changes.
+     */
+    protected <T> T view(Class<T> type, Function<ITreeNode, T> compiler) {
+        return configuration.getView(sectionName, SecurityContext.lookupUserId(), type, compiler);
     }
 
-    public void clearCache(String userName) {
-        synchronized (cache) {
-            cache.remove(userName);
-        }
+    protected void clearCache() {
+        configuration.invalidateSection(sectionName);
     }
 
-    private ITreeNode loadConfig(String userName) {
-        return configuration.getSection(sectionName, userName);
+    public void clearCache(String userName) {
+        configuration.invalidateSection(sectionName, userName);
     }
 
 }
@@ -0,0 +1,114 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Resolves (section, user) to the configuration file to load. Directory contents are listed once and
+ * kept in memory, resolved files and not found results are cached. The index is maintained by the
+ * configuration watcher, if watching is disabled every lookup probes the file system.
+ */
+@Slf4j
+class ConfigFileIndex {
+
+    private final boolean cached;
+    private final Function<Configuration.SectionKey, List<File>> candidates;
+    private final Map<Path, Set<String>> directories = new ConcurrentHashMap<>();
+    private final Map<Configuration.SectionKey, Optional<File>> resolved = new ConcurrentHashMap<>();
+
+    ConfigFileIndex(boolean cached, Function<Configuration.SectionKey, List<File>> candidates) {
+        this.cached = cached;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Return the first existing candidate file or null.
+     */
+    File resolve(Configuration.SectionKey key) {
+        if (!cached)
+            return findFirst(key, File::exists);
+        var file = resolved.get(key);
+        if (file == null) {
+            file = Optional.ofNullable(findFirst(key, this::contains));
+            resolved.put(key, file);
+        }
+        return file.orElse(null);
+    }
+
+    private File findFirst(Configuration.SectionKey key, Predicate<File> exists) {
+        for (var file : candidates.apply(key)) {
+            if (exists.test(file))
+                return file;
+        }
+        return null;
+    }
+
+    private boolean contains(File file) {
+        final var dir = normalize(file.getParentFile().toPath());
+        return directories.computeIfAbsent(dir, this::listDirectory).contains(file.getName());
+    }
+
+    private Set<String> listDirectory(Path dir) {
+        final var names = dir.toFile().list((d, name) -> name.endsWith(".yaml"));
+        final Set<String> set = ConcurrentHashMap.newKeySet();
+        if (names != null)
+            Collections.addAll(set, names);
+        LOGGER.debug("Indexed configuration directory {} with {} files", dir, set.size());
+        return set;
+    }
+
+    /**
+     * A configuration file was created or deleted.
+     */
+    void fileChanged(Path dir, String fileName, boolean exists) {
+        final var names = directories.get(normalize(dir));
+        if (names != null) {
+            if (exists)
+                names.add(fileName);
+            else
+                names.remove(fileName);
+        }
+        final var sectionName = fileName.substring(0, fileName.length() - 5).toLowerCase();
+        resolved.keySet().removeIf(k -> k.section().equals(sectionName));
+    }
+
+    void invalidate(String sectionName) {
+        resolved.keySet().removeIf(k -> k.section().equals(sectionName));
+    }
+
+    void clear() {
+        directories.clear();
+        resolved.clear();
+    }
+
+    private static Path normalize(Path dir) {
+        return dir.toAbsolutePath().normalize();
+    }
+}
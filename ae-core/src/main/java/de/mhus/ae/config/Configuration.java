@@ -27,21 +27,41 @@ import de.mhus.commons.tree.ITreeNode;
 import de.mhus.commons.tree.MTree;
 import de.mhus.commons.tree.TreeNode;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import static de.mhus.commons.tools.MCollection.toSet;
 import static de.mhus.commons.tools.MLang.tryThis;
 import static de.mhus.commons.tools.MString.isEmpty;
 import static de.mhus.commons.tools.MString.isSet;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 @Component
 @Slf4j
@@ -65,10 +85,21 @@ public class Configuration {
     @Value("${kt2l.configuration.tmpDirectory:}")
     private String tmpDirectory;
 
+    @Value("${kt2l.configuration.watch:true}")
+    private boolean watchConfiguration;
+
+    @Value("${kt2l.configuration.watchDelayMillis:500}")
+    private long watchDelayMillis;
+
     private static final Set<String> protectedConfigs = Collections.synchronizedSet(toSet("users", "aaa", "login", "application"));
 
-    private Map<String, ITreeNode> sections = new HashMap<>();
+    // soft values, sections of users not used for a while are collected under memory pressure
+    private final Map<SectionKey, SectionReference> sections = new ConcurrentHashMap<>();
+    private final ReferenceQueue<CompletableFuture<Section>> collectedSections = new ReferenceQueue<>();
+    private final AtomicLong sectionVersion = new AtomicLong();
     private File configurationDirectoryFile;
+    private WatchService watchService;
+    private ConfigFileIndex fileIndex;
     @Getter
     private File tmpDirectoryFile;
 
@@ -93,6 +124,103 @@ public class Configuration {
 
         configurationDirectoryFile = new File(configurationDirectory);
         LOGGER.info("Configuration initialized on {}", configurationDirectoryFile.getAbsolutePath());
+
+        if (watchConfiguration)
+            startWatching();
+        fileIndex = new ConfigFileIndex(watchService != null, this::getConfigFileCandidates);
+        if (watchService != null)
+            Thread.ofPlatform().daemon().name("configuration-watcher").start(this::watchLoop);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (watchService != null)
+            tryThis(() -> { watchService.close(); return null; });
+    }
+
+    private void startWatching() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            watchDirectory(configurationDirectoryFile.toPath(), 3);
+            if (isSet(localDirectory))
+                watchDirectory(getLocalConfigurationDirectory().toPath(), 2);
+            if (isSet(usersDirectory))
+                watchDirectory(new File(usersDirectory).toPath(), 1);
+        } catch (Exception e) {
+            LOGGER.warn("Can't watch configuration directories, changes need a session reset", e);
+            if (watchService != null)
+                tryThis(() -> { watchService.close(); return null; });
+            watchService = null;
+        }
+    }
+
+    private void watchDirectory(Path dir, int depth) {
+        if (depth < 0 || !Files.isDirectory(dir)) return;
+        try {
+            dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            LOGGER.debug("Watch configuration directory {}", dir);
+            if (depth > 0)
+                try (var children = Files.list(dir)) {
+                    children.filter(Files::isDirectory).forEach(child -> watchDirectory(child, depth - 1));
+                }
+        } catch (Exception e) {
+            LOGGER.warn("Can't watch configuration directory {}", dir, e);
+        }
+    }
+
+    private void watchLoop() {
+        // changed yaml files, applied after no further event arrived for watchDelayMillis
+        final var changed = new LinkedHashSet<Path>();
+        while (true) {
+            final WatchKey key;
+            try {
+                key = changed.isEmpty() ? watchService.take() : watchService.poll(watchDelayMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            if (key == null) {
+                changed.forEach(this::applyChange);
+                changed.clear();
+                continue;
+            }
+            final var dir = (Path) key.watchable();
+            for (var event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    LOGGER.debug("Configuration watcher overflow, clear all sections");
+                    changed.clear();
+                    clearCache();
+                    continue;
+                }
+                final var path = dir.resolve((Path) event.context());
+                final var fileName = path.getFileName().toString();
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                    // e.g. a new user or local directory
+                    watchDirectory(path, 2);
+                    clearCache();
+                } else if (fileName.endsWith(".yaml")) {
+                    changed.add(path);
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private void applyChange(Path path) {
+        final var fileName = path.getFileName().toString();
+        final var sectionName = fileName.substring(0, fileName.length() - 5).toLowerCase();
+        final var exists = Files.exists(path);
+        if (exists) {
+            try {
+                MTree.load(path.toFile());
+            } catch (Exception e) {
+                // e.g. saved by an editor while typing, the next change event will try again
+                LOGGER.error("Can't load changed configuration {} from {}, keep the previous version", sectionName, path, e);
+                return;
+            }
+        }
+        LOGGER.info("Configuration {} changed ({})", sectionName, path);
+        fileIndex.fileChanged(path.getParent(), fileName, exists);
+        invalidateSection(sectionName);
     }
 
     private void deployHomeConfiguration() {
@@ -119,61 +247,177 @@ public class Configuration {
 
     /**
      * Return a not user related section.
-     * This method is not cached.
+     * The section is cached until the file changes.
      *
      * @param sectionNameIn Name of the section
      * @return The section
      */
-    public synchronized ITreeNode getSection(String sectionNameIn) {
+    public ITreeNode getSection(String sectionNameIn) {
         return getSection(sectionNameIn, null);
     }
 
     /**
      * Return a user related section. Or a default section if no user is given.
-     * This method is not cached.
+     * The section is cached per user until one of the configuration files changes. Reads are lock free,
+     * concurrent requests for a missing section wait for the same load.
      *
      * @param sectionNameIn Name of the section
      * @param userName Name of the user
      * @return The section
      */
-    public synchronized ITreeNode getSection(String sectionNameIn, String userName) {
-        if (sections.containsKey(sectionNameIn))
-            return sections.get(sectionNameIn);
+    public ITreeNode getSection(String sectionNameIn, String userName) {
+        return section(sectionNameIn, userName).node();
+    }
 
-        final var sectionName = sectionNameIn.toLowerCase();
-        userName = userName == null ? null : MFile.normalize(userName.toLowerCase());
+    /**
+     * Return a typed view of the section. The view is created once per loaded section and replaced if
+     * the section is reloaded. Views must be immutable, they are shared between all readers of the section.
+     *
+     * @param sectionNameIn Name of the section
+     * @param userName Name of the user or null
+     * @param type Type of the view, used as key
+     * @param compiler Creates the view from the section
+     * @return The view
+     */
+    public <T> T getView(String sectionNameIn, String userName, Class<T> type, Function<ITreeNode, T> compiler) {
+        final var section = section(sectionNameIn, userName);
+        var view = section.views().get(type);
+        if (view == null) {
+            view = compiler.apply(section.node());
+            final var current = section.views().putIfAbsent(type, view);
+            if (current != null)
+                view = current;
+            LOGGER.debug("Compiled {} for {} version {}", type.getSimpleName(), sectionNameIn, section.version());
+        }
+        return type.cast(view);
+    }
+
+    /**
+     * Return the version of the loaded section. The version changes each time the section is reloaded.
+     */
+    public long getSectionVersion(String sectionNameIn, String userName) {
+        return section(sectionNameIn, userName).version();
+    }
 
-        File file = null;
-        final var normalizedSectionFileName = MFile.normalize(sectionName) + ".yaml";
-        // 1. try to get config from user directory
-        if (!protectedConfigs.contains(sectionName) && userName != null) {
-            file = new File(getUserConfigurationDirectory(userName), normalizedSectionFileName);
+    private Section section(String sectionNameIn, String userName) {
+        final var key = new SectionKey(
+                sectionNameIn.toLowerCase(),
+                userName == null ? null : MFile.normalize(userName.toLowerCase()));
+        while (true) {
+            final var reference = sections.get(key);
+            final var future = reference == null ? null : reference.get();
+            if (future != null)
+                return future.join();
+            purgeCollectedSections();
+            final var newFuture = new CompletableFuture<Section>();
+            final var newReference = new SectionReference(key, newFuture, collectedSections);
+            final var installed = reference == null
+                    ? sections.putIfAbsent(key, newReference) == null
+                    : sections.replace(key, reference, newReference);
+            if (!installed) continue; // concurrently loaded or removed, try again
+            try {
+                newFuture.complete(new Section(
+                        loadSection(key.section(), key.user()),
+                        sectionVersion.incrementAndGet(),
+                        new ConcurrentHashMap<>()));
+            } catch (RuntimeException e) {
+                sections.remove(key, newReference);
+                newFuture.completeExceptionally(e);
+            }
+            return newFuture.join();
         }
-        // 2. try to get config from local user directory
-        if (file == null || !file.exists())
-            file = new File(getLocalConfigurationDirectory(), "users/" + userName + "/" + normalizedSectionFileName);
-        // 3. try to get config from local directory
-        if (file == null || !file.exists())
-            file = new File(getLocalConfigurationDirectory(), normalizedSectionFileName);
-        // 4. try to get config from configuration directory
-        if (file == null || !file.exists())
-            file = new File(configurationDirectoryFile, normalizedSectionFileName);
-        final var finalFile = file;
+    }
+
+    private void purgeCollectedSections() {
+        SectionReference reference;
+        while ((reference = (SectionReference) collectedSections.poll()) != null)
+            sections.remove(reference.key, reference);
+    }
+
+    private ITreeNode loadSection(String sectionName, String userName) {
+        final var file = fileIndex.resolve(new SectionKey(sectionName, userName));
 
         ITreeNode section = null;
-        if (finalFile.exists()) {
+        if (file != null) {
             LOGGER.info("Load configuration {} from {}", sectionName, file.getAbsolutePath());
-            section = tryThis(() -> MTree.load(finalFile)).onFailure(
-                    e -> LOGGER.error("Can't load configuration {} from {}", sectionName, finalFile.getAbsolutePath(), e)
+            section = tryThis(() -> MTree.load(file)).onFailure(
+                    e -> LOGGER.error("Can't load configuration {} from {}", sectionName, file.getAbsolutePath(), e)
             ).orElse(new TreeNode());
         } else {
-            LOGGER.info("Configuration {} not found", file.getAbsolutePath());
+            LOGGER.info("Configuration {} not found", sectionName);
             section = new TreeNode();
         }
-        sections.put(sectionName, section);
         return section;
     }
 
+    /**
+     * Return the file the section is loaded from for the user or null if the section is not
+     * defined. If user is null only the local and global configuration is used.
+     *
+     * @param sectionName Name of the section
+     * @param userName Name of the user or null
+     * @return The file or null
+     */
+    public File findConfigFile(String sectionName, String userName) {
+        return fileIndex.resolve(new SectionKey(
+                sectionName.toLowerCase(),
+                userName == null ? null : MFile.normalize(userName.toLowerCase())));
+    }
+
+    private List<File> getConfigFileCandidates(SectionKey key) {
+        final var normalizedSectionFileName = MFile.normalize(key.section()) + ".yaml";
+        final var candidates = new ArrayList<File>(4);
+        if (key.user() != null) {
+            // 1. user directory
+            if (!protectedConfigs.contains(key.section()))
+                candidates.add(new File(getUserConfigurationDirectory(key.user()), normalizedSectionFileName));
+            // 2. local user directory
+            candidates.add(new File(getLocalConfigurationDirectory(), "users/" + key.user() + "/" + normalizedSectionFileName));
+        }
+        // 3. local directory
+        candidates.add(new File(getLocalConfigurationDirectory(), normalizedSectionFileName));
+        // 4. configuration directory
+        candidates.add(new File(configurationDirectoryFile, normalizedSectionFileName));
+        return candidates;
+    }
+
+    /**
+     * Remove the section for all users from cache.
+     *
+     * @param sectionName Name of the section
+     */
+    public void invalidateSection(String sectionName) {
+        final var name = sectionName.toLowerCase();
+        fileIndex.invalidate(name);
+        sections.keySet().removeIf(k -> k.section().equals(name));
+    }
+
+    /**
+     * A configuration file was written, e.g. by the configuration editor. Updates the file index, a new
+     * file is found without waiting for the watcher, and removes the section from cache.
+     *
+     * @param file The saved yaml file
+     */
+    public void configFileSaved(File file) {
+        final var fileName = file.getName();
+        if (!fileName.endsWith(".yaml")) return;
+        fileIndex.fileChanged(file.getAbsoluteFile().getParentFile().toPath(), fileName, file.exists());
+        invalidateSection(fileName.substring(0, fileName.length() - 5));
+    }
+
+    /**
+     * Remove the section of the user from cache.
+     *
+     * @param sectionName Name of the section
+     * @param userName Name of the user or null
+     */
+    public void invalidateSection(String sectionName, String userName) {
+        fileIndex.invalidate(sectionName.toLowerCase());
+        sections.remove(new SectionKey(
+                sectionName.toLowerCase(),
+                userName == null ? null : MFile.normalize(userName.toLowerCase())));
+    }
+
     public File getLocalConfigurationDirectory() {
         if (isSet(localDirectory))
             return new File(localDirectory);
@@ -202,9 +446,26 @@ public class Configuration {
     }
 
     public void clearCache() {
+        fileIndex.clear();
         sections.clear();
     }
 
+    record SectionKey(String section, String user) {
+    }
+
+    private record Section(ITreeNode node, long version, Map<Class<?>, Object> views) {
+    }
+
+    private static class SectionReference extends SoftReference<CompletableFuture<Section>> {
+
+        private final SectionKey key;
+
+        private SectionReference(SectionKey key, CompletableFuture<Section> future, ReferenceQueue<CompletableFuture<Section>> queue) {
+            super(future, queue);
+            this.key = key;
+        }
+    }
+
     public File getPresetConfigurationDirectory(String preset) {
         return new File(getGlobalConfigurationDirectory(), "presets/" + MFile.normalize(preset));
     }
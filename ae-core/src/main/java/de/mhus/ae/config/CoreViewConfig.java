@@ -0,0 +1,68 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.config;
+
+import de.mhus.commons.tree.ITreeNode;
+import de.mhus.commons.tree.MTree;
+
+/**
+ * Compiled 'core' entry of the views configuration. darkMode is null if not configured.
+ */
+public record CoreViewConfig(
+        boolean uiLostEnabled,
+        long uiTimeoutSeconds,
+        boolean trackBrowserMemoryUsage,
+        boolean autoDarkMode,
+        Boolean darkMode,
+        boolean adaptiveRefresh,
+        long idleAfterSeconds,
+        long idleRefreshInterval,
+        long hiddenRefreshInterval,
+        boolean idleEnabled,
+        int idleNotifyBeforeSeconds,
+        int idleMaxInactiveIntervalSeconds,
+        boolean idleAutoExtend,
+        int idleAutoExtendWaitSeconds,
+        long tabDetachIdleSeconds,
+        int tabDisposeMemoryPercent,
+        long tabUserMemoryBudget) {
+
+    static CoreViewConfig compile(ITreeNode core) {
+        final var refresh = core.getObject("refresh").orElse(MTree.EMPTY_MAP);
+        final var idle = core.getObject("idle").orElse(MTree.EMPTY_MAP);
+        final var tabs = core.getObject("tabs").orElse(MTree.EMPTY_MAP);
+        return new CoreViewConfig(
+                core.getBoolean("uiLostEnabled", false),
+                core.getLong("uiTimeoutSeconds", 60),
+                core.getBoolean("trackBrowserMemoryUsage", true),
+                core.getBoolean("autoDarkMode", false),
+                core.getString("darkMode").map(Boolean::parseBoolean).orElse(null),
+                refresh.getBoolean("adaptive", true),
+                refresh.getLong("idleAfterSeconds", 60),
+                refresh.getLong("idleInterval", 5),
+                refresh.getLong("hiddenInterval", 30),
+                idle.getBoolean("enabled", true),
+                Math.max(90, idle.getInt("notifyBeforeSeconds", 90)),
+                idle.getInt("maxInactiveIntervalSeconds", 0),
+                idle.getBoolean("autoExtend", true),
+                idle.getInt("autoExtendWaitSeconds", 1),
+                tabs.getLong("detachIdleSeconds", 0),
+                tabs.getInt("disposeMemoryPercent", 85),
+                tabs.getLong("userMemoryBudgetMB", 0) * 1024 * 1024);
+    }
+}
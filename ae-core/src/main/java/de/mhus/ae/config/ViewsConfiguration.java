@@ -34,4 +34,8 @@ public class ViewsConfiguration extends AbstractUserRelatedConfig {
         return config().getObject(viewName).orElse(MTree.EMPTY_MAP);
     }
 
+    public CoreViewConfig getCoreConfig() {
+        return view(CoreViewConfig.class, c -> CoreViewConfig.compile(c.getObject("core").orElse(MTree.EMPTY_MAP)));
+    }
+
 }
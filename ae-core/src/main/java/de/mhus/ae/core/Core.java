@@ -21,6 +21,7 @@ package de.mhus.ae.core;
 import com.vaadin.componentfactory.IdleNotification;
 import com.vaadin.componentfactory.ToggleButton;
 import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.ClientCallable;
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.Key;
@@ -54,12 +55,10 @@ import com.vaadin.flow.theme.lumo.LumoIcon;
 import com.vaadin.flow.theme.lumo.LumoUtility;
 import de.mhus.ae.main.MainPanel;
 import de.mhus.commons.tools.MCast;
-import de.mhus.commons.tools.MLang;
 import de.mhus.commons.tools.MObject;
 import de.mhus.commons.tools.MString;
 import de.mhus.commons.tools.MSystem;
 import de.mhus.commons.tools.MThread;
-import de.mhus.commons.tree.MTree;
 import de.mhus.ae.AeApplication;
 import de.mhus.ae.aaa.AaaUser;
 import de.mhus.ae.aaa.LoginConfiguration;
@@ -74,24 +73,22 @@ import de.mhus.ae.config.Configuration;
 import de.mhus.ae.config.ViewsConfiguration;
 import de.mhus.ae.help.HelpAction;
 import de.mhus.ae.help.HelpConfiguration;
+import de.mhus.ae.help.HelpSearchIndex;
+import de.mhus.ae.help.HelpSearchPanel;
 import de.mhus.ae.help.LinkHelpAction;
 import de.mhus.ae.system.ServerSystemService;
+import de.mhus.ae.system.SessionMemoryAccountant;
 import de.mhus.ae.ui.UiUtil;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.security.PermitAll;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeansException;
-import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
-import org.springframework.util.ReflectionUtils;
 import org.vaadin.olli.FileDownloadWrapper;
 
-import java.lang.reflect.Modifier;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -99,8 +96,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 import static de.mhus.commons.tools.MCollection.detached;
@@ -129,11 +125,17 @@ public class Core extends AppLayout {
     AutowireCapableBeanFactory beanFactory;
 
     @Autowired
-    private ScheduledExecutorService scheduler;
+    private CoreTickDispatcher tickDispatcher;
+
+    @Autowired
+    private InjectionPlanCache injectionPlanCache;
 
     @Autowired
     private HelpConfiguration helpConfiguration;
 
+    @Autowired
+    private HelpSearchIndex helpSearchIndex;
+
     @Autowired
     private List<HelpAction> helpActions;
 
@@ -161,19 +163,28 @@ public class Core extends AppLayout {
     @Autowired(required = false)
     private ServerSystemService serverSystemService;
 
+    @Autowired
+    private SessionMemoryAccountant sessionMemoryAccountant;
+
     @Getter
     private DeskTabBar tabBar;
-    private ScheduledFuture<?> closeScheduler;
+    private boolean tickRegistered;
+    private final AtomicBoolean refreshRunning = new AtomicBoolean(false);
     private Span tabTitle;
     private long refreshCounter;
+    private long lastPanelRefresh;
+    private long lastBrowserMemoryCheck;
+    private long lastAutoDarkModeCheck;
     private Button helpToggle;
     private VerticalLayout helpContent;
     private VerticalLayout contentContainer;
     private Component contentContent;
     private IFrame helpBrowser;
+    private HelpSearchPanel helpSearch;
     private ContextMenu helpMenu;
     private UI ui;
     private VaadinSession session;
+    @Getter
     private String sessionId;
     @Getter
     private DeskTab homeTab;
@@ -193,6 +204,17 @@ public class Core extends AppLayout {
     private volatile boolean autoDarkMode = false;
     private MenuItem darkModeToggle;
     private MenuItem autoDarkModeToggle;
+    private boolean adaptiveRefresh = true;
+    private long idleAfterSeconds = 60;
+    private long idleRefreshInterval = 5;
+    private long hiddenRefreshInterval = 30;
+    private long tabDetachIdleSeconds = 0;
+    private int tabDisposeMemoryPercent = 85;
+    private long tabUserMemoryBudget = 0;
+    private long lastTabRelease;
+    @Getter
+    private volatile boolean pageHidden = false;
+    private volatile long lastUserActivity = System.currentTimeMillis();
 
     @PostConstruct
     public void createUi() {
@@ -220,19 +242,25 @@ public class Core extends AppLayout {
             generalContextMenu.addItem("Reload", e -> ui().getPage().reload());
         }
 
-        uiLostEnabled = viewsConfiguration.getConfig("core").getBoolean("uiLostEnabled", uiLostEnabled);
-        uiTemeoutSeconds = viewsConfiguration.getConfig("core").getLong("uiTimeoutSeconds", uiTemeoutSeconds);
-        trackBrowserMemoryUsage = viewsConfiguration.getConfig("core").getBoolean("trackBrowserMemoryUsage", trackBrowserMemoryUsage);
-        autoDarkMode = viewsConfiguration.getConfig("core").getBoolean("autoDarkMode", false);
+        final var coreConfig = viewsConfiguration.getCoreConfig();
+        uiLostEnabled = coreConfig.uiLostEnabled();
+        uiTemeoutSeconds = coreConfig.uiTimeoutSeconds();
+        trackBrowserMemoryUsage = coreConfig.trackBrowserMemoryUsage();
+        autoDarkMode = coreConfig.autoDarkMode();
         if (autoDarkMode) {
             darkMode = false;
             checkAutoDarkMode();
-        } else
-            //noinspection NonAtomicOperationOnVolatileField
-            darkMode = viewsConfiguration.getConfig("core").getBoolean("darkMode", darkMode);
-
-
-        if (closeScheduler != null) {
+        } else if (coreConfig.darkMode() != null)
+            darkMode = coreConfig.darkMode();
+        adaptiveRefresh = coreConfig.adaptiveRefresh();
+        idleAfterSeconds = coreConfig.idleAfterSeconds();
+        idleRefreshInterval = coreConfig.idleRefreshInterval();
+        hiddenRefreshInterval = coreConfig.hiddenRefreshInterval();
+        tabDetachIdleSeconds = coreConfig.tabDetachIdleSeconds();
+        tabDisposeMemoryPercent = coreConfig.tabDisposeMemoryPercent();
+        tabUserMemoryBudget = coreConfig.tabUserMemoryBudget();
+
+        if (tickRegistered) {
             LOGGER.debug("㋡ {} Session already created", sessionId);
             return;
         }
@@ -241,8 +269,9 @@ public class Core extends AppLayout {
         createHeader(user);
         createDrawer();
 
-        LOGGER.debug("㋡ {} Start Refresh Scheduler", sessionId);
-        closeScheduler = scheduler.scheduleAtFixedRate(this::fireRefresh, 1, 1, java.util.concurrent.TimeUnit.SECONDS);
+        LOGGER.debug("㋡ {} Register at tick dispatcher", sessionId);
+        tickDispatcher.register(this);
+        tickRegistered = true;
 
         if (coreListeners != null)
             coreListeners.forEach(l -> l.onCoreCreated(this));
@@ -275,6 +304,10 @@ public class Core extends AppLayout {
         helpBrowser.setSizeFull();
         helpBrowser.getElement().setAttribute("frameborder", "0");
         helpBrowser.setSrc("/docs/index.html");
+        if (helpSearchIndex.isEnabled()) {
+            helpSearch = new HelpSearchPanel(helpSearchIndex, url -> helpBrowser.setSrc(url));
+            helpContent.add(helpSearch);
+        }
         helpContent.add(helpBrowser);
         helpContent.setClassName("helpcontent");
     }
@@ -322,19 +355,49 @@ public class Core extends AppLayout {
             ui.access(() -> {
                 ui.getPage().setTitle("KT2L");
                 switchDarkMode(darkMode);
+                if (adaptiveRefresh)
+                    registerActivityListener();
             });
         });
 
     }
 
+    private void registerActivityListener() {
+        // report page visibility and (throttled) user activity to adapt the refresh interval
+        getElement().executeJs(
+                "var self=this; if (self.__aeActivity) return; self.__aeActivity=true; var last=0;" +
+                "document.addEventListener('visibilitychange', () => self.$server.onPageVisibility(document.hidden));" +
+                "var activity = () => { var now=Date.now(); if (now-last > 10000) { last=now; self.$server.onUserActivity(); } };" +
+                "['mousedown','keydown','wheel','touchstart'].forEach(e => document.addEventListener(e, activity, {passive: true}));" +
+                "self.$server.onPageVisibility(document.hidden);");
+    }
+
+    @ClientCallable
+    private void onPageVisibility(boolean hidden) {
+        LOGGER.trace("㋡ {} Page hidden {}", sessionId, hidden);
+        pageHidden = hidden;
+        if (!hidden) {
+            lastUserActivity = System.currentTimeMillis();
+            tickDispatcher.wakeUp(this);
+        }
+    }
+
+    @ClientCallable
+    private void onUserActivity() {
+        var wasIdle = System.currentTimeMillis() - lastUserActivity > idleAfterSeconds * 1000;
+        lastUserActivity = System.currentTimeMillis();
+        if (wasIdle)
+            tickDispatcher.wakeUp(this);
+    }
+
     private void createIdleNotification() {
-        var idleConf = viewsConfiguration.getConfig("core").getObject("idle").orElse(MTree.EMPTY_MAP);
-        if (idleConf.getBoolean("enabled", true)) {
+        var coreConfig = viewsConfiguration.getCoreConfig();
+        if (coreConfig.idleEnabled()) {
             ui().getChildren().filter(c -> c instanceof IdleNotification).forEach(ui()::remove);
             LOGGER.debug("㋡ {} Create Idle Notification for UI {}", sessionId, Objects.hashCode(ui));
             IdleNotification idleNotification = new IdleNotification();
-            idleNotification.setSecondsBeforeNotification( Math.max( 90, idleConf.getInt("notifyBeforeSeconds", 90)) );
-            var maxInactiveInterval = idleConf.getInt("maxInactiveIntervalSeconds", 0);
+            idleNotification.setSecondsBeforeNotification( coreConfig.idleNotifyBeforeSeconds() );
+            var maxInactiveInterval = coreConfig.idleMaxInactiveIntervalSeconds();
             if (maxInactiveInterval > 0)
                 idleNotification.setMaxInactiveInterval( maxInactiveInterval );
             idleNotification.setMessage("Your session will expire in " +
@@ -349,11 +412,11 @@ public class Core extends AppLayout {
             });
             idleNotification.addOpenListener(event -> {
                 LOGGER.debug("㋡ {} Idle Notification Opened", sessionId);
-                if (idleConf.getBoolean("autoExtend", true))
+                if (coreConfig.idleAutoExtend())
                     idleNotification.getElement().executeJs(
                             "var self=this;setTimeout(() => { try {self.click(); }" +
                                     " catch (error) {console.log(error);} }, " +
-                                    idleConf.getInt("autoExtendWaitSeconds", 1) * 1000 +
+                                    coreConfig.idleAutoExtendWaitSeconds() * 1000 +
                                     ");");
             });
             ui().add(idleNotification);
@@ -363,8 +426,7 @@ public class Core extends AppLayout {
     protected synchronized void closeSession() {
         if (session == null) return;
         LOGGER.debug("㋡ {} Close Session", sessionId);
-        if (closeScheduler != null)
-            closeScheduler.cancel(false);
+        tickDispatcher.unregister(this);
         if (tabBar != null)
             detached(tabBar.getTabs()).forEach(DeskTab::closeTab);
         if (coreListeners != null)
@@ -598,8 +660,43 @@ public class Core extends AppLayout {
         ).setReproducable(true).select();
     }
 
-    private void fireRefresh() {
+    /**
+     * Called by the tick dispatcher before the refresh is dispatched. Sessions without attached UI
+     * and without a refreshable panel are skipped unless a periodic check is due.
+     */
+    boolean isRefreshRequired(long counter) {
+        if (session == null) return false;
+        if (ui == null) return uiLostEnabled && uiLost > 0;
+        if (trackBrowserMemoryUsage && counter - lastBrowserMemoryCheck >= 300) return true;
+        if (autoDarkMode && counter - lastAutoDarkModeCheck >= 15) return true;
+        if (counter - lastTabRelease >= 30) return true;
+        final var selected = tabBar == null ? null : tabBar.getSelectedTab();
+        return selected != null && selected.getPanel() instanceof DeskTabListener;
+    }
+
+    /**
+     * Returns the number of ticks until the next refresh. It's the interval requested by the selected
+     * panel, stretched if the page is hidden or the user was not active for a while.
+     */
+    long getTickInterval() {
+        long interval = 1;
+        final var selected = tabBar == null ? null : tabBar.getSelectedTab();
+        if (selected != null && selected.getPanel() instanceof DeskTabListener deskTabListener)
+            interval = Math.max(1, deskTabListener.getRefreshInterval());
+        if (!adaptiveRefresh) return interval;
+        if (pageHidden)
+            return Math.max(interval, hiddenRefreshInterval);
+        if (System.currentTimeMillis() - lastUserActivity > idleAfterSeconds * 1000)
+            return Math.max(interval, idleRefreshInterval);
+        return interval;
+    }
+
+    void fireRefresh(long counter) {
         if (session == null) return;
+        if (!refreshRunning.compareAndSet(false, true)) {
+            LOGGER.debug("㋡ {} Refresh still running, skip tick {}", sessionId, counter);
+            return;
+        }
         try {
             LOGGER.trace("㋡ {} Refresh for session {}", sessionId, session);
             if (uiLostEnabled && ui == null && uiLost > 0) {
@@ -609,9 +706,10 @@ public class Core extends AppLayout {
                 }
                 return;
             }
-            refreshCounter++;
+            refreshCounter = counter;
             // get browser info
-            if (trackBrowserMemoryUsage &&  refreshCounter % 300 == 0 && ui != null) {
+            if (trackBrowserMemoryUsage && refreshCounter - lastBrowserMemoryCheck >= 300 && ui != null) {
+                lastBrowserMemoryCheck = refreshCounter;
                 ui.access(() -> {
                     getElement().executeJs("return performance && performance.memory ? performance.memory.jsHeapSizeLimit + \" \" + performance.memory.totalJSHeapSize + \" \" + performance.memory.usedJSHeapSize : \"\"").then(String.class, value -> {
                         if (!isBlank(value)) {
@@ -622,20 +720,33 @@ public class Core extends AppLayout {
                 });
             }
             // check for dark mode
-            if (autoDarkMode && refreshCounter % 15 == 0) {
+            if (autoDarkMode && refreshCounter - lastAutoDarkModeCheck >= 15) {
+                lastAutoDarkModeCheck = refreshCounter;
                 checkAutoDarkMode();
             }
+            // release idle tabs
+            if (refreshCounter - lastTabRelease >= 30 && ui != null && tabBar != null) {
+                lastTabRelease = refreshCounter;
+                ui.access(() -> {
+                    tabBar.releaseIdleTabs(tabDetachIdleSeconds, tabDisposeMemoryPercent);
+                    sessionMemoryAccountant.account(this, tabUserMemoryBudget);
+                });
+            }
             // refresh selected tab
             final var selected = tabBar.getSelectedTab();
             if (selected != null) {
                 final var panel = selected.getPanel();
-                if (panel instanceof DeskTabListener deskTabListener) {
+                if (panel instanceof DeskTabListener deskTabListener
+                        && refreshCounter - lastPanelRefresh >= deskTabListener.getRefreshInterval()) {
                     LOGGER.trace("㋡ {} Refresh selected panel {}", sessionId, deskTabListener.getClass());
+                    lastPanelRefresh = refreshCounter;
                     deskTabListener.tabRefresh(refreshCounter);
                 }
             }
         } catch (Exception e) {
             LOGGER.error("㋡ {} Error refreshing", sessionId, e);
+        } finally {
+            refreshRunning.set(false);
         }
     }
 
@@ -661,6 +772,8 @@ public class Core extends AppLayout {
     public void setHelpUrl(String url) {
         if (!helpConfiguration.isEnabled()) return;
         helpContent.removeAll();
+        if (helpSearch != null)
+            helpContent.add(helpSearch);
         helpContent.add(helpBrowser);
         helpBrowser.setSrc(url);
         showHelp(true);
@@ -707,73 +820,11 @@ public class Core extends AppLayout {
         if (object == null) return;
         // beanFactory.autowireBean(object);
         // hello native image ....
-        var className = object.getClass().getCanonicalName();
         try {
-            // inject fields
-            ReflectionUtils.doWithFields(object.getClass(), field -> {
-                try {
-                    var anno = field.getAnnotation(Autowired.class);
-                    field.setAccessible(true);
-                    // if (field.get(object) != null) continue;
-
-                    if (field.getType() == List.class) {
-                        var genericType = field.getGenericType().getTypeName();
-                        var listType = genericType.substring(genericType.indexOf("<") + 1, genericType.indexOf(">"));
-                        var beanList = new ArrayList<>(springContext.getBeansOfType(Class.forName(listType)).values());
-                        field.set(object, beanList);
-                    } else {
-                        var bean = MLang.tryThis(() -> (Object) beanFactory.getBean(field.getName(), field.getType()))
-                                .orElseTry(() -> (Object) beanFactory.getBean(field.getType()))
-                                .orElseTry(() -> beanFactory.getBean(field.getName()))
-                                .orElse(null);
-                        if (bean == null) {
-                            if (anno.required()) {
-                                LOGGER.error("Bean not found: {} {} in class {}", field.getName(), field.getType(), className, new Exception());
-                                throw new BeanCreationException("Bean not found: %s %s in class %s".formatted(field.getName(), field.getType(), className));
-                            }
-                        } else {
-                            field.set(object, bean);
-                        }
-                    }
-                } catch (BeansException e) {
-                    throw e;
-                } catch (Exception e) {
-                    LOGGER.error("Error in {} {}", className, field.getName(), e);
-                }
-            }, field -> field.getAnnotation(Autowired.class) != null && !Modifier.isStatic(field.getModifiers()));
-            // inject methods
-            ReflectionUtils.doWithMethods(object.getClass(), method -> {
-                try {
-                    var anno = method.getAnnotation(Autowired.class);
-                    if (anno == null) return;
-                    var params = Arrays.stream(method.getParameters()).map(p -> {
-                        try {
-                            return beanFactory.getBean(p.getType());
-                        } catch (Exception e) {
-                            LOGGER.error("Error in {} {}", className, method.getName(), e);
-                            return null;
-                        }
-                    }).toArray();
-                    method.invoke(object, params);
-                } catch (Exception e) {
-                    LOGGER.error("Error in {} {}", className, method.getName(), e);
-                }
-            }, method -> method.getAnnotation(Autowired.class) != null && !Modifier.isStatic(method.getModifiers()));
-            // execute post construct
-            ReflectionUtils.doWithMethods(object.getClass(), method -> {
-                try {
-                    var anno = method.getAnnotation(PostConstruct.class);
-                    if (anno == null) return;
-                    method.invoke(object);
-                } catch (Exception e) {
-                    LOGGER.error("Error in {} {}", className, method.getName(), e);
-                }
-            }, method -> method.getAnnotation(PostConstruct.class) != null && !Modifier.isStatic(method.getModifiers()));
-
+            injectionPlanCache.autowireObject(object);
         } catch (Exception e) {
-            LOGGER.error("Error in {}", className, e);
+            LOGGER.error("Error in {}", object.getClass().getCanonicalName(), e);
         }
-
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.core;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Central refresh tick for all Core sessions. Instead of one periodic task per session a single
+ * timer wheel with one slot per second is driven by the shared scheduler. On each tick the cores
+ * of the current slot are dispatched in batches on virtual threads and re-queued with the refresh
+ * interval the core requests, so idle or hidden sessions are woken up less often.
+ * <p>
+ * Only the tick thread touches the wheel. register() and wakeUp() hand the core over with a queue that
+ * is drained at the start of the next tick, so a core can't be inserted into a slot that is just drained.
+ */
+@Slf4j
+@Component
+public class CoreTickDispatcher {
+
+    static final int WHEEL_SIZE = 64;
+    private static final long TICK_MILLIS = 1000;
+    private static final long PENDING = -1;
+
+    @Autowired
+    private ScheduledExecutorService scheduler;
+
+    @Value("${kt2l.core.tickBatchSize:50}")
+    private int batchSize;
+
+    @SuppressWarnings("unchecked")
+    private final ConcurrentLinkedQueue<Core>[] wheel = new ConcurrentLinkedQueue[WHEEL_SIZE];
+    private final Map<Core, Long> scheduled = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Core> requests = new ConcurrentLinkedQueue<>();
+    private ScheduledFuture<?> tickFuture;
+    private long startTime;
+
+    @Getter
+    private volatile long tick;
+    @Getter
+    private volatile long tickLag;
+    @Getter
+    private volatile long maxTickLag;
+    @Getter
+    private volatile long dispatchTime;
+    @Getter
+    private volatile long maxDispatchTime;
+    @Getter
+    private volatile int dispatchedCores;
+    @Getter
+    private volatile int skippedCores;
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < WHEEL_SIZE; i++)
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        startTime = System.currentTimeMillis();
+        LOGGER.debug("㋡ Start core tick dispatcher with batch size {}", batchSize);
+        tickFuture = scheduler.scheduleAtFixedRate(this::onTick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (tickFuture != null)
+            tickFuture.cancel(false);
+    }
+
+    public void register(Core core) {
+        if (scheduled.putIfAbsent(core, PENDING) != null) return;
+        requests.add(core);
+    }
+
+    public void unregister(Core core) {
+        scheduled.remove(core);
+    }
+
+    /**
+     * Move the next refresh of the core to the next tick, e.g. if the page gets visible again.
+     */
+    public void wakeUp(Core core) {
+        final var current = scheduled.get(core);
+        if (current == null || current == PENDING || current <= tick + 1) return;
+        requests.add(core);
+    }
+
+    public int getRegisteredCores() {
+        return scheduled.size();
+    }
+
+    private void schedule(Core core, long nextTick) {
+        // replace only, a concurrently unregistered core stays unregistered
+        if (scheduled.replace(core, nextTick) != null)
+            wheel[(int) (nextTick % WHEEL_SIZE)].add(core);
+    }
+
+    /**
+     * Move registered and woken up cores into the slot of the current tick.
+     */
+    private void drainRequests(long current) {
+        Core core;
+        while ((core = requests.poll()) != null) {
+            final var nextTick = scheduled.get(core);
+            if (nextTick == null) continue; // unregistered meanwhile
+            if (nextTick == PENDING || nextTick > current)
+                schedule(core, current);
+        }
+    }
+
+    private void onTick() {
+        try {
+            final var current = ++tick;
+            final var now = System.currentTimeMillis();
+            tickLag = Math.max(0, now - startTime - current * TICK_MILLIS);
+            maxTickLag = Math.max(maxTickLag, tickLag);
+
+            drainRequests(current);
+            final var slot = wheel[(int) (current % WHEEL_SIZE)];
+            final List<Core> due = new ArrayList<>();
+            int skipped = 0;
+            Core core;
+            while ((core = slot.poll()) != null) {
+                final var nextTick = scheduled.get(core);
+                if (nextTick == null) continue; // unregistered, drop from wheel
+                if (nextTick != current) continue; // stale entry, core was rescheduled by wakeUp
+                schedule(core, current + Math.max(1, Math.min(core.getTickInterval(), WHEEL_SIZE - 1)));
+                if (core.isRefreshRequired(current))
+                    due.add(core);
+                else
+                    skipped++;
+            }
+            skippedCores = skipped;
+            dispatchedCores = due.size();
+            if (due.isEmpty()) {
+                dispatchTime = 0;
+                return;
+            }
+
+            final var size = Math.max(1, batchSize);
+            final var pending = new AtomicInteger((due.size() + size - 1) / size);
+            for (int i = 0; i < due.size(); i += size) {
+                final var batch = due.subList(i, Math.min(due.size(), i + size));
+                Thread.startVirtualThread(() -> {
+                    for (var c : batch)
+                        c.fireRefresh(current);
+                    if (pending.decrementAndGet() == 0) {
+                        dispatchTime = System.currentTimeMillis() - now;
+                        maxDispatchTime = Math.max(maxDispatchTime, dispatchTime);
+                    }
+                });
+            }
+        } catch (Exception e) {
+            LOGGER.error("㋡ Error in core tick dispatcher", e);
+        }
+    }
+
+}
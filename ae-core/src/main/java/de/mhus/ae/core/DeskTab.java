@@ -25,6 +25,8 @@ import com.vaadin.flow.component.icon.AbstractIcon;
 import com.vaadin.flow.component.icon.Icon;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.dom.Element;
+import de.mhus.commons.lang.Function0;
 import de.mhus.ae.config.ViewsConfiguration;
 import de.mhus.ae.ui.UiUtil;
 import lombok.Getter;
@@ -35,6 +37,8 @@ import java.util.Arrays;
 @Slf4j
 public class DeskTab extends HorizontalLayout {
 
+    static final long ELEMENT_SIZE_ESTIMATE = 1024;
+
     private final AbstractIcon icon;
     @Getter
     private final String tabId;
@@ -58,11 +62,29 @@ public class DeskTab extends HorizontalLayout {
     private boolean reproducable = false;
     @Getter
     private boolean panelClosed = false;
+    private final Function0<Component> panelCreator;
+    /**
+     * Time the tab was unselected last time, 0 if selected or never selected.
+     */
+    @Getter
+    private long unselectedSince;
 
 //    @Getter
 //    private Map<String, Object> parameters = new HashMap<>();
 
     public DeskTab(String tabId, String title, boolean closeable, AbstractIcon icon, Component panel) {
+        this(tabId, title, closeable, icon, panel, null);
+    }
+
+    /**
+     * Create a tab with a lazy panel. The panel is created if the tab is selected the first time.
+     */
+    public DeskTab(String tabId, String title, boolean closeable, AbstractIcon icon, Function0<Component> panelCreator) {
+        this(tabId, title, closeable, icon, null, panelCreator);
+    }
+
+    private DeskTab(String tabId, String title, boolean closeable, AbstractIcon icon, Component panel, Function0<Component> panelCreator) {
+        this.panelCreator = panelCreator;
         if (icon == null)
             icon = VaadinIcon.FILE.create();
         this.icon = icon;
@@ -107,11 +129,72 @@ public class DeskTab extends HorizontalLayout {
 
     public void setTabViewer(DeskTabBar tabViewer) {
         this.tabBar = tabViewer;
+        if (panel != null)
+            autowirePanel();
+    }
+
+    private void autowirePanel() {
         var vb = tabBar.getCore().getBean(ViewsConfiguration.class);
         LOGGER.debug("Autowire {} {} and config {}", getWindowTitle(), panel, vb);
         tabBar.getCore().autowireObject(panel);
     }
 
+    /**
+     * Return true if the panel is created. Lazy panels are created on first selection.
+     */
+    public boolean isPanelCreated() {
+        return panel != null;
+    }
+
+    /**
+     * Return true if the panel can be disposed and created again.
+     */
+    boolean canRecreatePanel() {
+        return panelCreator != null && reproducable;
+    }
+
+    // internal, called by the tab bar
+    boolean createPanel() throws Exception {
+        if (panel != null) return false;
+        if (panelCreator == null) return false;
+        panel = panelCreator.apply();
+        if (panel != null)
+            autowirePanel();
+        return panel != null;
+    }
+
+    // internal, called by the tab bar
+    void disposePanel() {
+        panel = null;
+    }
+
+    // internal, called by the tab bar
+    void setSelectedState(boolean selected) {
+        unselectedSince = selected ? 0 : System.currentTimeMillis();
+    }
+
+    /**
+     * Return the number of elements of the panel in the state tree, 0 if the panel is not created.
+     * An element needs roughly one kilobyte on the server, see getRetainedSizeEstimate().
+     */
+    public long getRetainedElements() {
+        return panel == null ? 0 : countElements(panel.getElement());
+    }
+
+    /**
+     * Rough estimation of the retained size of the panel in bytes.
+     */
+    public long getRetainedSizeEstimate() {
+        return getRetainedElements() * ELEMENT_SIZE_ESTIMATE;
+    }
+
+    private static long countElements(Element element) {
+        long count = 1;
+        for (int i = 0; i < element.getChildCount(); i++)
+            count += countElements(element.getChild(i));
+        return count;
+    }
+
     public DeskTab setParentTab(DeskTab parent) {
         this.parentTab = parent;
         return this;
@@ -25,14 +25,19 @@ import com.vaadin.flow.component.Shortcuts;
 import com.vaadin.flow.component.icon.AbstractIcon;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import de.mhus.commons.lang.Function0;
-import de.mhus.commons.tools.MCollection;
 import de.mhus.ae.ui.UiUtil;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.LinkedList;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import static de.mhus.commons.tools.MLang.tryThis;
 
@@ -41,7 +46,9 @@ public class DeskTabBar extends VerticalLayout {
 
     private final Core core;
     private final VerticalLayout content;
-    private List<DeskTab> tabs = new LinkedList<>();
+    private final Set<DeskTab> tabs = new LinkedHashSet<>();
+    private final Map<String, List<DeskTab>> tabsById = new HashMap<>();
+    private final Set<String> panelIds = new HashSet<>();
     private DeskTab selectedTab;
     /**
      * Preserve mode will keep the panel in the content area even if the tab is not selected.
@@ -80,41 +87,55 @@ public class DeskTabBar extends VerticalLayout {
                 return tab.get();
             }
         }
-        try {
-            final var newTab = new DeskTab(id, title, closeable, icon, panelCreator.apply());
-            return addTab(newTab);
-        } catch (Exception e) {
-            LOGGER.error("addTab {}", id, e);
-            UiUtil.showErrorNotification("Error open '" + title + "': " + e.getMessage());
-            return null;
-        }
+        // the panel is created on first selection
+        return addTab(new DeskTab(id, title, closeable, icon, panelCreator));
     }
 
     public synchronized DeskTab addTab(DeskTab tab) {
-        // unique panel id before adding
-        if (tab.getPanel() != null) {
-            var tabId = UiUtil.normalizeId(tab.getTabId());
-            var listOfIds = tabs.stream().filter(t -> t.getPanel() != null).map(t -> t.getPanel().getId() ).collect(Collectors.toSet());
-            while (listOfIds.contains(tabId)) {
-                tabId = tabId + "_";
-            }
-            tab.getPanel().setId(UiUtil.normalizeId(tab.getTabId()));
-        }
         // add
         tabs.add(tab);
+        tabsById.computeIfAbsent(tab.getTabId(), k -> new ArrayList<>(1)).add(tab);
         tab.setTabViewer(this);
         add(tab);
+        if (tab.isPanelCreated())
+            initPanel(tab);
+        return tab;
+    }
+
+    /**
+     * Create the panel of a lazy tab. Returns false if the panel can't be created.
+     */
+    private boolean createPanel(DeskTab tab) {
+        if (tab.isPanelCreated()) return true;
+        try {
+            if (!tab.createPanel()) return false;
+        } catch (Exception e) {
+            LOGGER.error("createPanel {}", tab.getTabId(), e);
+            UiUtil.showErrorNotification("Error open '" + tab.getWindowTitle() + "': " + e.getMessage());
+            return false;
+        }
+        initPanel(tab);
+        return true;
+    }
+
+    private void initPanel(DeskTab tab) {
+        // unique panel id
+        var tabId = UiUtil.normalizeId(tab.getTabId());
+        while (panelIds.contains(tabId)) {
+            tabId = tabId + "_";
+        }
+        panelIds.add(tabId);
+        tab.getPanel().setId(tabId);
         // fire init
-        if (tab.getPanel() != null && tab.getPanel() instanceof DeskTabListener deskTabListener) {
+        if (tab.getPanel() instanceof DeskTabListener deskTabListener) {
             tryThis(() -> deskTabListener.tabInit(tab)).onFailure(e -> LOGGER.warn("TabListener:tabInit failed", e));
         }
         // add to preserve content if needed
-        if (preserveMode && !tab.isReproducable() && tab.getPanel() != null) {
+        if (preserveMode && !tab.isReproducable()) {
             var panel = tab.getPanel();
             panel.addClassName("hidden-tab");
             content.add(panel);
         }
-        return tab;
     }
 
     // internal, use getTab().closeTab()
@@ -122,23 +143,46 @@ public class DeskTabBar extends VerticalLayout {
         // select another tab
         if (selectedTab == tab) {
             setSelected(
-                    MCollection.contains(tabs, selectedTab.getParentTab())
+                    tabs.contains(selectedTab.getParentTab())
                             ? selectedTab.getParentTab() : null );
         }
         // fire destroy
         if (tab.getPanel() != null && tab.getPanel() instanceof DeskTabListener deskTabListener)
             tryThis(() -> deskTabListener.tabDestroyed()).onFailure(e -> LOGGER.warn("TabListener:tabDestroyed failed", e));
         // remove
-        tabs.remove(tab);
-        content.remove(tab.getPanel());
+        removeFromIndex(tab);
+        if (tab.getPanel() != null)
+            content.remove(tab.getPanel());
         remove(tab);
     }
 
-    public Optional<DeskTab> getTab(String main) {
-        return tabs.stream().filter(t -> t.getTabId().equals(main)).findFirst();
+    public synchronized Optional<DeskTab> getTab(String main) {
+        final var list = tabsById.get(main);
+        return list == null ? Optional.empty() : Optional.of(list.get(0));
+    }
+
+    private void removeFromIndex(DeskTab tab) {
+        if (!tabs.remove(tab)) return;
+        final var list = tabsById.get(tab.getTabId());
+        if (list != null) {
+            list.remove(tab);
+            if (list.isEmpty())
+                tabsById.remove(tab.getTabId());
+        }
+        releasePanelId(tab);
+    }
+
+    private void releasePanelId(DeskTab tab) {
+        if (tab.getPanel() != null)
+            tab.getPanel().getId().ifPresent(panelIds::remove);
+    }
+
+    private DeskTab firstTab() {
+        return tabs.isEmpty() ? null : tabs.iterator().next();
     }
 
     public synchronized void setSelected(DeskTab tab) {
+        final var previousTab = selectedTab;
         // deselect
         if (selectedTab != null) {
             if (selectedTab.getPanel() != null) {
@@ -149,21 +193,44 @@ public class DeskTabBar extends VerticalLayout {
                     content.remove(selectedTab.getPanel());
             }
         }
+        if (selectedTab != null)
+            selectedTab.setSelectedState(false);
         // select fallback
-        if (tab == null && !tabs.isEmpty() && tabs.get(0) != selectedTab) {
-            tab = tabs.get(0);
-        }
-        // cleanup tab buttons
-        final var finalTab = tab;
-        tabs.forEach(t -> t.setShowButtonAsSelected(t == finalTab));
-        // cleanup content classes
-        if (preserveMode)
-            tabs.forEach(t -> tryThis(() -> {if (t == finalTab) t.getPanel().removeClassName("hidden-tab"); else t.getPanel().addClassName("hidden-tab");  } ));
+        if (tab == null && !tabs.isEmpty() && firstTab() != selectedTab) {
+            tab = firstTab();
+        }
+        // create lazy panel
+        if (tab != null && !createPanel(tab)) {
+            final var failedTab = tab;
+            tab = failedTab.getParentTab() != null && tabs.contains(failedTab.getParentTab()) ? failedTab.getParentTab() : null;
+            removeFromIndex(failedTab);
+            remove(failedTab);
+            if (tab == null && !tabs.isEmpty())
+                tab = firstTab();
+            if (tab != null && !createPanel(tab))
+                tab = null;
+        }
+        // update tab buttons and content classes, only the previous and the new tab are changed
+        if (previousTab != tab) {
+            final var finalTab = tab;
+            if (previousTab != null && tabs.contains(previousTab)) {
+                previousTab.setShowButtonAsSelected(false);
+                if (preserveMode && previousTab.isPanelCreated())
+                    tryThis(() -> previousTab.getPanel().addClassName("hidden-tab"));
+            }
+            if (finalTab != null) {
+                finalTab.setShowButtonAsSelected(true);
+                if (preserveMode)
+                    tryThis(() -> finalTab.getPanel().removeClassName("hidden-tab"));
+            }
+        }
         // select
         selectedTab = tab;
         if (selectedTab != null) {
+            selectedTab.setSelectedState(true);
             if (selectedTab.getPanel() != null) {
-                if (!preserveMode || selectedTab.isReproducable()) {
+                // reproducable panels and detached idle panels are not in the content
+                if (!preserveMode || selectedTab.isReproducable() || selectedTab.getPanel().getParent().isEmpty()) {
                     content.add(selectedTab.getPanel());
                 }
                 if (selectedTab.getPanel() instanceof DeskTabListener deskTabListener) {
@@ -184,8 +251,74 @@ public class DeskTabBar extends VerticalLayout {
         return selectedTab;
     }
 
-    public List<DeskTab> getTabs() {
-        return tabs;
+    /**
+     * Return a snapshot of the tabs in order.
+     */
+    public synchronized List<DeskTab> getTabs() {
+        return new ArrayList<>(tabs);
+    }
+
+    /**
+     * Release resources of tabs not in use. Preserved panels not selected for detachIdleSeconds are removed
+     * from the content and added again if selected, the server side state is kept. If the heap usage after the
+     * last garbage collection is above disposeMemoryPercent the panels of not selected reproducable tabs are
+     * destroyed and created again on next selection. Must be called in the UI thread.
+     *
+     * @param detachIdleSeconds Seconds until a preserved panel is detached, 0 to disable
+     * @param disposeMemoryPercent Heap usage in percent to dispose reproducable panels, 0 to disable
+     */
+    void releaseIdleTabs(long detachIdleSeconds, int disposeMemoryPercent) {
+        releaseIdleTabs(detachIdleSeconds, disposeMemoryPercent, disposeMemoryPercent > 0 ? heapUsageAfterGcPercent() : 0);
+    }
+
+    synchronized void releaseIdleTabs(long detachIdleSeconds, int disposeMemoryPercent, int heapUsagePercent) {
+        final var now = System.currentTimeMillis();
+        final var memoryPressure = disposeMemoryPercent > 0 && heapUsagePercent >= disposeMemoryPercent;
+        // collect first, tabDestroyed() listeners may close tabs and modify the tab list
+        final var dispose = new ArrayList<DeskTab>();
+        final var detach = new ArrayList<DeskTab>();
+        for (var tab : tabs) {
+            if (tab == selectedTab || tab.getPanel() == null || tab.getUnselectedSince() == 0) continue;
+            if (memoryPressure && tab.canRecreatePanel())
+                dispose.add(tab);
+            else if (preserveMode && detachIdleSeconds > 0 && !tab.isReproducable()
+                    && tab.getPanel().getParent().isPresent()
+                    && now - tab.getUnselectedSince() > detachIdleSeconds * 1000)
+                detach.add(tab);
+        }
+        for (var tab : dispose) {
+            // closed or selected by a listener meanwhile
+            if (tab == selectedTab || !tabs.contains(tab) || tab.getPanel() == null) continue;
+            LOGGER.debug("Dispose panel of tab {} because of memory pressure", tab.getTabId());
+            if (tab.getPanel() instanceof DeskTabListener deskTabListener)
+                tryThis(() -> deskTabListener.tabDestroyed()).onFailure(e -> LOGGER.warn("TabListener:tabDestroyed failed", e));
+            if (tab == selectedTab || !tabs.contains(tab) || tab.getPanel() == null) continue;
+            content.remove(tab.getPanel());
+            releasePanelId(tab);
+            tab.disposePanel();
+        }
+        for (var tab : detach) {
+            if (tab == selectedTab || !tabs.contains(tab) || tab.getPanel() == null) continue;
+            LOGGER.debug("Detach idle panel of tab {}", tab.getTabId());
+            content.remove(tab.getPanel());
+        }
+    }
+
+    /**
+     * Return the heap still used after the last collection of each heap pool in percent of the maximum heap.
+     * Unlike used heap it does not count garbage waiting for the next collection.
+     */
+    static int heapUsageAfterGcPercent() {
+        final var max = Runtime.getRuntime().maxMemory();
+        if (max <= 0 || max == Long.MAX_VALUE) return 0;
+        var used = 0L;
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP) continue;
+            final var usage = pool.getCollectionUsage();
+            if (usage != null)
+                used += usage.getUsed();
+        }
+        return (int) (used * 100 / max);
     }
 
     void updateWindowTitle(DeskTab deskTab) {
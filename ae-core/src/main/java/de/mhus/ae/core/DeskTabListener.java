@@ -26,4 +26,14 @@ public interface DeskTabListener {
 
     void tabRefresh(long counter);
 
+    /**
+     * Desired refresh interval in seconds while the page is visible and the user is active.
+     * The core will back off if the page is hidden or idle.
+     *
+     * @return Interval in seconds, default is every second
+     */
+    default long getRefreshInterval() {
+        return 1;
+    }
+
 }
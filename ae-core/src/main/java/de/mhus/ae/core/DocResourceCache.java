@@ -0,0 +1,179 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Size bounded in-memory cache of the documentation resources in the class path (public/docs). Entries hold
+ * the content, a precomputed gzip variant for text resources, the content type and a strong ETag. The least
+ * recently used entries are evicted if the cache exceeds kt2l.docs.cache.maxSize bytes.
+ */
+@Slf4j
+@Component
+public class DocResourceCache {
+
+    static final String DOCS_ROOT = "/META-INF/resources/public/docs";
+    private static final int GZIP_MIN_SIZE = 1024;
+
+    @Value("${kt2l.docs.cache.maxSize:16777216}")
+    private long maxSize;
+    @Value("${kt2l.docs.cache.maxEntrySize:1048576}")
+    private long maxEntrySize;
+
+    private final LinkedHashMap<String, DocResource> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long size;
+    private long hits;
+    private long misses;
+
+    /**
+     * Return the resource for the normalized path (starting with '/') or empty if not found.
+     */
+    public Optional<DocResource> get(String path) throws IOException {
+        synchronized (this) {
+            final var entry = entries.get(path);
+            if (entry != null) {
+                hits++;
+                return Optional.of(entry);
+            }
+            misses++;
+        }
+        final var resource = load(path);
+        if (resource == null) return Optional.empty();
+        if (resource.size() <= maxEntrySize)
+            put(path, resource);
+        return Optional.of(resource);
+    }
+
+    private synchronized void put(String path, DocResource resource) {
+        final var old = entries.put(path, resource);
+        if (old != null) size -= old.size();
+        size += resource.size();
+        final var iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            final var eldest = iterator.next();
+            if (eldest.getValue() == resource) continue;
+            size -= eldest.getValue().size();
+            iterator.remove();
+        }
+    }
+
+    private DocResource load(String path) throws IOException {
+        try (final var stream = getClass().getResourceAsStream(DOCS_ROOT + path)) {
+            if (stream == null) return null;
+            final var content = stream.readAllBytes();
+            LOGGER.debug("Load doc resource {} ({} bytes)", path, content.length);
+            return DocResource.of(path, content);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    static String contentType(String path) {
+        final var mediaType = MediaTypeFactory.getMediaType(path).orElse(null);
+        if (mediaType == null)
+            return "application/octet-stream";
+        if (isText(mediaType.getType(), mediaType.getSubtype()))
+            return mediaType + ";charset=UTF-8";
+        return mediaType.toString();
+    }
+
+    private static boolean isText(String type, String subtype) {
+        return "text".equals(type)
+                || subtype.equals("javascript")
+                || subtype.equals("json")
+                || subtype.endsWith("+xml")
+                || subtype.equals("xml");
+    }
+
+    static String etag(byte[] content) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        final var out = new ByteArrayOutputStream(content.length / 2);
+        try (final var gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A cached documentation resource. gzipContent is null if compression is not useful.
+     */
+    public record DocResource(byte[] content, byte[] gzipContent, String contentType, String etag) {
+
+        static DocResource of(String path, byte[] content) throws IOException {
+            final var contentType = DocResourceCache.contentType(path);
+            byte[] gzipContent = null;
+            if (content.length >= GZIP_MIN_SIZE && contentType.endsWith(";charset=UTF-8")) {
+                gzipContent = gzip(content);
+                if (gzipContent.length >= content.length)
+                    gzipContent = null;
+            }
+            return new DocResource(content, gzipContent, contentType, DocResourceCache.etag(content));
+        }
+
+        public long size() {
+            return content.length + (gzipContent == null ? 0 : gzipContent.length);
+        }
+
+        /**
+         * ETag of the gzip encoded content, the tag of the content with a -gz suffix.
+         */
+        public String gzipETag() {
+            return etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
+    }
+}
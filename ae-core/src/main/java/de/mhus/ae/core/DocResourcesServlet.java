@@ -18,38 +18,258 @@
 package de.mhus.ae.core;
 
 import de.mhus.commons.tools.MLang;
+import de.mhus.commons.tools.MString;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.util.StreamUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Serves the docs from the class path cache or, if kt2l.docs.directory is set, from a directory. Files of
+ * the directory support single byte ranges. Larger files are handed to the container with the Tomcat sendfile
+ * request attributes if supported, otherwise they are copied to the response stream.
+ */
 @Slf4j
 @RestController
 @RequestMapping("/docs")
 public class DocResourcesServlet {
 
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // same threshold as the Tomcat default servlet, smaller files are cheaper to copy
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    @Autowired
+    private DocResourceCache cache;
+
+    @Value("${kt2l.docs.cache.maxAgeSeconds:3600}")
+    private long maxAgeSeconds;
+
+    /**
+     * If set, docs are served from this directory instead of the class path.
+     */
+    @Value("${kt2l.docs.directory:}")
+    private String docsDirectory;
+
+    private Path docsRoot;
+
+    @PostConstruct
+    public void init() {
+        if (MString.isEmptyTrim(docsDirectory)) return;
+        try {
+            docsRoot = Path.of(docsDirectory).toRealPath();
+            LOGGER.info("Serve docs from directory {}", docsRoot);
+        } catch (IOException e) {
+            LOGGER.error("Docs directory {} not found, serve docs from class path", docsDirectory, e);
+        }
+    }
+
     @GetMapping("/**")
     public void proxy(final HttpServletRequest request, final HttpServletResponse response) {
         final var path =  request.getServletPath().replaceFirst("/docs/*", "/");
-        final var resource = getClass().getResourceAsStream("/META-INF/resources/public/docs" + path);
-        if (resource == null) {
-            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            response.setContentType("text/plain");
-            MLang.tryThis(() -> response.getWriter().write("Resource not found"));
+        if (docsRoot != null) {
+            serveFile(path, request, response);
             return;
         }
-        try (final var outputStream = response.getOutputStream()) {
-            response.setContentType("text/html");
+        try {
+            final var resource = isValidPath(path) ? cache.get(path).orElse(null) : null;
+            if (resource == null) {
+                sendError(response, HttpServletResponse.SC_NOT_FOUND, "Resource not found");
+                return;
+            }
+            final var gzip = resource.gzipContent() != null && acceptsGzip(request.getHeader("Accept-Encoding"));
+            // the gzip encoded bytes are a different representation and need their own strong tag
+            final var etag = gzip ? resource.gzipETag() : resource.etag();
+            response.setHeader("ETag", etag);
+            response.setHeader("Cache-Control", "public, max-age=" + maxAgeSeconds);
+            response.setHeader("Vary", "Accept-Encoding");
+            if (matchesETag(request.getHeader("If-None-Match"), etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            final var content = gzip ? resource.gzipContent() : resource.content();
+            if (gzip)
+                response.setHeader("Content-Encoding", "gzip");
+            response.setContentType(resource.contentType());
+            response.setContentLength(content.length);
             response.setStatus(HttpServletResponse.SC_OK);
-            StreamUtils.copy(resource, outputStream);
+            try (final var outputStream = response.getOutputStream()) {
+                outputStream.write(content);
+            }
         } catch (Exception e) {
             LOGGER.error("Error reading resource {}", path, e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.setContentType("text/plain");
-            MLang.tryThis(() -> response.getWriter().write("Resource error"));
+            if (!response.isCommitted())
+                sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Resource error");
+        }
+    }
+
+    private void serveFile(String path, HttpServletRequest request, HttpServletResponse response) {
+        final var file = isValidPath(path) ? resolveFile(path) : null;
+        if (file == null) {
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, "Resource not found");
+            return;
+        }
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var length = channel.size();
+            // strong ETag of size and modification time, like nginx, to allow If-Range
+            final var etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(Files.getLastModifiedTime(file).toMillis()) + "\"";
+            response.setHeader("ETag", etag);
+            response.setHeader("Cache-Control", "public, max-age=" + maxAgeSeconds);
+            response.setHeader("Accept-Ranges", "bytes");
+            if (matchesETag(request.getHeader("If-None-Match"), etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            var range = parseRange(request.getHeader("Range"), length);
+            final var ifRange = request.getHeader("If-Range");
+            if (range != null && ifRange != null && !matchesIfRange(ifRange, etag))
+                range = null;
+            if (range == EMPTY_RANGE) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            long start = 0;
+            long count = length;
+            if (range != null) {
+                start = range[0];
+                count = range[1] - range[0] + 1;
+                response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            } else {
+                response.setStatus(HttpServletResponse.SC_OK);
+            }
+            response.setContentType(DocResourceCache.contentType(path));
+            response.setContentLengthLong(count);
+            if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                // the container writes the file after this method returns
+                request.setAttribute(SENDFILE_FILENAME, file.toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, start + count);
+                return;
+            }
+            try (final var outputStream = response.getOutputStream()) {
+                final var target = Channels.newChannel(outputStream);
+                while (count > 0) {
+                    final var transferred = channel.transferTo(start, count, target);
+                    if (transferred <= 0) break;
+                    start += transferred;
+                    count -= transferred;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error reading file {}", file, e);
+            if (!response.isCommitted())
+                sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Resource error");
+        }
+    }
+
+    /**
+     * Resolve the path in the docs root, returns null if the file is not a regular file inside the root,
+     * also if it is reached by a symbolic link pointing outside.
+     */
+    private Path resolveFile(String path) {
+        final var file = docsRoot.resolve(path.substring(1)).normalize();
+        if (!file.startsWith(docsRoot) || !Files.isRegularFile(file)) return null;
+        try {
+            final var real = file.toRealPath();
+            return real.startsWith(docsRoot) ? real : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final long[] EMPTY_RANGE = new long[0];
+
+    /**
+     * Parse a single byte range, returns null to send the full content (no or unsupported range header)
+     * and EMPTY_RANGE if the range is not satisfiable.
+     */
+    static long[] parseRange(String header, long length) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) return null;
+        final var spec = header.substring(6).trim();
+        final var pos = spec.indexOf('-');
+        if (pos < 0) return null;
+        try {
+            final var first = spec.substring(0, pos).trim();
+            final var last = spec.substring(pos + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                if (last.isEmpty()) return null;
+                final var suffix = Long.parseLong(last);
+                if (suffix <= 0) return EMPTY_RANGE;
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start >= length || start > end) return EMPTY_RANGE;
+            return new long[] {start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void sendError(HttpServletResponse response, int status, String message) {
+        response.setStatus(status);
+        response.setContentType("text/plain");
+        MLang.tryThis(() -> response.getWriter().write(message));
+    }
+
+    static boolean isValidPath(String path) {
+        if (!path.startsWith("/") || path.indexOf('\\') >= 0 || path.indexOf('\0') >= 0) return false;
+        for (var part : path.split("/"))
+            if (part.equals("..")) return false;
+        return true;
+    }
+
+    /**
+     * If-Range requires the strong comparison, a weak tag (or a date) never matches and the full content
+     * is sent.
+     */
+    static boolean matchesIfRange(String ifRange, String etag) {
+        if (ifRange == null || etag == null || etag.startsWith("W/")) return false;
+        final var tag = ifRange.trim();
+        return !tag.startsWith("W/") && tag.equals(etag);
+    }
+
+    /**
+     * Weak comparison of If-None-Match with the ETag.
+     */
+    static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (var part : ifNoneMatch.split(",")) {
+            var tag = part.trim();
+            if (tag.equals("*")) return true;
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(etag.startsWith("W/") ? etag.substring(2) : etag)) return true;
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (var part : acceptEncoding.split(",")) {
+            final var coding = part.trim();
+            if (coding.equals("gzip") || coding.startsWith("gzip;") && !coding.replace(" ", "").endsWith("q=0"))
+                return true;
         }
+        return false;
     }
-}
\ No newline at end of file
+}
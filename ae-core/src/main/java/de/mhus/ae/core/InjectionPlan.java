@@ -0,0 +1,219 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.core;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Precomputed injection steps for one class: autowired fields, autowired methods and post construct
+ * methods with their resolved bean references. Created once per class by the InjectionPlanCache and
+ * executed for every new object, so no reflection scan and no exception driven bean lookup is needed.
+ * <p>
+ * With method handles enabled the members are accessed by prepared MethodHandles, otherwise (and in
+ * native image) by plain reflection.
+ */
+@Slf4j
+class InjectionPlan {
+
+    private static final Supplier<Object> NOT_FOUND = () -> null;
+
+    private final String className;
+    private final boolean useMethodHandles;
+    private final List<FieldInjection> fields = new ArrayList<>();
+    private final List<MethodInjection> methods = new ArrayList<>();
+    private final List<MethodInjection> postConstructs = new ArrayList<>();
+
+    InjectionPlan(Class<?> clazz, ApplicationContext context, boolean useMethodHandles) {
+        className = clazz.getCanonicalName();
+        this.useMethodHandles = useMethodHandles;
+        ReflectionUtils.doWithFields(clazz, field -> {
+            try {
+                field.setAccessible(true);
+                fields.add(createFieldInjection(field, context));
+            } catch (Exception e) {
+                LOGGER.error("Error in {} {}", className, field.getName(), e);
+            }
+        }, field -> field.getAnnotation(Autowired.class) != null && !Modifier.isStatic(field.getModifiers()));
+        ReflectionUtils.doWithMethods(clazz, method -> {
+            method.setAccessible(true);
+            var params = Arrays.stream(method.getParameters()).map(p -> resolveByType(p.getType(), context)).toList();
+            methods.add(new MethodInjection(method.getName(), createInvoker(method), params));
+        }, method -> method.getAnnotation(Autowired.class) != null && !Modifier.isStatic(method.getModifiers()));
+        ReflectionUtils.doWithMethods(clazz, method -> {
+            method.setAccessible(true);
+            postConstructs.add(new MethodInjection(method.getName(), createInvoker(method), List.of()));
+        }, method -> method.getAnnotation(PostConstruct.class) != null && !Modifier.isStatic(method.getModifiers()));
+    }
+
+    void inject(Object object) {
+        // inject fields
+        for (var injection : fields) {
+            var field = injection.field();
+            try {
+                var value = injection.value().get();
+                if (value == null) {
+                    if (injection.required()) {
+                        LOGGER.error("Bean not found: {} {} in class {}", field.getName(), field.getType(), className, new Exception());
+                        throw new BeanCreationException("Bean not found: %s %s in class %s".formatted(field.getName(), field.getType(), className));
+                    }
+                } else {
+                    injection.setter().set(object, value);
+                }
+            } catch (BeanCreationException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                LOGGER.error("Error in {} {}", className, field.getName(), e);
+            }
+        }
+        // inject methods
+        for (var injection : methods) {
+            invoke(object, injection);
+        }
+        // execute post construct
+        for (var injection : postConstructs) {
+            invoke(object, injection);
+        }
+    }
+
+    private void invoke(Object object, MethodInjection injection) {
+        try {
+            var params = new Object[injection.params().size()];
+            for (int i = 0; i < params.length; i++)
+                params[i] = injection.params().get(i).get();
+            injection.invoker().invoke(object, params);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            LOGGER.error("Error in {} {}", className, injection.name(), e);
+        }
+    }
+
+    private Setter createSetter(Field field) {
+        if (useMethodHandles) {
+            try {
+                final var handle = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup())
+                        .unreflectSetter(field)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                return (target, value) -> {
+                    handle.invokeExact(target, value);
+                };
+            } catch (Exception e) {
+                LOGGER.debug("Can't create method handle for {} {}, use reflection", className, field.getName(), e);
+            }
+        }
+        return field::set;
+    }
+
+    private Invoker createInvoker(Method method) {
+        if (useMethodHandles) {
+            try {
+                final var handle = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup())
+                        .unreflect(method)
+                        .asSpreader(Object[].class, method.getParameterCount())
+                        .asType(MethodType.methodType(void.class, Object.class, Object[].class));
+                return (target, args) -> {
+                    handle.invokeExact(target, args);
+                };
+            } catch (Exception e) {
+                LOGGER.debug("Can't create method handle for {} {}, use reflection", className, method.getName(), e);
+            }
+        }
+        return method::invoke;
+    }
+
+    private FieldInjection createFieldInjection(Field field, ApplicationContext context) throws ClassNotFoundException {
+        var required = field.getAnnotation(Autowired.class).required();
+        if (field.getType() == List.class) {
+            final Class<?> listType;
+            if (field.getGenericType() instanceof ParameterizedType parameterizedType
+                    && parameterizedType.getActualTypeArguments()[0] instanceof Class<?> argumentClass) {
+                listType = argumentClass;
+            } else {
+                var genericType = field.getGenericType().getTypeName();
+                listType = Class.forName(genericType.substring(genericType.indexOf("<") + 1, genericType.indexOf(">")));
+            }
+            final var beans = Collections.unmodifiableList(new ArrayList<>(context.getBeansOfType(listType).values()));
+            return new FieldInjection(field, createSetter(field), required, () -> new ArrayList<>(beans));
+        }
+        // same order as before: by name and type, by type, by name
+        var name = field.getName();
+        var type = field.getType();
+        if (context.containsBean(name) && context.isTypeMatch(name, type))
+            return new FieldInjection(field, createSetter(field), required, resolveByName(name, context));
+        var byType = resolveByType(type, context);
+        if (byType != NOT_FOUND)
+            return new FieldInjection(field, createSetter(field), required, byType);
+        if (context.containsBean(name))
+            return new FieldInjection(field, createSetter(field), required, resolveByName(name, context));
+        return new FieldInjection(field, createSetter(field), required, NOT_FOUND);
+    }
+
+    private Supplier<Object> resolveByName(String name, ApplicationContext context) {
+        if (context.isSingleton(name)) {
+            final var bean = context.getBean(name);
+            return () -> bean;
+        }
+        return () -> context.getBean(name);
+    }
+
+    private Supplier<Object> resolveByType(Class<?> type, ApplicationContext context) {
+        var names = context.getBeanNamesForType(type);
+        if (names.length == 0) return NOT_FOUND;
+        if (names.length == 1) return resolveByName(names[0], context);
+        // more then one candidate, let spring decide (e.g. primary bean)
+        var provider = context.getBeanProvider(type);
+        if (provider.getIfUnique() == null) {
+            LOGGER.debug("No unique bean of type {} for {}", type, className);
+            return NOT_FOUND;
+        }
+        return provider::getIfUnique;
+    }
+
+    @FunctionalInterface
+    private interface Setter {
+        void set(Object target, Object value) throws Throwable;
+    }
+
+    @FunctionalInterface
+    private interface Invoker {
+        void invoke(Object target, Object[] args) throws Throwable;
+    }
+
+    private record FieldInjection(Field field, Setter setter, boolean required, Supplier<Object> value) {
+    }
+
+    private record MethodInjection(String name, Invoker invoker, List<Supplier<Object>> params) {
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.core;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of injection plans per class used by Core.autowireObject(). Plans hold resolved bean references
+ * and are dropped if the application context is refreshed.
+ * <p>
+ * Set kt2l.core.injector to 'reflection' to disable method handle based injectors. In native image
+ * reflection is always used.
+ */
+@Slf4j
+@Component
+public class InjectionPlanCache implements ApplicationListener<ContextRefreshedEvent> {
+
+    @Autowired
+    private ApplicationContext springContext;
+
+    @Value("${kt2l.core.injector:methodhandle}")
+    private String injector;
+
+    private final Map<Class<?>, InjectionPlan> plans = new ConcurrentHashMap<>();
+    private boolean useMethodHandles;
+
+    @PostConstruct
+    public void init() {
+        var nativeImage = System.getProperty("org.graalvm.nativeimage.imagecode") != null;
+        useMethodHandles = !nativeImage && "methodhandle".equals(injector);
+        LOGGER.info("Use {} injectors (native image: {})", useMethodHandles ? "method handle" : "reflection", nativeImage);
+    }
+
+    public void autowireObject(Object object) {
+        if (object == null) return;
+        var plan = plans.get(object.getClass());
+        if (plan == null) {
+            // not computeIfAbsent, bean creation while resolving the plan could autowire other objects
+            plan = new InjectionPlan(object.getClass(), springContext, useMethodHandles);
+            var existing = plans.putIfAbsent(object.getClass(), plan);
+            if (existing != null) plan = existing;
+        }
+        plan.inject(object);
+    }
+
+    public int size() {
+        return plans.size();
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (event.getApplicationContext() != springContext) return;
+        LOGGER.debug("Context refreshed, clear {} injection plans", plans.size());
+        plans.clear();
+    }
+
+}
@@ -64,7 +64,7 @@ public class PanelService {
                 .setColor(UiUtil.COLOR.NONE);
     }
 
-    public DeskTab showGlobalCfgPanel(Core core, List<CfgFactory> globalFactories, File configDir, File ... fallbackDirs) {
+    public DeskTab showGlobalCfgPanel(Core core, List<CfgFactory> globalFactories, File configDir) {
         return addPanel(
                 core,
                 "global-cfg",
@@ -76,13 +76,13 @@ public class PanelService {
                         true,
                         globalFactories,
                         configDir,
-                        fallbackDirs))
+                        null))
                 .setReproducable(true)
                 .setHelpContext("global_cfg")
                 .setWindowTitle("Global Settings");
     }
 
-    public DeskTab showUserCfgPanel(Core core, List<CfgFactory> factories, File configDir, File ... fallbackDirs) {
+    public DeskTab showUserCfgPanel(Core core, List<CfgFactory> factories, File configDir, String userName) {
         return addPanel(
                 core,
                 "user-cfg",
@@ -94,7 +94,7 @@ public class PanelService {
                         false,
                         factories,
                         configDir,
-                        fallbackDirs))
+                        userName))
                 .setReproducable(true)
                 .setHelpContext("user_cfg")
                 .setWindowTitle("User Settings");
@@ -28,16 +28,17 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class HelpConfiguration extends AbstractUserRelatedConfig {
 
     public String getWindowWidth() {
-        return config().getString("windowWidth", "300px");
+        return help().windowWidth();
     }
 
     public boolean isEnabled() {
-        return config().getBoolean("enabled", true);
+        return help().enabled();
     }
 
     public HelpConfiguration() {
@@ -45,13 +46,25 @@ public class HelpConfiguration extends AbstractUserRelatedConfig {
     }
 
     public HelpContext getContext(String name) {
-        return new HelpContext(
-                config().getObject("contexts").orElse(MTree.EMPTY_MAP)
-                        .getArray(name).orElse(MTree.EMPTY_LIST));
+        final var help = help();
+        return help.contextsCache().computeIfAbsent(name, n -> new HelpContext(
+                help.contexts().getArray(n).orElse(MTree.EMPTY_LIST)));
     }
 
     public boolean isSticky() {
-        return config().getBoolean("sticky", false);
+        return help().sticky();
+    }
+
+    private Help help() {
+        return view(Help.class, c -> new Help(
+                c.getString("windowWidth", "300px"),
+                c.getBoolean("enabled", true),
+                c.getBoolean("sticky", false),
+                c.getObject("contexts").orElse(MTree.EMPTY_MAP),
+                new ConcurrentHashMap<>()));
+    }
+
+    private record Help(String windowWidth, boolean enabled, boolean sticky, ITreeNode contexts, Map<String, HelpContext> contextsCache) {
     }
 
 
@@ -60,6 +73,7 @@ public class HelpConfiguration extends AbstractUserRelatedConfig {
         private final TreeNodeList context;
         private final Map<String, HelpLink> links = new HashMap<>();
         private final List<String> order = new ArrayList<>();
+        private final List<HelpLink> orderedLinks;
 
         private HelpContext(TreeNodeList context) {
             this.context = context;
@@ -68,10 +82,11 @@ public class HelpConfiguration extends AbstractUserRelatedConfig {
                 links.put(link.getName(), link);
                 order.add(link.getName());
             });
+            orderedLinks = order.stream().map(name -> links.get(name)).toList();
         }
 
         public List<HelpLink> getLinks() {
-            return order.stream().map(name -> links.get(name)).toList();
+            return orderedLinks;
         }
 
     }
@@ -79,18 +94,26 @@ public class HelpConfiguration extends AbstractUserRelatedConfig {
     public static class HelpLink {
 
         private final ITreeNode link;
-        private HelpAction helpAction;
+        private final String name;
+        private final String action;
+        private final boolean enabled;
+        private final boolean isDefault;
+        private volatile HelpAction helpAction;
 
         private HelpLink(ITreeNode link) {
             this.link = link;
+            this.name = link.getString("name").get();
+            this.action = link.getString("action").orElse("not specified");
+            this.enabled = link.getBoolean("enabled", true);
+            this.isDefault = link.getBoolean("default", true);
         }
 
         public String getName() {
-            return link.getString("name").get();
+            return name;
         }
 
         public String getAction() {
-            return link.getString("action").orElse("not specified");
+            return action;
         }
 
         public ITreeNode getNode() {
@@ -98,11 +121,11 @@ public class HelpConfiguration extends AbstractUserRelatedConfig {
         }
 
         public boolean isEnabled() {
-            return link.getBoolean("enabled", true);
+            return enabled;
         }
 
         public boolean isDefault() {
-            return link.getBoolean("default", true);
+            return isDefault;
         }
 
         public void setHelpAction(HelpAction helpAction) {
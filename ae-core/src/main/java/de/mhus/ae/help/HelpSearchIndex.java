@@ -0,0 +1,291 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.help;
+
+import de.mhus.commons.tools.MString;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-process inverted index over the generated html documentation. The index is built in the background at
+ * startup from the class path (public/docs) or from kt2l.docs.directory if set. Terms are kept sorted to
+ * support prefix lookups for the last word of a query (typeahead).
+ */
+@Slf4j
+@Component
+public class HelpSearchIndex {
+
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}_]{2,}");
+    private static final Pattern SCRIPT_STYLE = Pattern.compile("(?is)<(script|style)[^>]*>.*?</\\1>");
+    private static final Pattern TAG = Pattern.compile("(?s)<[^>]*>");
+    private static final Pattern SPACE = Pattern.compile("\\s+");
+    private static final Pattern TITLE = Pattern.compile("(?is)<(title|h1)[^>]*>(.*?)</\\1>");
+    private static final int TITLE_BOOST = 5;
+    private static final int SNIPPET_BEFORE = 40;
+    private static final int SNIPPET_AFTER = 120;
+
+    @Value("${kt2l.help.search.enabled:true}")
+    private boolean enabled;
+    @Value("${kt2l.docs.directory:}")
+    private String docsDirectory;
+
+    private volatile Index index;
+    private volatile boolean failed;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+        Thread.ofPlatform().daemon().name("help-search-index").start(this::build);
+    }
+
+    /**
+     * Rebuild the index, is called at startup.
+     */
+    public void build() {
+        build(MString.isEmptyTrim(docsDirectory) ? null : Path.of(docsDirectory));
+    }
+
+    /**
+     * Build the index from the html files in the directory or from the class path if directory is null.
+     */
+    void build(Path directory) {
+        final var start = System.currentTimeMillis();
+        try {
+            final var docs = directory == null ? loadClassPathDocs() : loadDirectoryDocs(directory);
+            index = Index.build(docs);
+            LOGGER.info("Help search index built with {} documents and {} terms in {}ms",
+                    docs.size(), index.terms.length, System.currentTimeMillis() - start);
+            failed = false;
+        } catch (Exception e) {
+            LOGGER.error("Can't build help search index", e);
+            failed = index == null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return index != null;
+    }
+
+    /**
+     * Return true if the index could not be built and no former index is available.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Search documents containing all words of the query, the last word is handled as prefix.
+     * Returns an empty list if the index is not ready.
+     */
+    public List<Result> search(String query, int maxResults) {
+        final var current = index;
+        if (current == null || query == null) return List.of();
+        return current.search(tokenize(query), maxResults);
+    }
+
+    private List<Doc> loadClassPathDocs() throws IOException {
+        final var resolver = new PathMatchingResourcePatternResolver(getClass().getClassLoader());
+        final var docs = new ArrayList<Doc>();
+        for (Resource resource : resolver.getResources("classpath*:META-INF/resources/public/docs/**/*.html")) {
+            final var url = resource.getURL().toString();
+            final var pos = url.lastIndexOf("/public/docs/");
+            if (pos < 0) continue;
+            try (final var stream = resource.getInputStream()) {
+                docs.add(Doc.parse("/docs/" + url.substring(pos + 13), new String(stream.readAllBytes(), StandardCharsets.UTF_8)));
+            }
+        }
+        return docs;
+    }
+
+    private List<Doc> loadDirectoryDocs(Path root) throws IOException {
+        final var docs = new ArrayList<Doc>();
+        try (final var files = Files.walk(root)) {
+            for (var file : (Iterable<Path>) files.filter(f -> Files.isRegularFile(f) && f.toString().endsWith(".html"))::iterator) {
+                final var path = root.relativize(file).toString().replace('\\', '/');
+                docs.add(Doc.parse("/docs/" + path, Files.readString(file)));
+            }
+        }
+        return docs;
+    }
+
+    static List<String> tokenize(String text) {
+        final var result = new ArrayList<String>();
+        final var matcher = TOKEN.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find())
+            result.add(matcher.group());
+        return result;
+    }
+
+    private static String decodeEntities(String text) {
+        return text.replace("&nbsp;", " ").replace("&lt;", "<").replace("&gt;", ">")
+                .replace("&quot;", "\"").replace("&#39;", "'").replace("&amp;", "&");
+    }
+
+    public record Result(String url, String title, String snippet, double score) {
+    }
+
+    private record Doc(String url, String title, String text) {
+
+        static Doc parse(String url, String html) {
+            final var titleMatcher = TITLE.matcher(html);
+            var title = titleMatcher.find() ? decodeEntities(TAG.matcher(titleMatcher.group(2)).replaceAll("")).trim() : "";
+            var text = SCRIPT_STYLE.matcher(html).replaceAll(" ");
+            text = decodeEntities(TAG.matcher(text).replaceAll(" "));
+            text = SPACE.matcher(text).replaceAll(" ").trim();
+            if (title.isEmpty()) title = url;
+            return new Doc(url, title, text);
+        }
+    }
+
+    private static class Index {
+
+        private final Doc[] docs;
+        private final String[] terms;
+        private final int[][] postingDocs;
+        private final int[][] postingFrequencies;
+
+        private Index(Doc[] docs, String[] terms, int[][] postingDocs, int[][] postingFrequencies) {
+            this.docs = docs;
+            this.terms = terms;
+            this.postingDocs = postingDocs;
+            this.postingFrequencies = postingFrequencies;
+        }
+
+        static Index build(List<Doc> docList) {
+            final var docs = docList.toArray(new Doc[0]);
+            final var postings = new TreeMap<String, Map<Integer, Integer>>();
+            for (int i = 0; i < docs.length; i++) {
+                final var docId = i;
+                for (var term : tokenize(docs[i].text()))
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).merge(docId, 1, Integer::sum);
+                for (var term : tokenize(docs[i].title()))
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).merge(docId, TITLE_BOOST, Integer::sum);
+            }
+            final var terms = new String[postings.size()];
+            final var postingDocs = new int[terms.length][];
+            final var postingFrequencies = new int[terms.length][];
+            int t = 0;
+            for (var entry : postings.entrySet()) {
+                terms[t] = entry.getKey();
+                final var ids = entry.getValue().keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+                postingDocs[t] = ids;
+                postingFrequencies[t] = Arrays.stream(ids).map(id -> entry.getValue().get(id)).toArray();
+                t++;
+            }
+            return new Index(docs, terms, postingDocs, postingFrequencies);
+        }
+
+        List<Result> search(List<String> tokens, int maxResults) {
+            if (tokens.isEmpty() || docs.length == 0) return List.of();
+            double[] scores = null;
+            for (int i = 0; i < tokens.size(); i++) {
+                final var token = tokens.get(i);
+                final var tokenScores = new double[docs.length];
+                int from;
+                int to;
+                if (i == tokens.size() - 1) {
+                    from = lowerBound(token);
+                    to = from;
+                    while (to < terms.length && terms[to].startsWith(token)) to++;
+                } else {
+                    from = Arrays.binarySearch(terms, token);
+                    if (from < 0) return List.of();
+                    to = from + 1;
+                }
+                if (from == to) return List.of();
+                for (int t = from; t < to; t++) {
+                    final var ids = postingDocs[t];
+                    final var idf = Math.log(1 + (double) docs.length / ids.length);
+                    for (int p = 0; p < ids.length; p++)
+                        tokenScores[ids[p]] += postingFrequencies[t][p] * idf;
+                }
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    for (int d = 0; d < scores.length; d++)
+                        scores[d] = scores[d] == 0 || tokenScores[d] == 0 ? 0 : scores[d] + tokenScores[d];
+                }
+            }
+            final var hits = new ArrayList<Integer>();
+            for (int d = 0; d < scores.length; d++)
+                if (scores[d] > 0) hits.add(d);
+            final var finalScores = scores;
+            hits.sort((a, b) -> Double.compare(finalScores[b], finalScores[a]));
+            return hits.stream().limit(maxResults)
+                    .map(d -> new Result(docs[d].url(), docs[d].title(), snippet(docs[d], tokens), finalScores[d]))
+                    .toList();
+        }
+
+        private int lowerBound(String token) {
+            final var pos = Arrays.binarySearch(terms, token);
+            return pos < 0 ? -pos - 1 : pos;
+        }
+
+        private static String snippet(Doc doc, List<String> tokens) {
+            // search the text itself, lower casing may change the length and shift the offsets
+            int pos = -1;
+            for (var token : tokens) {
+                final var p = indexOfIgnoreCase(doc.text(), token, pos < 0 ? doc.text().length() : pos);
+                if (p >= 0) pos = p;
+            }
+            if (pos < 0) pos = 0;
+            var start = Math.max(0, pos - SNIPPET_BEFORE);
+            var end = Math.min(doc.text().length(), pos + SNIPPET_AFTER);
+            if (start > 0) {
+                final var space = doc.text().indexOf(' ', start);
+                if (space >= 0 && space < pos) start = space + 1;
+            }
+            if (end < doc.text().length()) {
+                final var space = doc.text().lastIndexOf(' ', end);
+                if (space > pos) end = space;
+            }
+            return (start > 0 ? "…" : "") + doc.text().substring(start, end) + (end < doc.text().length() ? "…" : "");
+        }
+
+        /**
+         * Return the first position of the token before limit or -1.
+         */
+        private static int indexOfIgnoreCase(String text, String token, int limit) {
+            final var last = Math.min(limit - 1, text.length() - token.length());
+            for (int i = 0; i <= last; i++)
+                if (text.regionMatches(true, i, token, 0, token.length())) return i;
+            return -1;
+        }
+    }
+}
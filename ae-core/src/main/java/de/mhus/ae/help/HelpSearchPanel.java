@@ -0,0 +1,91 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.help;
+
+import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.value.ValueChangeMode;
+
+import java.util.function.Consumer;
+
+/**
+ * Typeahead search box for the help side panel, shows ranked results with snippets from the HelpSearchIndex.
+ */
+public class HelpSearchPanel extends VerticalLayout {
+
+    private static final int MAX_RESULTS = 10;
+
+    private final HelpSearchIndex index;
+    private final Consumer<String> onSelect;
+    private final TextField searchField;
+    private final VerticalLayout results;
+
+    public HelpSearchPanel(HelpSearchIndex index, Consumer<String> onSelect) {
+        this.index = index;
+        this.onSelect = onSelect;
+        setPadding(false);
+        setSpacing(false);
+        setWidthFull();
+        addClassName("help-search");
+
+        searchField = new TextField();
+        searchField.setPlaceholder("Search help");
+        searchField.setPrefixComponent(VaadinIcon.SEARCH.create());
+        searchField.setClearButtonVisible(true);
+        searchField.setWidthFull();
+        searchField.setValueChangeMode(ValueChangeMode.LAZY);
+        searchField.setValueChangeTimeout(200);
+        searchField.addValueChangeListener(e -> updateResults(e.getValue()));
+
+        results = new VerticalLayout();
+        results.setPadding(false);
+        results.setSpacing(false);
+        results.setWidthFull();
+        results.setVisible(false);
+        results.getStyle().set("max-height", "50vh").set("overflow-y", "auto");
+
+        add(searchField, results);
+    }
+
+    private void updateResults(String query) {
+        results.removeAll();
+        final var hits = index.search(query, MAX_RESULTS);
+        for (var hit : hits) {
+            final var title = new Span(hit.title());
+            title.getStyle().set("font-weight", "bold");
+            final var snippet = new Span(hit.snippet());
+            snippet.getStyle().set("font-size", "var(--lumo-font-size-s)").set("color", "var(--lumo-secondary-text-color)");
+            final var item = new Div(title, new Div(), snippet);
+            item.getStyle().set("cursor", "pointer").set("padding", "var(--lumo-space-xs) var(--lumo-space-s)");
+            item.addClickListener(e -> {
+                results.setVisible(false);
+                onSelect.accept(hit.url());
+            });
+            results.add(item);
+        }
+        if (hits.isEmpty() && !query.isBlank()) {
+            final var empty = new Span(index.isReady() ? "Nothing found" : index.isFailed() ? "Search not available" : "Index not ready");
+            empty.getStyle().set("padding", "var(--lumo-space-xs) var(--lumo-space-s)");
+            results.add(empty);
+        }
+        results.setVisible(!query.isBlank());
+    }
+}
@@ -238,6 +238,8 @@ public class DevelopmentPanel extends VerticalLayout implements DeskTabListener
             i.append("  Window Title: " + tab.getWindowTitle() + "\n");
             i.append("  Help Context: " + tab.getHelpContext() + "\n");
             i.append("  Flags       : P:" + tab.isReproducable() + " C:" + tab.isCloseable() + " V:" + tab.isVisible() + "\n");
+            i.append("  Panel       : " + (tab.isPanelCreated() ? "created" : "not created") + (tab.getUnselectedSince() > 0 ? ", unselected " + (System.currentTimeMillis() - tab.getUnselectedSince()) / 1000 + "s" : "") + "\n");
+            i.append("  Retained    : " + tab.getRetainedElements() + " elements (~" + MString.toByteDisplayString(tab.getRetainedSizeEstimate()) + ")\n");
         }
 
         output.setValue(i.toString());
@@ -260,13 +262,14 @@ public class DevelopmentPanel extends VerticalLayout implements DeskTabListener
 
     @Override
     public void tabRefresh(long counter) {
+        deskTab.getTabBar().getCore().ui().access(() -> {
+            updateInfo(counter);
+        });
+    }
 
-        if (counter % 3 == 0) {
-            deskTab.getTabBar().getCore().ui().access(() -> {
-                updateInfo(counter);
-            });
-        }
-
+    @Override
+    public long getRefreshInterval() {
+        return 3;
     }
 
     private void updateInfo(long counter) {
@@ -283,6 +286,7 @@ public class DevelopmentPanel extends VerticalLayout implements DeskTabListener
         SystemInfoPanel.fillInfo(counter, osBean, deskTab, upTimeService, i);
 
         i.append("Counter: " + counter + "\n");
+        i.append("Page Hidden          : " + deskTab.getTabBar().getCore().isPageHidden() + "\n");
         i.append("Core Panels Count    : " + deskTab.getTabBar().getCore().getContent().getChildren().count() + "\n");
         i.append("UI                   : " + Objects.hashCode(deskTab.getTabBar().getCore().ui()) + "\n");
         i.append("Session Id           : " + tryThis(() -> deskTab.getTabBar().getCore().ui().getSession().getSession().getId() ).orElse("?") + "\n");
@@ -0,0 +1,41 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.util.List;
+
+/**
+ * Receives batches of logging events from the LogbackEventProvider dispatcher thread.
+ */
+public interface LogEventSubscriber {
+
+    /**
+     * Events below this level are not delivered.
+     */
+    Level getLevel();
+
+    /**
+     * Receive a batch of events. Must not block. Return false if the subscriber is behind and
+     * the batch was dropped.
+     */
+    boolean onEvents(List<ILoggingEvent> events);
+
+}
@@ -0,0 +1,115 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.system;
+
+import ch.qos.logback.classic.Level;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.combobox.ComboBox;
+import com.vaadin.flow.component.datetimepicker.DateTimePicker;
+import com.vaadin.flow.component.dialog.Dialog;
+import com.vaadin.flow.component.orderedlayout.FlexComponent;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.TextField;
+import de.mhus.ae.ui.TailRow;
+import de.mhus.ae.ui.VirtualTail;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Browse the stored log, newest entries first. Filters by level, logger prefix and text, pages backwards
+ * or starts at a given time.
+ */
+class LogHistoryDialog extends Dialog {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final LogbackEventProvider provider;
+    private final ComboBox<Level> levelField = new ComboBox<>("Level");
+    private final TextField loggerField = new TextField("Logger");
+    private final TextField textField = new TextField("Text");
+    private final DateTimePicker timeField = new DateTimePicker("Before");
+    private final VirtualTail rows = new VirtualTail(20000);
+    private final Button olderButton = new Button("Older");
+    private LogStore.LogQuery query;
+    private long beforeSeq;
+
+    LogHistoryDialog(LogbackEventProvider provider, Level level) {
+        this.provider = provider;
+        setHeaderTitle("Log History");
+        setWidth("90%");
+        setHeight("90%");
+        setResizable(true);
+        setCloseOnEsc(true);
+
+        levelField.setItems(Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR);
+        levelField.setItemLabelGenerator(Level::toString);
+        levelField.setValue(level);
+        var searchButton = new Button("Search", e -> search());
+        olderButton.addClickListener(e -> loadPage());
+        var filter = new HorizontalLayout(levelField, loggerField, textField, timeField, searchButton, olderButton);
+        filter.setAlignItems(FlexComponent.Alignment.BASELINE);
+
+        rows.setAutoScroll(false);
+        rows.setDetailsProvider(LogLineFormatter::details);
+        rows.addClassName("log-view");
+        rows.setSizeFull();
+
+        var content = new VerticalLayout(filter, rows);
+        content.setSizeFull();
+        content.setPadding(false);
+        add(content);
+        getFooter().add(new Button("Close", e -> close()));
+
+        search();
+    }
+
+    private void search() {
+        query = new LogStore.LogQuery(levelField.getValue(), loggerField.getValue(), textField.getValue());
+        beforeSeq = timeField.getValue() == null
+                ? provider.getStoreNextSeq()
+                : provider.getStoreSeqAfter(timeField.getValue().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        rows.clear();
+        olderButton.setEnabled(true);
+        loadPage();
+    }
+
+    private void loadPage() {
+        final var records = provider.queryStore(query, beforeSeq, PAGE_SIZE);
+        if (records.size() < PAGE_SIZE)
+            olderButton.setEnabled(false);
+        if (records.isEmpty()) return;
+        beforeSeq = records.getLast().seq();
+        final var add = new ArrayList<TailRow>(records.size());
+        records.forEach(r -> addRows(add, r));
+        rows.addRows(add);
+    }
+
+    private void addRows(List<TailRow> add, LogStore.LogRecord record) {
+        final var text = record.text();
+        final var newLine = text.indexOf('\n');
+        add.add(LogLineFormatter.toRow(
+                record.timestamp(),
+                record.level(),
+                newLine < 0 ? text : text.substring(0, newLine),
+                record.logger(),
+                newLine < 0 ? null : text.substring(newLine + 1)));
+    }
+}
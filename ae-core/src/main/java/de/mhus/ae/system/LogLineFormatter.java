@@ -0,0 +1,86 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import de.mhus.ae.ui.TailRow;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats log lines for the log views. The timestamp prefix is cached per second and the builder is
+ * reused per thread. Stack traces are not formatted until a row is expanded.
+ */
+final class LogLineFormatter {
+
+    private static final int PREFIX_WIDTH = 30;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final ThreadLocal<StringBuilder> builders = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static volatile TimePrefix lastPrefix = new TimePrefix(Long.MIN_VALUE, "");
+
+    private LogLineFormatter() {
+    }
+
+    /**
+     * Create the row for the log line. Details like a stack trace are stored in the user object and
+     * created by details() if the row is expanded.
+     */
+    static TailRow toRow(long timestamp, Level level, String message, String logger, Object details) {
+        final var sb = builders.get();
+        sb.setLength(0);
+        sb.append(timePrefix(timestamp)).append(' ');
+        sb.append(level.levelStr).append(' ');
+        while (sb.length() < PREFIX_WIDTH)
+            sb.append(' ');
+        sb.append(message).append(" (");
+        sb.append(logger).append(')');
+        final var text = sb.toString();
+        if (sb.capacity() > 64 * 1024)
+            builders.remove(); // do not keep huge builders
+        return TailRow.builder().text(text).color(SystemLogPanel.toColor(level)).userObject(details).build();
+    }
+
+    /**
+     * Return the details of the row or null.
+     */
+    static String details(TailRow<?> row) {
+        final var details = row.getUserObject();
+        if (details instanceof IThrowableProxy t)
+            return ThrowableProxyUtil.asString(t);
+        if (details instanceof String s)
+            return s;
+        return null;
+    }
+
+    private static String timePrefix(long timestamp) {
+        final var second = Math.floorDiv(timestamp, 1000);
+        var prefix = lastPrefix;
+        if (prefix.second() != second) {
+            prefix = new TimePrefix(second, TIME_FORMAT.format(Instant.ofEpochSecond(second)));
+            lastPrefix = prefix;
+        }
+        return prefix.text();
+    }
+
+    private record TimePrefix(long second, String text) {
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stores logging events in memory mapped segment files. Each segment has an in memory index of record
+ * offset, timestamp, level and logger, so queries only read the records they return or need to check
+ * for text. Timestamps are not monotonic, events of different threads arrive out of order, so the index also
+ * keeps the running maximum timestamp to search by time. The oldest segment is deleted if the number of segments exceeds the limit. Existing segments
+ * are indexed again on start. The directory and the segments are readable by the owner only, only files with
+ * the segment prefix are touched, other files in the directory are ignored.
+ * <p>
+ * Record layout: int length, long timestamp, int level, short logger length, logger, int text length, text.
+ */
+class LogStore {
+
+    private static final String PREFIX = "kt2l-logstore-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER = 4 + 8 + 4 + 2 + 4;
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final LinkedList<Segment> segments = new LinkedList<>();
+    private final Map<String, Integer> loggerIds = new HashMap<>();
+    private final List<String> loggerNames = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    @Getter
+    private volatile long nextSeq;
+    private long maxTimestamp = Long.MIN_VALUE;
+    /**
+     * Largest distance of a record timestamp behind the running maximum.
+     */
+    private long maxSkew;
+
+    LogStore(File directory, int segmentSize, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.max(64 * 1024, segmentSize);
+        this.maxSegments = Math.max(1, maxSegments);
+        Files.createDirectories(directory.toPath());
+        // fails if the directory is owned by another user
+        restrictToOwner(directory.toPath(), true);
+        recover();
+    }
+
+    void append(List<ILoggingEvent> events) throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (var event : events)
+                append(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(ILoggingEvent event) throws IOException {
+        final var logger = bytes(event.getLoggerName(), Short.MAX_VALUE);
+        var message = event.getFormattedMessage();
+        if (event.getThrowableProxy() != null)
+            message = message + "\n" + ThrowableProxyUtil.asString(event.getThrowableProxy());
+        final var text = bytes(message, segmentSize / 4);
+        final var length = HEADER - 4 + logger.length + text.length;
+
+        var segment = segments.peekLast();
+        if (segment == null || segment.writePos + 4 + length + 4 > segmentSize)
+            segment = rotate();
+
+        final var buf = segment.buffer;
+        final var offset = segment.writePos;
+        buf.position(offset);
+        buf.putInt(length);
+        buf.putLong(event.getTimeStamp());
+        buf.putInt(event.getLevel().toInt());
+        buf.putShort((short) logger.length);
+        buf.put(logger);
+        buf.putInt(text.length);
+        buf.put(text);
+        segment.writePos = buf.position();
+        index(segment, offset, event.getTimeStamp(), event.getLevel().toInt(), loggerId(event.getLoggerName()));
+        nextSeq++;
+    }
+
+    private void index(Segment segment, int offset, long timestamp, int level, int logger) {
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        maxSkew = Math.max(maxSkew, maxTimestamp - timestamp);
+        segment.index(offset, timestamp, maxTimestamp, level, logger);
+    }
+
+    /**
+     * Return records older than beforeSeq matching the query, newest first.
+     */
+    List<LogRecord> query(LogQuery query, long beforeSeq, int limit) {
+        lock.readLock().lock();
+        try {
+            final var result = new ArrayList<LogRecord>(Math.min(limit, 1000));
+            final var loggerFilter = loggerFilter(query.loggerPrefix());
+            final var minLevel = query.minLevel() == null ? Integer.MIN_VALUE : query.minLevel().toInt();
+            final var text = query.text() == null || query.text().isBlank() ? null : query.text().toLowerCase();
+            final var it = segments.descendingIterator();
+            while (it.hasNext() && result.size() < limit) {
+                final var segment = it.next();
+                var i = (int) Math.min(segment.count - 1, beforeSeq - segment.firstSeq - 1);
+                for (; i >= 0 && result.size() < limit; i--) {
+                    if (segment.levels[i] < minLevel) continue;
+                    if (loggerFilter != null && (segment.loggers[i] >= loggerFilter.length || !loggerFilter[segment.loggers[i]])) continue;
+                    final var record = segment.read(i, loggerNames);
+                    if (text != null && !record.text().toLowerCase().contains(text)) continue;
+                    result.add(record);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return the sequence after the last record logged at or before the timestamp, use it as beforeSeq to page
+     * backwards from that time.
+     */
+    long seqAfter(long timestamp) {
+        lock.readLock().lock();
+        try {
+            // a record at or before the timestamp is at most maxSkew behind the running maximum, so it is
+            // found before the first record with a maximum beyond timestamp + maxSkew
+            final var limit = timestamp > Long.MAX_VALUE - maxSkew ? Long.MAX_VALUE : timestamp + maxSkew;
+            final var it = segments.descendingIterator();
+            while (it.hasNext()) {
+                final var segment = it.next();
+                // scan back over the skew window, ends at the latest where the running maximum is at or before it
+                for (var i = Math.min(segment.count - 1, firstAfter(segment.maxTimestamps, segment.count, limit)); i >= 0; i--) {
+                    if (segment.timestamps[i] <= timestamp)
+                        return segment.firstSeq + i + 1;
+                }
+            }
+            return segments.isEmpty() ? 0 : segments.getFirst().firstSeq;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getSize() {
+        lock.readLock().lock();
+        try {
+            return (long) segments.size() * segmentSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return the index of the first value greater than key in the sorted array or count if there is none.
+     */
+    private static int firstAfter(long[] sorted, int count, long key) {
+        var low = 0;
+        var high = count;
+        while (low < high) {
+            final var mid = (low + high) >>> 1;
+            if (sorted[mid] <= key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private boolean[] loggerFilter(String prefix) {
+        if (prefix == null || prefix.isBlank()) return null;
+        final var filter = new boolean[loggerNames.size()];
+        for (int i = 0; i < filter.length; i++)
+            filter[i] = loggerNames.get(i).startsWith(prefix);
+        return filter;
+    }
+
+    private int loggerId(String name) {
+        return loggerIds.computeIfAbsent(name == null ? "" : name, n -> {
+            loggerNames.add(n);
+            return loggerNames.size() - 1;
+        });
+    }
+
+    private Segment rotate() throws IOException {
+        final var last = segments.peekLast();
+        if (last != null)
+            last.buffer.force();
+        final var segment = new Segment(new File(directory, PREFIX + nextSeq + SUFFIX), nextSeq, segmentSize);
+        segments.add(segment);
+        while (segments.size() > maxSegments) {
+            final var oldest = segments.removeFirst();
+            oldest.file.delete();
+        }
+        return segment;
+    }
+
+    private void recover() throws IOException {
+        final var files = directory.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) return;
+        Arrays.sort(files, Comparator.comparingLong(LogStore::firstSeqOf));
+        for (var file : files) {
+            if (firstSeqOf(file) < nextSeq || file.length() > Integer.MAX_VALUE) {
+                file.delete();
+                continue;
+            }
+            final var segment = new Segment(file, firstSeqOf(file), (int) Math.max(file.length(), segmentSize));
+            final var buf = segment.buffer;
+            var pos = 0;
+            while (pos + 4 <= buf.limit()) {
+                final var length = buf.getInt(pos);
+                if (length < HEADER - 4 || pos + 4 + length > buf.limit()) break;
+                final var loggerLength = buf.getShort(pos + 16);
+                final var logger = new byte[loggerLength];
+                buf.get(pos + 18, logger);
+                index(segment, pos, buf.getLong(pos + 4), buf.getInt(pos + 12), loggerId(new String(logger, StandardCharsets.UTF_8)));
+                pos += 4 + length;
+            }
+            segment.writePos = pos;
+            segments.add(segment);
+            nextSeq = segment.firstSeq + segment.count;
+        }
+        while (segments.size() > maxSegments)
+            segments.removeFirst().file.delete();
+    }
+
+    private static long firstSeqOf(File file) {
+        final var name = file.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void restrictToOwner(Path path, boolean directory) throws IOException {
+        if (!POSIX) return;
+        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(directory ? "rwx------" : "rw-------"));
+    }
+
+    static byte[] bytes(String text, int max) {
+        if (text == null) return new byte[0];
+        final var bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= max) return bytes;
+        // do not cut a multi byte character, continuation bytes are 10xxxxxx
+        var end = max;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80)
+            end--;
+        return Arrays.copyOf(bytes, end);
+    }
+
+    record LogQuery(Level minLevel, String loggerPrefix, String text) {
+    }
+
+    record LogRecord(long seq, long timestamp, Level level, String logger, String text) {
+    }
+
+    private static class Segment {
+
+        private final File file;
+        private final long firstSeq;
+        private final MappedByteBuffer buffer;
+        private int writePos;
+        private int count;
+        private int[] offsets = new int[1024];
+        private long[] timestamps = new long[1024];
+        private long[] maxTimestamps = new long[1024];
+        private int[] levels = new int[1024];
+        private int[] loggers = new int[1024];
+
+        private Segment(File file, long firstSeq, int size) throws IOException {
+            this.file = file;
+            this.firstSeq = firstSeq;
+            if (!file.exists())
+                Files.createFile(file.toPath());
+            restrictToOwner(file.toPath(), false);
+            try (var raf = new RandomAccessFile(file, "rw"); var channel = raf.getChannel()) {
+                // the mapping stays valid after the channel is closed
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        private void index(int offset, long timestamp, long maxTimestamp, int level, int logger) {
+            if (count == offsets.length) {
+                final var size = count * 2;
+                offsets = Arrays.copyOf(offsets, size);
+                timestamps = Arrays.copyOf(timestamps, size);
+                maxTimestamps = Arrays.copyOf(maxTimestamps, size);
+                levels = Arrays.copyOf(levels, size);
+                loggers = Arrays.copyOf(loggers, size);
+            }
+            offsets[count] = offset;
+            timestamps[count] = timestamp;
+            maxTimestamps[count] = maxTimestamp;
+            levels[count] = level;
+            loggers[count] = logger;
+            count++;
+        }
+
+        private LogRecord read(int index, List<String> loggerNames) {
+            final var offset = offsets[index];
+            final var loggerLength = buffer.getShort(offset + 16);
+            final var textOffset = offset + 18 + loggerLength;
+            final var text = new byte[buffer.getInt(textOffset)];
+            buffer.get(textOffset + 4, text);
+            return new LogRecord(
+                    firstSeq + index,
+                    timestamps[index],
+                    Level.toLevel(levels[index]),
+                    loggerNames.get(loggers[index]),
+                    new String(text, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -19,28 +19,190 @@ package de.mhus.ae.system;
 
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
-import de.mhus.commons.util.MEventHandler;
+import de.mhus.ae.config.Configuration;
+import de.mhus.commons.lang.IRegistration;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static de.mhus.commons.tools.MString.isSet;
 
 @Component
 @Slf4j
 public class LogbackEventProvider {
 
-    private MEventHandler<ILoggingEvent> eventHandler = new MEventHandler<>();
+    @Value("${kt2l.logging.queueSize:10000}")
+    private int queueSize;
+    @Value("${kt2l.logging.batchSize:500}")
+    private int batchSize;
+    @Value("${kt2l.logging.flushIntervalMillis:100}")
+    private long flushIntervalMillis;
+    @Value("${kt2l.logging.store.enabled:false}")
+    private boolean storeEnabled;
+    @Value("${kt2l.logging.store.directory:}")
+    private String storeDirectory;
+    @Value("${kt2l.logging.store.segmentSize:8388608}")
+    private int storeSegmentSize;
+    @Value("${kt2l.logging.store.maxSegments:8}")
+    private int storeMaxSegments;
+
+    @Autowired
+    private Configuration configuration;
+
+    private final List<WeakReference<LogEventSubscriber>> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong subscriberDropped = new AtomicLong();
+    private LogbackKt2lAppender appender;
+    private volatile LogStore store;
+    private volatile boolean running = true;
+    private Thread dispatcher;
 
     @PostConstruct
     public void init() {
         LOGGER.debug("LogbackConfiguration init");
-        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).addAppender(new LogbackKt2lAppender(eventHandler));
+        if (storeEnabled) {
+            // per instance, the shared tmp directory is readable by other users
+            final var dir = isSet(storeDirectory) ? new File(storeDirectory) : new File(configuration.getLocalConfigurationDirectory(), "logs");
+            try {
+                store = new LogStore(dir, storeSegmentSize, storeMaxSegments);
+                LOGGER.info("Log store in {} with {} entries", dir.getAbsolutePath(), store.getNextSeq());
+            } catch (Exception e) {
+                LOGGER.error("Can't open log store in {}", dir.getAbsolutePath(), e);
+            }
+        }
+        final var root = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+        appender = new LogbackKt2lAppender(queueSize);
+        // errors of the dispatcher are reported to the logback status manager
+        appender.setContext(root.getLoggerContext());
+        root.addAppender(appender);
+        dispatcher = Thread.ofPlatform().daemon().name("log-dispatcher").start(this::dispatch);
     }
 
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).detachAppender(appender);
+        appender.stop();
+        if (dispatcher != null)
+            LockSupport.unpark(dispatcher);
+    }
+
+    /**
+     * Register a subscriber. The subscriber is weak referenced and removed if it is garbage collected.
+     */
+    public IRegistration subscribe(LogEventSubscriber subscriber) {
+        final var subscription = new WeakReference<>(subscriber);
+        subscriptions.add(subscription);
+        return () -> subscriptions.remove(subscription);
+    }
+
+    private void dispatch() {
+        final var batch = new ArrayList<ILoggingEvent>(Math.max(1, batchSize));
+        while (running) {
+            if (appender.isEmpty()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis)));
+                continue;
+            }
+            ILoggingEvent event;
+            while (batch.size() < Math.max(1, batchSize) && (event = appender.poll()) != null)
+                batch.add(event);
+            try {
+                deliver(batch);
+            } catch (Throwable t) {
+                // do not log, it would loop back into the queue
+                appender.addError("Log dispatcher failed", t);
+            }
+            batch.clear();
+        }
+    }
+
+    private void deliver(List<ILoggingEvent> batch) {
+        final var currentStore = store;
+        if (currentStore != null) {
+            try {
+                currentStore.append(batch);
+            } catch (Exception e) {
+                // disable, logging every batch would feed the queue forever
+                store = null;
+                appender.addError("Log store failed and is disabled", e);
+            }
+        }
+        for (var subscription : subscriptions) {
+            final var subscriber = subscription.get();
+            if (subscriber == null) {
+                subscriptions.remove(subscription);
+                continue;
+            }
+            final var minLevel = subscriber.getLevel().toInt();
+            final var filtered = new ArrayList<ILoggingEvent>(batch.size());
+            for (var event : batch)
+                if (event.getLevel().toInt() >= minLevel)
+                    filtered.add(event);
+            if (filtered.isEmpty()) continue;
+            if (!subscriber.onEvents(filtered))
+                subscriberDropped.addAndGet(filtered.size());
+        }
+    }
+
+    /**
+     * Return stored events older than beforeSeq matching the query, newest first. Returns an empty list if the
+     * store is disabled.
+     */
+    List<LogStore.LogRecord> queryStore(LogStore.LogQuery query, long beforeSeq, int limit) {
+        final var currentStore = store;
+        return currentStore == null ? List.of() : currentStore.query(query, beforeSeq, limit);
+    }
+
+    /**
+     * Return the sequence to start paging backwards at the timestamp.
+     */
+    public long getStoreSeqAfter(long timestamp) {
+        final var currentStore = store;
+        return currentStore == null ? 0 : currentStore.seqAfter(timestamp);
+    }
+
+    public long getStoreNextSeq() {
+        final var currentStore = store;
+        return currentStore == null ? 0 : currentStore.getNextSeq();
+    }
+
+    public boolean isStoreEnabled() {
+        return store != null;
+    }
+
+    /**
+     * Events dropped because the dispatcher was behind.
+     */
+    public long getDroppedEvents() {
+        return appender == null ? 0 : appender.getDropped();
+    }
+
+    /**
+     * Events dropped because subscribers were behind.
+     */
+    public long getSubscriberDroppedEvents() {
+        return subscriberDropped.get();
+    }
+
+    public int getQueuedEvents() {
+        return appender == null ? 0 : appender.getQueueSize();
+    }
 
-    public MEventHandler<ILoggingEvent> getEventHandler() {
-        return eventHandler;
+    public int getSubscriberCount() {
+        return subscriptions.size();
     }
 
 }
@@ -19,22 +19,58 @@ package de.mhus.ae.system;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.AppenderBase;
-import de.mhus.commons.util.MEventHandler;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects logging events in a bounded queue. The events are delivered by the LogbackEventProvider
+ * dispatcher, the logging thread never waits for subscribers.
+ */
 public class LogbackKt2lAppender extends AppenderBase<ILoggingEvent> {
 
-    private final MEventHandler<ILoggingEvent> eventHandler;
+    private final Queue<ILoggingEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int capacity;
 
-    public LogbackKt2lAppender(MEventHandler<ILoggingEvent> eventHandler) {
-        this.eventHandler = eventHandler;
+    public LogbackKt2lAppender(int capacity) {
+        this.capacity = capacity;
         setName("kt2l");
         start();
     }
 
     @Override
     protected void append(ILoggingEvent eventObject) {
-//        System.out.println("Yooooo");
-        eventHandler.fire(eventObject);
+        if (queueSize.incrementAndGet() > capacity) {
+            queueSize.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        // the event is processed in another thread
+        eventObject.prepareForDeferredProcessing();
+        queue.offer(eventObject);
+    }
+
+    ILoggingEvent poll() {
+        final var event = queue.poll();
+        if (event != null)
+            queueSize.decrementAndGet();
+        return event;
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    int getQueueSize() {
+        return queueSize.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
     }
 
 }
@@ -0,0 +1,141 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.system;
+
+import de.mhus.ae.aaa.SecurityUtils;
+import de.mhus.ae.core.Core;
+import de.mhus.ae.core.CoreListener;
+import de.mhus.ae.core.DeskTab;
+import de.mhus.commons.tools.MString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static de.mhus.commons.tools.MLang.tryThis;
+
+/**
+ * Estimates the retained server side size of each Core session, broken down per tab. The
+ * estimation is updated by the session itself from the refresh tick (in the UI lock) and
+ * enforces an optional per-user budget by closing the oldest reproducible tabs.
+ */
+@Slf4j
+@Component
+public class SessionMemoryAccountant implements CoreListener {
+
+    private final Map<Core, SessionMemory> sessions = new ConcurrentHashMap<>();
+    private final LongAdder closedTabs = new LongAdder();
+
+    @Override
+    public void onCoreCreated(Core core) {
+        final var userId = tryThis(() -> SecurityUtils.getUser().getUserId()).orElse("?");
+        sessions.put(core, new SessionMemory(core.getSessionId(), userId, 0, List.of(), System.currentTimeMillis()));
+    }
+
+    @Override
+    public void onCoreDestroyed(Core core) {
+        sessions.remove(core);
+    }
+
+    /**
+     * Measure the tabs of the session and close the oldest reproducible tabs if the
+     * retained size of all sessions of the user exceeds the budget. Must be called in the UI lock.
+     *
+     * @param core The session
+     * @param userBudget Budget in bytes for all sessions of the user, 0 to disable
+     */
+    public void account(Core core, long userBudget) {
+        final var last = sessions.get(core);
+        if (last == null || core.getTabBar() == null) return;
+        var current = measure(core, last.userId());
+        sessions.put(core, current);
+        if (userBudget <= 0) return;
+
+        var userTotal = getRetainedSizeOfUser(current.userId());
+        if (userTotal <= userBudget) return;
+        final var candidates = core.getTabBar().getTabs().stream()
+                .filter(t -> t != core.getTabBar().getSelectedTab()
+                        && t.isCloseable()
+                        && t.isReproducable()
+                        && t.isPanelCreated()
+                        && t.getUnselectedSince() > 0)
+                .sorted(Comparator.comparingLong(DeskTab::getUnselectedSince))
+                .toList();
+        for (var tab : candidates) {
+            if (userTotal <= userBudget) break;
+            final var size = tab.getRetainedSizeEstimate();
+            LOGGER.info("㋡ {} Close tab {} ({}) of user {}, memory budget {} exceeded",
+                    current.sessionId(), tab.getTabId(), MString.toByteDisplayString(size),
+                    current.userId(), MString.toByteDisplayString(userBudget));
+            tab.closeTab();
+            closedTabs.increment();
+            userTotal -= size;
+        }
+        sessions.put(core, measure(core, last.userId()));
+    }
+
+    private SessionMemory measure(Core core, String userId) {
+        final var tabs = new ArrayList<TabMemory>();
+        long total = 0;
+        for (var tab : core.getTabBar().getTabs()) {
+            final var elements = tab.getRetainedElements();
+            final var size = tab.getRetainedSizeEstimate();
+            tabs.add(new TabMemory(tab.getTabId(), elements, size, tab.isReproducable(), tab.getUnselectedSince()));
+            total += size;
+        }
+        return new SessionMemory(core.getSessionId(), userId, total, List.copyOf(tabs), System.currentTimeMillis());
+    }
+
+    public List<SessionMemory> getSessions() {
+        return sessions.values().stream()
+                .sorted(Comparator.comparingLong(SessionMemory::retainedSize).reversed())
+                .toList();
+    }
+
+    public long getRetainedSize() {
+        return sessions.values().stream().mapToLong(SessionMemory::retainedSize).sum();
+    }
+
+    public long getRetainedSizeOfUser(String userId) {
+        return sessions.values().stream()
+                .filter(s -> s.userId().equals(userId))
+                .mapToLong(SessionMemory::retainedSize).sum();
+    }
+
+    public Map<String, Long> getRetainedSizeByUser() {
+        final var result = new TreeMap<String, Long>();
+        sessions.values().forEach(s -> result.merge(s.userId(), s.retainedSize(), Long::sum));
+        return result;
+    }
+
+    public long getClosedTabs() {
+        return closedTabs.sum();
+    }
+
+    public record SessionMemory(String sessionId, String userId, long retainedSize, List<TabMemory> tabs, long updated) {
+    }
+
+    public record TabMemory(String tabId, long elements, long retainedSize, boolean reproducable, long unselectedSince) {
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.system;
+
+import de.mhus.ae.aaa.SecurityService;
+import de.mhus.ae.aaa.UsersConfiguration;
+import de.mhus.ae.aaa.oauth2.AuthProvider;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metrics endpoint for the session memory accounting, only available for admins.
+ */
+@RestController
+@RequestMapping("/system/memory")
+public class SessionMemoryController {
+
+    @Autowired
+    private SessionMemoryAccountant accountant;
+    @Autowired
+    private AuthProvider authProvider;
+    @Autowired
+    private SecurityService securityService;
+
+    @GetMapping
+    public Metrics metrics(final HttpServletResponse response) {
+        if (!isAdmin()) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return null;
+        }
+        return new Metrics(
+                CoreCounterListener.getCounter(),
+                accountant.getRetainedSize(),
+                accountant.getClosedTabs(),
+                accountant.getRetainedSizeByUser(),
+                accountant.getSessions());
+    }
+
+    private boolean isAdmin() {
+        // resolve the AaaUser, OAuth2 users get their roles from the repository and not as authorities
+        final var user = authProvider.fetchUserFromContext().orElse(null);
+        return securityService.hasRole(UsersConfiguration.ROLE.ADMIN, user);
+    }
+
+    public record Metrics(
+            int sessions,
+            long retainedSize,
+            long closedTabs,
+            Map<String, Long> retainedSizeByUser,
+            List<SessionMemoryAccountant.SessionMemory> details) {
+    }
+}
@@ -27,6 +27,7 @@ import de.mhus.commons.tools.MString;
 import de.mhus.commons.tools.MSystem;
 import de.mhus.ae.aaa.SecurityContext;
 import de.mhus.ae.config.Configuration;
+import de.mhus.ae.core.CoreTickDispatcher;
 import de.mhus.ae.core.DeskTab;
 import de.mhus.ae.core.DeskTabListener;
 import de.mhus.ae.core.PanelService;
@@ -87,13 +88,14 @@ public class SystemInfoPanel extends VerticalLayout implements DeskTabListener {
 
     @Override
     public void tabRefresh(long counter) {
+        deskTab.getTabBar().getCore().ui().access(() -> {
+            updateInfo(counter);
+        });
+    }
 
-        if (counter % 3 == 0) {
-            deskTab.getTabBar().getCore().ui().access(() -> {
-                updateInfo(counter);
-            });
-        }
-
+    @Override
+    public long getRefreshInterval() {
+        return 3;
     }
 
     private void updateInfo(long counter) {
@@ -111,6 +113,26 @@ public class SystemInfoPanel extends VerticalLayout implements DeskTabListener {
         i.append("Up Time        : " + upTimeService.getUpTimeFormatted() + "\n");
         i.append("\n");
         i.append("Active Sessions: " + CoreCounterListener.getCounter() + "\n");
+        var tickDispatcher = tryThis(() -> deskTab.getTabBar().getCore().getBean(CoreTickDispatcher.class)).orElse(null);
+        if (tickDispatcher != null) {
+        i.append("Tick Lag       : " + tickDispatcher.getTickLag() + "ms (max " + tickDispatcher.getMaxTickLag() + "ms)\n");
+        i.append("Tick Dispatch  : " + tickDispatcher.getDispatchTime() + "ms (max " + tickDispatcher.getMaxDispatchTime() + "ms)\n");
+        i.append("Tick Sessions  : " + tickDispatcher.getDispatchedCores() + " dispatched / " + tickDispatcher.getSkippedCores() + " skipped / " + tickDispatcher.getRegisteredCores() + " registered\n");
+        }
+        var logProvider = tryThis(() -> deskTab.getTabBar().getCore().getBean(LogbackEventProvider.class)).orElse(null);
+        if (logProvider != null) {
+        i.append("Log Dispatch   : " + logProvider.getQueuedEvents() + " queued / " + logProvider.getDroppedEvents() + " dropped / " + logProvider.getSubscriberDroppedEvents() + " dropped by " + logProvider.getSubscriberCount() + " subscribers\n");
+        }
+        var memoryAccountant = tryThis(() -> deskTab.getTabBar().getCore().getBean(SessionMemoryAccountant.class)).orElse(null);
+        if (memoryAccountant != null) {
+        i.append("Session Memory : " + MString.toByteDisplayString(memoryAccountant.getRetainedSize()) + " estimated / " + memoryAccountant.getClosedTabs() + " tabs closed by budget\n");
+        var sessionId = deskTab.getTabBar().getCore().getSessionId();
+        memoryAccountant.getSessions().stream().filter(s -> s.sessionId().equals(sessionId)).findFirst().ifPresent(s -> {
+        i.append("This Session   : " + MString.toByteDisplayString(s.retainedSize()) + " in " + s.tabs().size() + " tabs\n");
+        s.tabs().forEach(t ->
+        i.append("  " + t.tabId() + ": " + MString.toByteDisplayString(t.retainedSize()) + " (" + t.elements() + " elements)\n"));
+        });
+        }
         i.append("Current User   : " + tryThis(() -> SecurityContext.lookupUserId()).orElse("?") + "\n");
         i.append("\n");
         i.append("Memory         : " + MSystem.freeMemoryAsString() + " / " + MSystem.maxMemoryAsString() + "\n");
@@ -19,36 +19,47 @@ package de.mhus.ae.system;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.component.contextmenu.MenuItem;
 import com.vaadin.flow.component.menubar.MenuBar;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import de.mhus.commons.lang.IRegistration;
-import de.mhus.commons.tools.MDate;
-import de.mhus.commons.tools.MString;
 import de.mhus.ae.core.Core;
 import de.mhus.ae.core.DeskTab;
 import de.mhus.ae.core.DeskTabListener;
-import de.mhus.ae.ui.Tail;
 import de.mhus.ae.ui.TailRow;
 import de.mhus.ae.ui.UiUtil;
+import de.mhus.ae.ui.VirtualTail;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Configurable;
 
-import java.util.function.Consumer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Configurable
-public class SystemLogPanel extends VerticalLayout implements DeskTabListener, Consumer<ILoggingEvent> {
+public class SystemLogPanel extends VerticalLayout implements DeskTabListener, LogEventSubscriber {
 
     @Autowired
     private LogbackEventProvider logbackConfiguration;
 
-    private Tail logs;
+    private static final int MAX_ROWS = 10000;
+
+    private VirtualTail logs;
+    private final Queue<ILoggingEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
     private IRegistration registration;
     private DeskTab deskTab;
     private Core core;
-    private Level level = Level.DEBUG;
+    private volatile Level level = Level.DEBUG;
     private MenuItem debugItem;
     private MenuItem infoItem;
     private MenuItem warnItem;
@@ -61,6 +72,8 @@ public class SystemLogPanel extends VerticalLayout implements DeskTabListener, C
 
         var menuBar = new MenuBar();
         menuBar.addItem("Clear", e -> logs.clear());
+        if (logbackConfiguration.isStoreEnabled())
+            menuBar.addItem("History", e -> new LogHistoryDialog(logbackConfiguration, level).open());
         var levelItem = menuBar.addItem("Level");
         var levelMenu = levelItem.getSubMenu();
         debugItem = levelMenu.addItem("Debug", e -> {
@@ -87,8 +100,8 @@ public class SystemLogPanel extends VerticalLayout implements DeskTabListener, C
 
         add(menuBar);
 
-        logs = new Tail();
-        logs.setMaxRows(1000);
+        logs = new VirtualTail(MAX_ROWS);
+        logs.setDetailsProvider(LogLineFormatter::details);
         logs.addClassName("log-view");
         logs.setSizeFull();
         add(logs);
@@ -97,7 +110,9 @@ public class SystemLogPanel extends VerticalLayout implements DeskTabListener, C
         setPadding(false);
         setMargin(false);
 
-        registration = logbackConfiguration.getEventHandler().registerWeak(this);
+        // a flush scheduled for a detached ui never runs, allow to schedule again
+        addDetachListener(e -> flushScheduled.set(false));
+        registration = logbackConfiguration.subscribe(this);
         LOGGER.info("Logging Panel Started");
     }
 
@@ -130,37 +145,64 @@ public class SystemLogPanel extends VerticalLayout implements DeskTabListener, C
     }
 
     @Override
-    public void accept(ILoggingEvent event) {
-
-        if (event.getLevel().toInt() < level.toInt()) return;
-
-        core.ui().access(() -> {
-            StringBuilder sb = new StringBuilder();
-            sb.append(MDate.toIsoDateTime(event.getTimeStamp())).append(" ");
-            sb.append(event.getLevel()).append(" ");
-            MString.fillUntil(sb, 30, ' ');
-            sb.append(event.getFormattedMessage()).append(" (");
-            sb.append(event.getLoggerName()).append(")");
-
-            var row = TailRow.builder().text(sb.toString());
-            row.color(switch (event.getLevel().toInt()) {
-                case Level.ERROR_INT: yield UiUtil.COLOR.RED;
-                case Level.WARN_INT: yield UiUtil.COLOR.YELLOW;
-                case Level.INFO_INT: yield UiUtil.COLOR.GREEN;
-                case Level.DEBUG_INT: yield UiUtil.COLOR.GREY;
-                default: yield UiUtil.COLOR.NONE;
-            });
-            var r = row.build();
-            logs.addRow(r);
-
-            if (event.getThrowableProxy() != null) {
-                var t = event.getThrowableProxy();
-                logs.addRow(TailRow.builder().text(t.getMessage()).color(r.getColor()).build());
-                for (var line : t.getStackTraceElementProxyArray())
-                    logs.addRow(TailRow.builder().text("  " + line.toString()).color(r.getColor()).build());
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public boolean onEvents(List<ILoggingEvent> events) {
+        // the ui is not able to follow
+        if (pendingCount.get() > MAX_ROWS) {
+            dropped.addAndGet(events.size());
+            return false;
+        }
+        pending.addAll(events);
+        pendingCount.addAndGet(events.size());
+        if (flushScheduled.compareAndSet(false, true)) {
+            var ui = core.ui();
+            if (ui == null) {
+                flushScheduled.set(false);
+                return true;
+            }
+            try {
+                ui.access(this::flush);
+            } catch (UIDetachedException e) {
+                flushScheduled.set(false);
             }
+        }
+        return true;
+    }
 
+    private void flush() {
+        flushScheduled.set(false);
+        final var rows = new ArrayList<TailRow>();
+        final var droppedEvents = dropped.getAndSet(0);
+        if (droppedEvents > 0)
+            rows.add(TailRow.builder().text("... " + droppedEvents + " events dropped").color(UiUtil.COLOR.RED).build());
+        ILoggingEvent event;
+        while ((event = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            addRows(rows, event);
+        }
+        logs.addRows(rows);
+    }
 
-        });
+    private void addRows(List<TailRow> rows, ILoggingEvent event) {
+        rows.add(LogLineFormatter.toRow(
+                event.getTimeStamp(),
+                event.getLevel(),
+                event.getFormattedMessage(),
+                event.getLoggerName(),
+                event.getThrowableProxy()));
+    }
+
+    static UiUtil.COLOR toColor(Level level) {
+        return switch (level.toInt()) {
+            case Level.ERROR_INT: yield UiUtil.COLOR.RED;
+            case Level.WARN_INT: yield UiUtil.COLOR.YELLOW;
+            case Level.INFO_INT: yield UiUtil.COLOR.GREEN;
+            case Level.DEBUG_INT: yield UiUtil.COLOR.GREY;
+            default: yield UiUtil.COLOR.NONE;
+        };
     }
 }
@@ -0,0 +1,135 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.ui;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Array backed ring buffer with a fixed capacity. If the buffer is full the oldest entries are evicted.
+ * Index 0 is the oldest entry. All methods are thread safe.
+ *
+ * @param <T> Type of the entries
+ */
+public class RingBuffer<T> {
+
+    private Object[] entries;
+    private int head;
+    private int size;
+
+    public RingBuffer(int capacity) {
+        entries = new Object[Math.max(1, capacity)];
+    }
+
+    /**
+     * Add an entry, return the evicted entry or null.
+     */
+    public synchronized T add(T entry) {
+        T evicted = null;
+        final var pos = (head + size) % entries.length;
+        if (size == entries.length) {
+            evicted = entryAt(pos);
+            head = (head + 1) % entries.length;
+        } else {
+            size++;
+        }
+        entries[pos] = entry;
+        return evicted;
+    }
+
+    /**
+     * Add all entries, evicted entries are given to the consumer if set.
+     */
+    public synchronized void addAll(Collection<? extends T> add, Consumer<T> evicted) {
+        for (T entry : add) {
+            final var e = add(entry);
+            if (e != null && evicted != null)
+                evicted.accept(e);
+        }
+    }
+
+    public synchronized T get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+        return entryAt((head + index) % entries.length);
+    }
+
+    /**
+     * Return a copy of the entries from offset, at most limit entries.
+     */
+    public synchronized List<T> range(int offset, int limit) {
+        final var from = Math.max(0, offset);
+        final var to = Math.min(size, from + Math.max(0, limit));
+        final var result = new ArrayList<T>(Math.max(0, to - from));
+        for (int i = from; i < to; i++)
+            result.add(entryAt((head + i) % entries.length));
+        return result;
+    }
+
+    public synchronized List<T> toList() {
+        return range(0, size);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * Change the capacity, the newest entries are kept.
+     */
+    public synchronized void setCapacity(int capacity) {
+        final var keep = range(Math.max(0, size - Math.max(1, capacity)), size);
+        entries = new Object[Math.max(1, capacity)];
+        head = 0;
+        size = 0;
+        keep.forEach(this::add);
+    }
+
+    /**
+     * Remove the entry, O(n).
+     */
+    public synchronized boolean remove(T entry) {
+        for (int i = 0; i < size; i++) {
+            if (entryAt((head + i) % entries.length) == entry) {
+                for (int j = i; j < size - 1; j++)
+                    entries[(head + j) % entries.length] = entries[(head + j + 1) % entries.length];
+                entries[(head + size - 1) % entries.length] = null;
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized void clear() {
+        entries = new Object[entries.length];
+        head = 0;
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T entryAt(int pos) {
+        return (T) entries[pos];
+    }
+}
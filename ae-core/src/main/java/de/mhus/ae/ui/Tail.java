@@ -17,24 +17,54 @@
  */
 package de.mhus.ae.ui;
 
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.component.html.Paragraph;
 import com.vaadin.flow.component.orderedlayout.Scroller;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Tail with one paragraph element per row, for short outputs where every row should be in the DOM. Core
+ * panels use VirtualTail for large logs, Tail is kept as the simple variant for panels of other modules.
+ */
 public class Tail extends Scroller {
 
+    /**
+     * Maximum number of rows waiting for a flush if maxRows is not set.
+     */
+    private static final int MAX_PENDING_ROWS = 10000;
+
     private final VerticalLayout content;
-    private LinkedList<TailRow> rows = new LinkedList<>();
-    @Getter @Setter
+    private final RingBuffer<TailRow> rows = new RingBuffer<>(1000);
+    @Getter
     private int maxRows;
     @Getter @Setter
     private boolean autoScroll;
+    /**
+     * Maximum number of ui updates per second for rows appended with appendRows(), 0 is unlimited.
+     */
+    @Getter @Setter
+    private int maxUpdatesPerSecond;
+    private final Queue<TailRow> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile long lastFlush;
 
     public Tail() {
         content = new VerticalLayout();
@@ -43,35 +73,53 @@ public class Tail extends Scroller {
         content.setPadding(false);
         content.setSpacing(false);
 //        content.setWidth("100%");
+        // rows appended while detached are shown after the next attach
+        addAttachListener(e -> {
+            if (!pending.isEmpty())
+                scheduleFlush();
+        });
+    }
+
+    public void setMaxRows(int maxRows) {
+        this.maxRows = maxRows;
+        synchronized (this) {
+            // without limit the buffer grows on demand
+            if (maxRows > 0)
+                rows.setCapacity(maxRows);
+            trim();
+        }
     }
 
     public void removeRow(TailRow row) {
-        synchronized (rows) {
+        synchronized (this) {
             rows.remove(row);
             content.remove(row.getElement());
         }
     }
 
     public void clear() {
-        synchronized (rows) {
+        synchronized (this) {
             rows.clear();
             content.removeAll();
         }
     }
 
     public List<TailRow> getRows() {
-        synchronized (rows) {
-            return List.copyOf(rows);
-        }
+        return rows.toList();
     }
 
-    public void addRows(Collection<TailRow> roww) {
-        synchronized (rows) {
-            rows.forEach(row -> {
-                rows.remove(row);
-                rows.add(row);
-
+    /**
+     * Add the rows in one step, the elements are added at once and the view is scrolled once.
+     * Must be called in the UI thread.
+     */
+    public void addRows(Collection<TailRow> add) {
+        if (add.isEmpty()) return;
+        synchronized (this) {
+            final var elements = new ArrayList<Component>(add.size());
+            final Set<Component> evictedInBatch = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (TailRow row : add) {
                 if (row.getElement() != null) {
+                    rows.remove(row);
                     content.remove(row.getElement()); // for secure
                 } else {
                     row.setElement(new Paragraph(row.getText()));
@@ -80,12 +128,19 @@ public class Tail extends Scroller {
                     row.getElement().addClassName("color-" + row.getColor().name().toLowerCase());
                 if (row.getBgcolor() != null)
                     row.getElement().addClassName("bgcolor-" + row.getBgcolor().name().toLowerCase());
-                content.add(row.getElement());
-            });
-            while (maxRows > 0 && rows.size() > maxRows) {
-                TailRow first = rows.removeFirst();
-                content.remove(first.getElement());
+                if (maxRows <= 0 && rows.size() == rows.capacity())
+                    rows.setCapacity(rows.capacity() * 2);
+                final var evicted = rows.add(row);
+                if (evicted != null) {
+                    content.remove(evicted.getElement());
+                    evictedInBatch.add(evicted.getElement());
+                }
+                elements.add(row.getElement());
             }
+            // rows evicted by this batch are not added at all
+            if (!evictedInBatch.isEmpty())
+                elements.removeIf(evictedInBatch::contains);
+            content.add(elements);
         }
         if (autoScroll) {
             scrollToEnd();
@@ -93,33 +148,67 @@ public class Tail extends Scroller {
     }
 
     public void addRow(TailRow row) {
-        synchronized (rows) {
-            rows.remove(row);
-            rows.add(row);
+        addRows(List.of(row));
+    }
 
-            if (row.getElement() != null) {
-                content.remove(row.getElement()); // for secure
-            } else {
-                row.setElement(new Paragraph(row.getText()));
-            }
-            if (row.getColor() != null)
-                row.getElement().addClassName("color-" + row.getColor().name().toLowerCase());
-            if (row.getBgcolor() != null)
-                row.getElement().addClassName("bgcolor-" + row.getBgcolor().name().toLowerCase());
-            content.add(row.getElement());
-            while (maxRows > 0 && rows.size() > maxRows) {
-                TailRow first = rows.removeFirst();
-                content.remove(first.getElement());
-            }
+    /**
+     * Append rows from any thread. Bursts are collected and added in one UI access, limited
+     * by maxUpdatesPerSecond. While detached only the last maxRows rows are kept until the next attach.
+     */
+    public void appendRows(Collection<TailRow> add) {
+        pending.addAll(add);
+        var count = pendingCount.addAndGet(add.size());
+        // the oldest rows would be trimmed by addRows anyway
+        final var limit = maxRows > 0 ? maxRows : MAX_PENDING_ROWS;
+        while (count > limit && pending.poll() != null)
+            count = pendingCount.decrementAndGet();
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) return;
+        final var ui = getUI().orElse(null);
+        if (ui == null) {
+            flushScheduled.set(false);
+            return;
         }
-        if (autoScroll) {
-            scrollToEnd();
+        final var delay = maxUpdatesPerSecond <= 0 ? 0 : lastFlush + 1000 / maxUpdatesPerSecond - System.currentTimeMillis();
+        if (delay <= 0)
+            accessFlush(ui);
+        else
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> accessFlush(ui));
+    }
+
+    private void accessFlush(UI ui) {
+        try {
+            ui.access(this::flushPending);
+        } catch (UIDetachedException e) {
+            // flushed after the next attach
+            flushScheduled.set(false);
         }
+    }
 
+    private void flushPending() {
+        flushScheduled.set(false);
+        lastFlush = System.currentTimeMillis();
+        final var batch = new ArrayList<TailRow>();
+        TailRow row;
+        while ((row = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(row);
+        }
+        addRows(batch);
     }
 
     public void scrollToEnd() {
         getElement().executeJs("this.scrollTop = this.scrollHeight;");
     }
 
+    private void trim() {
+        // setCapacity already dropped the oldest rows, remove the elements
+        final Set<Component> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+        rows.toList().forEach(r -> keep.add(r.getElement()));
+        content.getChildren().filter(c -> !keep.contains(c)).toList().forEach(content::remove);
+    }
+
 }
@@ -0,0 +1,126 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.ui;
+
+import com.vaadin.flow.component.virtuallist.VirtualList;
+import com.vaadin.flow.data.renderer.LitRenderer;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Tail like view for a large number of rows. The rows are stored in a server side ring buffer, only the
+ * visible rows are sent to the browser.
+ */
+public class VirtualTail extends VirtualList<TailRow> {
+
+    private static final Map<UiUtil.COLOR, String> COLOR_CLASSES = new EnumMap<>(UiUtil.COLOR.class);
+
+    static {
+        for (var color : UiUtil.COLOR.values())
+            COLOR_CLASSES.put(color, "color-" + color.name().toLowerCase());
+    }
+
+    private final RingBuffer<TailRow> rows;
+    @Getter @Setter
+    private boolean autoScroll = true;
+    /**
+     * Creates the details of a row, e.g. a stack trace. Rows with details can be expanded by click,
+     * the details are created if the row is expanded.
+     */
+    @Getter @Setter
+    private Function<TailRow, String> detailsProvider;
+    private final Set<TailRow> expanded = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public VirtualTail(int maxRows) {
+        rows = new RingBuffer<>(maxRows);
+        setRenderer(LitRenderer.<TailRow>of(
+                "<div class=\"${item.className}\" @click=${toggle}>"
+                        + "<p>${item.text}${item.more}</p>"
+                        + "<pre ?hidden=${!item.details}>${item.details}</pre>"
+                        + "</div>")
+                .withProperty("text", TailRow::getText)
+                .withProperty("className", VirtualTail::toClassName)
+                .withProperty("more", row -> hasDetails(row) ? (expanded.contains(row) ? " [-]" : " [+]") : "")
+                .withProperty("details", row -> expanded.contains(row) ? detailsProvider.apply(row) : "")
+                .withFunction("toggle", this::toggle));
+        setItems(
+                query -> rows.range(query.getOffset(), query.getLimit()).stream(),
+                query -> rows.size());
+    }
+
+    /**
+     * Add the rows and update the view once. Must be called in the UI thread.
+     */
+    public void addRows(Collection<TailRow> add) {
+        if (add.isEmpty()) return;
+        rows.addAll(add, expanded.isEmpty() ? null : expanded::remove);
+        getDataProvider().refreshAll();
+        if (autoScroll)
+            scrollToIndex(rows.size() - 1);
+    }
+
+    public void addRow(TailRow row) {
+        addRows(List.of(row));
+    }
+
+    private boolean hasDetails(TailRow row) {
+        return detailsProvider != null && row.getUserObject() != null;
+    }
+
+    private void toggle(TailRow row) {
+        if (!hasDetails(row)) return;
+        if (!expanded.remove(row))
+            expanded.add(row);
+        getDataProvider().refreshItem(row);
+    }
+
+    public void clear() {
+        expanded.clear();
+        rows.clear();
+        getDataProvider().refreshAll();
+    }
+
+    public int getMaxRows() {
+        return rows.capacity();
+    }
+
+    public void setMaxRows(int maxRows) {
+        rows.setCapacity(maxRows);
+        getDataProvider().refreshAll();
+    }
+
+    private static String toClassName(TailRow row) {
+        if (row.getBgcolor() == null)
+            return row.getColor() == null ? "" : COLOR_CLASSES.get(row.getColor());
+        final var sb = new StringBuilder();
+        if (row.getColor() != null)
+            sb.append(COLOR_CLASSES.get(row.getColor())).append(" ");
+        sb.append("bgcolor-").append(row.getBgcolor().name().toLowerCase());
+        return sb.toString();
+    }
+
+}
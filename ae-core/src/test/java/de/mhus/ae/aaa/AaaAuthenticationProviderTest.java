@@ -0,0 +1,114 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AaaAuthenticationProviderTest {
+
+    private AaaPasswordEncoders passwordEncoders;
+    private InMemoryUserRepository repository;
+    private AaaAuthenticationProvider provider;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        passwordEncoders = new AaaPasswordEncoders();
+        ReflectionTestUtils.setField(passwordEncoders, "cacheTtlSeconds", 60L);
+        ReflectionTestUtils.setField(passwordEncoders, "cacheMaxSize", 10);
+        ReflectionTestUtils.setField(passwordEncoders, "verifyQueueSize", 10);
+        ReflectionTestUtils.setField(passwordEncoders, "upgradeEnabled", true);
+        ReflectionTestUtils.setField(passwordEncoders, "upgradeEncoderId", "bcrypt");
+        ReflectionTestUtils.setField(passwordEncoders, "upgradeTargetMillis", 1L);
+        passwordEncoders.init();
+        final var end = System.currentTimeMillis() + 30000;
+        while (!passwordEncoders.needsUpgrade("{noop}secret") && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+
+        repository = new InMemoryUserRepository();
+        repository.createUser(AaaUser.builder().userId("alice").encodedPassword("{noop}secret").roles(List.of("READ")).build());
+        final var repositoryService = new AaaUserRepositoryService();
+        ReflectionTestUtils.setField(repositoryService, "repository", repository);
+        final var userDetailsService = new UserDetailsManagerToUserRepositoryService();
+        ReflectionTestUtils.setField(userDetailsService, "userRepository", repositoryService);
+
+        provider = new AaaAuthenticationProvider();
+        ReflectionTestUtils.setField(provider, "passwordEncoders", passwordEncoders);
+        ReflectionTestUtils.setField(provider, "userDetailsService", userDetailsService);
+        provider.init();
+        provider.afterPropertiesSet();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        passwordEncoders.destroy();
+    }
+
+    @Test
+    public void testLoginDoesNotWaitForUpgrade() throws InterruptedException {
+        final var upgradeExecutor = (ThreadPoolExecutor) ReflectionTestUtils.getField(passwordEncoders, "upgradeExecutor");
+        final var release = new CountDownLatch(1);
+        // block the upgrade thread, the login must return anyway
+        upgradeExecutor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        final var authentication = provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "secret"));
+        assertThat(authentication.isAuthenticated()).isTrue();
+        assertThat(repository.getUserByUserId("alice").orElseThrow().getEncodedPassword()).isEqualTo("{noop}secret");
+
+        release.countDown();
+        final var end = System.currentTimeMillis() + 10000;
+        while (repository.getUserByUserId("alice").orElseThrow().getEncodedPassword().startsWith("{noop}")
+                && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        final var upgraded = repository.getUserByUserId("alice").orElseThrow().getEncodedPassword();
+        assertThat(upgraded).startsWith("{bcrypt}");
+        assertThat(provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "secret")).isAuthenticated()).isTrue();
+        upgradeExecutor.shutdown();
+        assertThat(upgradeExecutor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(repository.getUserByUserId("alice").orElseThrow().getEncodedPassword()).isEqualTo(upgraded);
+    }
+
+    @Test
+    public void testFailedLoginIsNotUpgraded() throws InterruptedException {
+        assertThatThrownBy(() -> provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "wrong")))
+                .isInstanceOf(BadCredentialsException.class);
+        final var upgradeExecutor = (ThreadPoolExecutor) ReflectionTestUtils.getField(passwordEncoders, "upgradeExecutor");
+        upgradeExecutor.shutdown();
+        assertThat(upgradeExecutor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(repository.getUserByUserId("alice").orElseThrow().getEncodedPassword()).isEqualTo("{noop}secret");
+    }
+}
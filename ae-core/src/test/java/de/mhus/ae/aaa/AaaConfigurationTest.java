@@ -0,0 +1,108 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import de.mhus.ae.config.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AaaConfigurationTest {
+
+    @TempDir
+    private Path dir;
+    private Configuration configuration;
+    private AaaConfiguration aaaConfiguration;
+    private SecurityContext.Environment environment;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        write(dir.resolve("aaa.yaml"), """
+                resource:
+                  pods: admin, read
+                  nodes: ADMIN
+                """);
+        // aaa is protected, a user file must not override it
+        write(dir.resolve("users/alice/aaa.yaml"), """
+                resource:
+                  pods: read
+                """);
+        configuration = new Configuration();
+        ReflectionTestUtils.setField(configuration, "configurationDirectory", dir.toString());
+        ReflectionTestUtils.setField(configuration, "usersDirectory", "");
+        ReflectionTestUtils.setField(configuration, "localDirectory", "");
+        ReflectionTestUtils.setField(configuration, "tmpDirectory", dir.resolve("tmp").toString());
+        ReflectionTestUtils.setField(configuration, "watchConfiguration", false);
+        configuration.init();
+        aaaConfiguration = new AaaConfiguration();
+        ReflectionTestUtils.setField(aaaConfiguration, "configuration", configuration);
+        aaaConfiguration.init();
+        environment = new SecurityContext(AaaUser.builder().userId("alice").build()).enter();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        environment.close();
+        configuration.destroy();
+    }
+
+    @Test
+    public void testGetRoles() {
+        assertThat(aaaConfiguration.getRoles(AaaConfiguration.SCOPE_RESOURCE, "pods")).containsExactlyInAnyOrder("ADMIN", "READ");
+        assertThat(aaaConfiguration.getRoles(AaaConfiguration.SCOPE_RESOURCE, "nodes")).containsExactly("ADMIN");
+        assertThat(aaaConfiguration.getRoles(AaaConfiguration.SCOPE_RESOURCE, "services")).isNull();
+        assertThat(aaaConfiguration.getRoles(AaaConfiguration.SCOPE_CLUSTER, "pods")).isNull();
+    }
+
+    @Test
+    public void testRolesAreCached() {
+        var roles = aaaConfiguration.getRoles(AaaConfiguration.SCOPE_RESOURCE, "pods");
+        assertThat(aaaConfiguration.getRoles(AaaConfiguration.SCOPE_RESOURCE, "pods")).isSameAs(roles);
+        assertThat(aaaConfiguration.getRoles(AaaConfiguration.SCOPE_RESOURCE, "services")).isNull();
+        assertThat(aaaConfiguration.getRoles(AaaConfiguration.SCOPE_RESOURCE, "services")).isNull();
+    }
+
+    @Test
+    public void testRolesAreReloadedWithSection() throws IOException {
+        var roles = aaaConfiguration.getRoles(AaaConfiguration.SCOPE_RESOURCE, "pods");
+        write(dir.resolve("aaa.yaml"), """
+                resource:
+                  pods: write
+                  services: read
+                """);
+        configuration.invalidateSection("aaa");
+
+        assertThat(aaaConfiguration.getRoles(AaaConfiguration.SCOPE_RESOURCE, "pods"))
+                .isNotSameAs(roles)
+                .containsExactly("WRITE");
+        assertThat(aaaConfiguration.getRoles(AaaConfiguration.SCOPE_RESOURCE, "services")).containsExactly("READ");
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
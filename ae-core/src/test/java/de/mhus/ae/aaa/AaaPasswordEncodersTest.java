@@ -0,0 +1,198 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AaaPasswordEncodersTest {
+
+    private AaaPasswordEncoders encoders;
+
+    @AfterEach
+    public void tearDown() {
+        if (encoders != null)
+            encoders.destroy();
+    }
+
+    @Test
+    public void testCacheDisabled() {
+        encoders = create(false, 60, 10, 0);
+
+        assertThat(encoders.matches("secret", "{noop}secret")).isTrue();
+        assertThat(encoders.matches("secret", "{noop}secret")).isTrue();
+        assertThat(encoders.getCacheHits()).isZero();
+        assertThat(verified()).isEmpty();
+    }
+
+    @Test
+    public void testSuccessfulVerificationIsCached() {
+        encoders = create(true, 60, 10, 0);
+
+        assertThat(encoders.matches("secret", "{noop}secret")).isTrue();
+        assertThat(encoders.matches("secret", "{noop}secret")).isTrue();
+        assertThat(encoders.getCacheHits()).isEqualTo(1);
+        // the key is an HMAC, the map holds no password material
+        assertThat(verified()).hasSize(1).allSatisfy((key, expires) -> assertThat(key).doesNotContain("secret"));
+
+        // failed attempts and other encoded passwords are never served from the cache
+        assertThat(encoders.matches("wrong", "{noop}secret")).isFalse();
+        assertThat(encoders.matches("wrong", "{noop}secret")).isFalse();
+        assertThat(encoders.matches("secret", "{noop}changed")).isFalse();
+        assertThat(encoders.getCacheHits()).isEqualTo(1);
+        assertThat(verified()).hasSize(1);
+    }
+
+    @Test
+    public void testExpiredEntryIsVerifiedAgain() {
+        encoders = create(true, 60, 10, 0);
+
+        assertThat(encoders.matches("secret", "{noop}secret")).isTrue();
+        final var key = verified().keySet().iterator().next();
+        // expire the entry, the next verification must hash again and refresh it
+        verified().put(key, System.currentTimeMillis() - 1);
+
+        assertThat(encoders.matches("secret", "{noop}secret")).isTrue();
+        assertThat(encoders.getCacheHits()).isZero();
+        assertThat(verified().get(key)).isGreaterThan(System.currentTimeMillis());
+
+        assertThat(encoders.matches("secret", "{noop}secret")).isTrue();
+        assertThat(encoders.getCacheHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCacheSizeIsBounded() {
+        encoders = create(true, 60, 2, 0);
+
+        encoders.matches("a", "{noop}a");
+        encoders.matches("b", "{noop}b");
+        assertThat(verified()).hasSize(2);
+
+        // no expired entry to purge, the cache is dropped as a whole
+        encoders.matches("c", "{noop}c");
+        assertThat(verified()).hasSize(1);
+        encoders.matches("a", "{noop}a");
+        assertThat(encoders.getCacheHits()).isZero();
+
+        // expired entries are purged first
+        verified().replaceAll((key, expires) -> System.currentTimeMillis() - 1);
+        encoders.matches("b", "{noop}b");
+        assertThat(verified()).hasSize(1);
+    }
+
+    @Test
+    public void testVerificationOnExecutor() {
+        encoders = create(false, 60, 10, 1);
+
+        assertThat(encoders.matches("secret", "{noop}secret")).isTrue();
+        assertThat(encoders.matches("wrong", "{noop}secret")).isFalse();
+        assertThatThrownBy(() -> encoders.matches("secret", "{unknown}secret"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testSaturatedExecutorRejects() throws InterruptedException {
+        encoders = create(false, 60, 10, 1);
+        ReflectionTestUtils.setField(encoders, "verifyQueueSize", 1);
+        encoders.destroy();
+        encoders.init();
+        final var executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(encoders, "executor");
+        final var release = new CountDownLatch(1);
+        final var started = new CountDownLatch(1);
+        // occupy the single thread and the single queue slot
+        executor.execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        started.await();
+        executor.execute(() -> awaitQuietly(release));
+
+        assertThatThrownBy(() -> encoders.matches("secret", "{noop}secret"))
+                .isInstanceOf(AuthenticationServiceException.class)
+                .hasMessageContaining("Too many pending");
+        assertThat(encoders.getRejectedVerifications()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(encoders.matches("secret", "{noop}secret")).isTrue();
+    }
+
+    @Test
+    public void testUpgradeIsEncodedInBackground() throws InterruptedException {
+        encoders = create(false, 60, 10, 0);
+        ReflectionTestUtils.setField(encoders, "upgradeEnabled", true);
+        ReflectionTestUtils.setField(encoders, "upgradeEncoderId", "bcrypt");
+        ReflectionTestUtils.setField(encoders, "upgradeTargetMillis", 1L);
+        encoders.init();
+        final var end = System.currentTimeMillis() + 30000;
+        while (!encoders.needsUpgrade("{noop}secret") && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertThat(encoders.needsUpgrade("{noop}secret")).isTrue();
+        // the login itself never re-encodes
+        assertThat(encoders.upgradeEncoding("{noop}secret")).isFalse();
+
+        final var upgraded = new ArrayBlockingQueue<String>(1);
+        final var thread = new String[1];
+        encoders.scheduleUpgrade("secret", "{noop}secret", hash -> {
+            thread[0] = Thread.currentThread().getName();
+            upgraded.add(hash);
+        });
+        final var hash = upgraded.poll(10, TimeUnit.SECONDS);
+        assertThat(hash).startsWith("{bcrypt}");
+        assertThat(encoders.matches("secret", hash)).isTrue();
+        assertThat(thread[0]).isEqualTo("password-upgrade");
+
+        // strong hashes are not scheduled
+        encoders.scheduleUpgrade("secret", hash, upgraded::add);
+        assertThat(upgraded.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    private static AaaPasswordEncoders create(boolean cacheEnabled, long ttlSeconds, int maxSize, int threads) {
+        final var encoders = new AaaPasswordEncoders();
+        ReflectionTestUtils.setField(encoders, "cacheEnabled", cacheEnabled);
+        ReflectionTestUtils.setField(encoders, "cacheTtlSeconds", ttlSeconds);
+        ReflectionTestUtils.setField(encoders, "cacheMaxSize", maxSize);
+        ReflectionTestUtils.setField(encoders, "verifyThreads", threads);
+        ReflectionTestUtils.setField(encoders, "verifyQueueSize", 10);
+        encoders.init();
+        return encoders;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> verified() {
+        return (Map<String, Long>) ReflectionTestUtils.getField(encoders, "verified");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login burst against a repository with 10000 users: concurrent threads look up users by id, by email and
+ * like the OAuth2 login by provider followed by createOrUpdateUser. Not part of the test run, start the
+ * main method from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class InMemoryUserRepositoryBenchmark {
+
+    private static final int USERS = 10000;
+
+    private InMemoryUserRepository repository;
+    private final AaaUser[] logins = new AaaUser[USERS];
+
+    @Setup
+    public void setUp() {
+        // without a logback configuration every created user would be logged
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        repository = new InMemoryUserRepository();
+        for (int i = 0; i < USERS; i++) {
+            logins[i] = AaaUser.builder()
+                    .userId("user" + i)
+                    .email("user" + i + "@example.com")
+                    .provider("github")
+                    .providerId(String.valueOf(i))
+                    .roles(List.of("READ"))
+                    .build();
+            repository.createUser(logins[i]);
+        }
+    }
+
+    @Benchmark
+    public Optional<AaaUser> loginByUserId() {
+        return repository.getUserByUserId(next().getUserId());
+    }
+
+    @Benchmark
+    public Optional<AaaUser> loginByEmail() {
+        return repository.getByEmail(next().getEmail());
+    }
+
+    @Benchmark
+    public AaaUser oauth2Login() {
+        final var login = next();
+        repository.getByProvider(login.getProvider(), login.getProviderId())
+                .or(() -> repository.getByEmail(login.getEmail()));
+        return repository.createOrUpdateUser(login);
+    }
+
+    private AaaUser next() {
+        return logins[ThreadLocalRandom.current().nextInt(USERS)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(InMemoryUserRepositoryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
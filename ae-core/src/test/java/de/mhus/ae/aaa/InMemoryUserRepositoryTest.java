@@ -0,0 +1,146 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InMemoryUserRepositoryTest {
+
+    private InMemoryUserRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        repository = new InMemoryUserRepository();
+    }
+
+    @Test
+    public void testCreateIndexesEmailAndProvider() {
+        repository.createUser(user("alice", "alice@example.com", "github", "1"));
+
+        assertThat(repository.getByEmail("alice@example.com")).map(AaaUser::getUserId).contains("alice");
+        assertThat(repository.getByProvider("github", "1")).map(AaaUser::getUserId).contains("alice");
+        assertThat(repository.getByProvider("github", "2")).isEmpty();
+        assertThat(repository.getByEmail(null)).isEmpty();
+        assertThatThrownBy(() -> repository.createUser(user("alice", null, null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testUpdateMovesEmailIndex() {
+        repository.createUser(user("alice", "alice@example.com", "github", "1"));
+        repository.updateUser(AaaUser.builder().userId("alice").email("alice@example.org").build());
+
+        assertThat(repository.getByEmail("alice@example.com")).isEmpty();
+        assertThat(repository.getByEmail("alice@example.org")).map(AaaUser::getUserId).contains("alice");
+        // provider is read only and stays indexed
+        assertThat(repository.getByProvider("github", "1")).map(AaaUser::getUserId).contains("alice");
+        assertThatThrownBy(() -> repository.updateUser(user("bob", null, null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testUpdateWithoutChangesKeepsUser() {
+        final var created = repository.createUser(user("alice", "alice@example.com", null, null));
+        final var updated = repository.updateUser(AaaUser.builder().userId("alice").build());
+
+        assertThat(updated).isEqualTo(created);
+        assertThat(repository.getUserByUserId("alice")).containsSame(created);
+        assertThat(repository.getByEmail("alice@example.com")).containsSame(created);
+    }
+
+    @Test
+    public void testCreateOrUpdateUser() {
+        repository.createOrUpdateUser(user("alice", "alice@example.com", "google", "a"));
+        assertThat(repository.getByEmail("alice@example.com")).map(AaaUser::getUserId).contains("alice");
+
+        repository.createOrUpdateUser(user("alice", "alice@example.org", "google", "a"));
+        assertThat(repository.getByEmail("alice@example.com")).isEmpty();
+        assertThat(repository.getByEmail("alice@example.org")).map(AaaUser::getUserId).contains("alice");
+        assertThat(repository.getByProvider("google", "a")).map(AaaUser::getUserId).contains("alice");
+        assertThat(repository.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDeleteRemovesIndexes() {
+        repository.createUser(user("alice", "alice@example.com", "github", "1"));
+        repository.deleteUser("alice");
+        repository.deleteUser("alice");
+
+        assertThat(repository.userExists("alice")).isFalse();
+        assertThat(repository.getByEmail("alice@example.com")).isEmpty();
+        assertThat(repository.getByProvider("github", "1")).isEmpty();
+        assertThat(repository.size()).isZero();
+    }
+
+    @Test
+    public void testDeleteKeepsEmailTakenOverByOtherUser() {
+        repository.createUser(user("alice", "shared@example.com", null, null));
+        repository.createUser(user("bob", "bob@example.com", null, null));
+        repository.updateUser(AaaUser.builder().userId("bob").email("shared@example.com").build());
+
+        repository.deleteUser("alice");
+        assertThat(repository.getByEmail("shared@example.com")).map(AaaUser::getUserId).contains("bob");
+        assertThat(repository.getByEmail("bob@example.com")).isEmpty();
+    }
+
+    @Test
+    public void testSharedEmailIsNotTakenOverByLaterUser() {
+        repository.createUser(user("alice", "shared@example.com", null, null));
+        repository.createUser(user("bob", "shared@example.com", null, null));
+        repository.createOrUpdateUser(user("carol", "shared@example.com", null, null));
+        assertThat(repository.getByEmail("shared@example.com")).map(AaaUser::getUserId).contains("alice");
+
+        repository.updateUser(AaaUser.builder().userId("alice").email("alice@example.com").build());
+        assertThat(repository.getByEmail("shared@example.com")).map(AaaUser::getUserId).contains("bob");
+
+        repository.deleteUser("bob");
+        assertThat(repository.getByEmail("shared@example.com")).map(AaaUser::getUserId).contains("carol");
+        repository.deleteUser("carol");
+        assertThat(repository.getByEmail("shared@example.com")).isEmpty();
+        assertThat(repository.getByEmail("alice@example.com")).map(AaaUser::getUserId).contains("alice");
+    }
+
+    @Test
+    public void testUpgradeEncodedPasswordKeepsIndexes() {
+        repository.createUser(user("alice", "alice@example.com", "github", "1"));
+
+        assertThat(repository.upgradeEncodedPassword("alice", "other", "{bcrypt}new")).isFalse();
+        assertThat(repository.upgradeEncodedPassword("alice", "{noop}secret", "{bcrypt}new")).isTrue();
+        assertThat(repository.upgradeEncodedPassword("bob", "{noop}secret", "{bcrypt}new")).isFalse();
+
+        assertThat(repository.getByEmail("alice@example.com")).map(AaaUser::getEncodedPassword).contains("{bcrypt}new");
+        assertThat(repository.getByProvider("github", "1")).map(AaaUser::getEncodedPassword).contains("{bcrypt}new");
+    }
+
+    private static AaaUser user(String userId, String email, String provider, String providerId) {
+        return AaaUser.builder()
+                .userId(userId)
+                .encodedPassword("{noop}secret")
+                .email(email)
+                .provider(provider)
+                .providerId(providerId)
+                .roles(List.of("user"))
+                .build();
+    }
+}
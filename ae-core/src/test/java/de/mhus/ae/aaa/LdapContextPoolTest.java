@@ -0,0 +1,131 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import org.junit.jupiter.api.Test;
+
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.ldap.LdapContext;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LdapContextPoolTest {
+
+    private final List<FakeContext> created = new ArrayList<>();
+
+    private LdapContext createContext() {
+        final var fake = new FakeContext();
+        created.add(fake);
+        return fake.context;
+    }
+
+    @Test
+    public void testReleasedContextIsReused() throws NamingException {
+        final var pool = new LdapContextPool(this::createContext, 2, 100);
+
+        final var first = pool.borrow();
+        assertThat(pool.getAvailablePermits()).isEqualTo(1);
+        pool.release(first);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+        assertThat(pool.getAvailablePermits()).isEqualTo(2);
+
+        assertThat(pool.borrow()).isSameAs(first);
+        assertThat(created).hasSize(1);
+        assertThat(created.get(0).closed).isFalse();
+    }
+
+    @Test
+    public void testInvalidateClosesContextAndFreesPermit() throws NamingException {
+        final var pool = new LdapContextPool(this::createContext, 1, 100);
+
+        final var first = pool.borrow();
+        pool.invalidate(first);
+        assertThat(created.get(0).closed).isTrue();
+        assertThat(pool.getIdleCount()).isZero();
+        assertThat(pool.getAvailablePermits()).isEqualTo(1);
+
+        assertThat(pool.borrow()).isNotSameAs(first);
+        assertThat(created).hasSize(2);
+    }
+
+    @Test
+    public void testBorrowTimesOutWhenExhausted() throws NamingException {
+        final var pool = new LdapContextPool(this::createContext, 1, 50);
+        pool.borrow();
+
+        final var start = System.currentTimeMillis();
+        assertThatThrownBy(pool::borrow)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("50ms");
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(40);
+        assertThat(created).hasSize(1);
+    }
+
+    @Test
+    public void testFactoryFailureReleasesPermit() throws NamingException {
+        final var calls = new AtomicInteger();
+        final var pool = new LdapContextPool(() -> {
+            if (calls.incrementAndGet() == 1)
+                throw new ServiceUnavailableException("down");
+            return createContext();
+        }, 1, 50);
+
+        assertThatThrownBy(pool::borrow).isInstanceOf(ServiceUnavailableException.class);
+        assertThat(pool.getAvailablePermits()).isEqualTo(1);
+        assertThat(pool.borrow()).isNotNull();
+    }
+
+    @Test
+    public void testCloseClosesIdleAndReleasedContexts() throws NamingException {
+        final var pool = new LdapContextPool(this::createContext, 2, 50);
+        final var idle = pool.borrow();
+        final var inUse = pool.borrow();
+        pool.release(idle);
+
+        pool.close();
+        assertThat(created.get(0).closed).isTrue();
+        assertThat(created.get(1).closed).isFalse();
+
+        pool.release(inUse);
+        assertThat(created.get(1).closed).isTrue();
+        assertThatThrownBy(pool::borrow).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static class FakeContext {
+        private boolean closed;
+        private final LdapContext context = (LdapContext) Proxy.newProxyInstance(
+                LdapContext.class.getClassLoader(),
+                new Class<?>[] {LdapContext.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "close" -> {
+                        closed = true;
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "FakeContext";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LdapUserRepositoryTest {
+
+    private static final String BASE = "ou=users,dc=example,dc=com";
+
+    private InMemoryDirectoryServer server;
+    private LdapUserRepository repository;
+    private final AtomicInteger searches = new AtomicInteger();
+    private final AtomicInteger pagedSearches = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        final var config = new InMemoryDirectoryServerConfig("dc=example,dc=com");
+        config.setSchema(null);
+        config.addInMemoryOperationInterceptor(new InMemoryOperationInterceptor() {
+            @Override
+            public void processSearchRequest(InMemoryInterceptedSearchRequest request) {
+                searches.incrementAndGet();
+                if (request.getRequest().hasControl(SimplePagedResultsControl.PAGED_RESULTS_OID))
+                    pagedSearches.incrementAndGet();
+            }
+        });
+        server = new InMemoryDirectoryServer(config);
+        server.startListening();
+        server.add("dn: dc=example,dc=com", "objectClass: domain", "dc: example");
+        server.add("dn: " + BASE, "objectClass: organizationalUnit", "ou: users");
+        for (int i = 1; i <= 5; i++)
+            addUser("user" + i);
+
+        repository = new LdapUserRepository();
+        ReflectionTestUtils.setField(repository, "poolSize", 2);
+        ReflectionTestUtils.setField(repository, "poolTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(repository, "cacheTtlSeconds", 300L);
+        ReflectionTestUtils.setField(repository, "negativeCacheTtlSeconds", 30L);
+        ReflectionTestUtils.setField(repository, "cacheSize", 100);
+        ReflectionTestUtils.setField(repository, "pageSize", 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.destroy();
+        server.shutDown(true);
+    }
+
+    @Test
+    public void testLookupIsCached() {
+        init();
+
+        final var user = repository.getUserByUserId("user1").orElseThrow();
+        assertThat(user.getEmail()).isEqualTo("user1@example.com");
+        assertThat(user.getDisplayName()).isEqualTo("User user1");
+        assertThat(user.getRoles()).containsExactly("READ", "WRITE");
+        assertThat(user.getProviderId()).isEqualTo("user1");
+        assertThat(searches.get()).isEqualTo(1);
+
+        assertThat(repository.getUserByUserId("user1")).isPresent();
+        assertThat(repository.getByEmail("user1@example.com")).isPresent();
+        assertThat(searches.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExpiredEntryIsSearchedAgain() throws Exception {
+        ReflectionTestUtils.setField(repository, "cacheTtlSeconds", 0L);
+        init();
+
+        assertThat(repository.getUserByUserId("user1")).map(AaaUser::getEmail).contains("user1@example.com");
+        modifyEmail("user1", "changed@example.com");
+        assertThat(repository.getUserByUserId("user1")).map(AaaUser::getEmail).contains("changed@example.com");
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        init();
+
+        assertThat(repository.getUserByUserId("user1")).map(AaaUser::getEmail).contains("user1@example.com");
+        modifyEmail("user1", "changed@example.com");
+        assertThat(repository.getUserByUserId("user1")).map(AaaUser::getEmail).contains("user1@example.com");
+
+        repository.invalidate("user1");
+        assertThat(repository.getUserByUserId("user1")).map(AaaUser::getEmail).contains("changed@example.com");
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testNegativeCache() throws Exception {
+        init();
+
+        assertThat(repository.getUserByUserId("newbie")).isEmpty();
+        addUser("newbie");
+        assertThat(repository.getUserByUserId("newbie")).isEmpty();
+        assertThat(searches.get()).isEqualTo(1);
+
+        ReflectionTestUtils.setField(repository, "negativeCacheTtlSeconds", 0L);
+        repository.invalidate("newbie");
+        assertThat(repository.getUserByUserId("missing")).isEmpty();
+        assertThat(repository.getUserByUserId("missing")).isEmpty();
+        assertThat(repository.getUserByUserId("newbie")).isPresent();
+        assertThat(searches.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testCacheSizeIsBounded() {
+        ReflectionTestUtils.setField(repository, "cacheSize", 2);
+        init();
+
+        repository.getUserByUserId("user1");
+        repository.getUserByUserId("user2");
+        repository.getUserByUserId("user1");
+        repository.getUserByUserId("user3");
+        assertThat(searches.get()).isEqualTo(3);
+
+        // user2 was the least recently used entry
+        repository.getUserByUserId("user1");
+        assertThat(searches.get()).isEqualTo(3);
+        repository.getUserByUserId("user2");
+        assertThat(searches.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testSearchFilterIsEscaped() {
+        init();
+
+        assertThat(repository.getUserByUserId("*")).isEmpty();
+        assertThat(repository.getUserByUserId("user1)(uid=*")).isEmpty();
+    }
+
+    @Test
+    public void testPagedPrefetch() throws Exception {
+        ReflectionTestUtils.setField(repository, "prefetch", true);
+        ReflectionTestUtils.setField(repository, "prefetchRefreshSeconds", 0L);
+        init();
+
+        final var end = System.currentTimeMillis() + 5000;
+        while (((Map<?, ?>) ReflectionTestUtils.getField(repository, "prefetchedById")).isEmpty() && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+
+        // five users and a page size of two
+        assertThat(pagedSearches.get()).isEqualTo(3);
+        assertThat(searches.get()).isEqualTo(3);
+        for (int i = 1; i <= 5; i++) {
+            assertThat(repository.getUserByUserId("user" + i)).isPresent();
+            assertThat(repository.getByEmail("user" + i + "@example.com")).isPresent();
+        }
+        assertThat(searches.get()).isEqualTo(3);
+
+        // users not prefetched are still searched
+        assertThat(repository.getUserByUserId("missing")).isEmpty();
+        assertThat(searches.get()).isEqualTo(4);
+    }
+
+    private void init() {
+        repository.init(Map.of(
+                "LDAP_ENV_JAVA_NAMING_FACTORY_INITIAL", "com.sun.jndi.ldap.LdapCtxFactory",
+                "LDAP_ENV_JAVA_NAMING_PROVIDER_URL", "ldap://localhost:" + server.getListenPort(),
+                "LDAP_GROUP_CONTEXT", BASE,
+                "LDAP_USER_NAME", "cn",
+                "LDAP_USER_EMAIL", "mail",
+                "LDAP_USER_ROLES", "description"));
+    }
+
+    private void addUser(String uid) throws Exception {
+        server.add(
+                "dn: uid=" + uid + "," + BASE,
+                "objectClass: inetOrgPerson",
+                "uid: " + uid,
+                "cn: User " + uid,
+                "sn: " + uid,
+                "mail: " + uid + "@example.com",
+                "description: READ,WRITE");
+    }
+
+    private void modifyEmail(String uid, String email) throws Exception {
+        server.modify("uid=" + uid + "," + BASE, new Modification(ModificationType.REPLACE, "mail", email));
+    }
+}
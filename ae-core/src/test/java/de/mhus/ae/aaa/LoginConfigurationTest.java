@@ -0,0 +1,104 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import de.mhus.ae.config.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoginConfigurationTest {
+
+    @TempDir
+    private Path dir;
+    private Configuration configuration;
+    private LoginConfiguration loginConfiguration;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        write(dir.resolve("login.yaml"), """
+                oauth2Accept:
+                  - pattern: .*@example\\.com
+                    provider: google
+                """);
+        configuration = new Configuration();
+        ReflectionTestUtils.setField(configuration, "configurationDirectory", dir.toString());
+        ReflectionTestUtils.setField(configuration, "usersDirectory", "");
+        ReflectionTestUtils.setField(configuration, "localDirectory", "");
+        ReflectionTestUtils.setField(configuration, "tmpDirectory", dir.resolve("tmp").toString());
+        ReflectionTestUtils.setField(configuration, "watchConfiguration", false);
+        configuration.init();
+        loginConfiguration = new LoginConfiguration();
+        ReflectionTestUtils.setField(loginConfiguration, "configuration", configuration);
+        loginConfiguration.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        configuration.destroy();
+    }
+
+    @Test
+    public void testAcceptDecisionIsCached() {
+        var accepted = loginConfiguration.findOAuth2Accept(user("google", "alice@example.com"));
+        assertThat(accepted).map(LoginConfiguration.OAuthAccepted::getPattern).contains(".*@example\\.com");
+        assertThat(loginConfiguration.findOAuth2Accept(user("google", "alice@example.com"))).isSameAs(accepted);
+
+        var rejected = loginConfiguration.findOAuth2Accept(user("github", "alice@example.com"));
+        assertThat(rejected).isEmpty();
+        assertThat(loginConfiguration.findOAuth2Accept(user("github", "alice@example.com"))).isSameAs(rejected);
+        assertThat(loginConfiguration.findOAuth2Accept(user("google", "bob@example.org"))).isEmpty();
+    }
+
+    @Test
+    public void testAcceptCacheIsDroppedWithLoginSection() throws IOException {
+        var accepted = loginConfiguration.findOAuth2Accept(user("google", "alice@example.com"));
+        var login = loginConfiguration.login();
+        assertThat(accepted).isPresent();
+        assertThat(loginConfiguration.findOAuth2Accept(user("google", "bob@example.org"))).isEmpty();
+
+        write(dir.resolve("login.yaml"), """
+                oauth2Accept:
+                  - pattern: .*@example\\.org
+                """);
+        configuration.invalidateSection("login");
+
+        assertThat(loginConfiguration.login()).isNotSameAs(login);
+        assertThat(loginConfiguration.findOAuth2Accept(user("google", "alice@example.com"))).isEmpty();
+        assertThat(loginConfiguration.findOAuth2Accept(user("google", "bob@example.org")))
+                .map(LoginConfiguration.OAuthAccepted::getPattern)
+                .contains(".*@example\\.org");
+    }
+
+    private static AaaUser user(String provider, String email) {
+        return AaaUser.builder().userId("user").provider(provider).email(email).build();
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PasswordEncoderTuningTest {
+
+    @Test
+    public void testBCryptStrength() {
+        final var hash = new BCryptPasswordEncoder(4).encode("secret");
+        assertThat(PasswordEncoderTuning.bcryptStrength(hash)).isEqualTo(4);
+        assertThat(PasswordEncoderTuning.bcryptStrength("$2a$12$abcdefghijklmnopqrstuv")).isEqualTo(12);
+        assertThat(PasswordEncoderTuning.bcryptStrength("$2a$xx$abc")).isEqualTo(-1);
+        assertThat(PasswordEncoderTuning.bcryptStrength("plain")).isEqualTo(-1);
+        assertThat(PasswordEncoderTuning.bcryptStrength(null)).isEqualTo(-1);
+    }
+
+    @Test
+    public void testEncoderId() {
+        assertThat(PasswordEncoderTuning.encoderId("{bcrypt}$2a$10$x")).isEqualTo("bcrypt");
+        assertThat(PasswordEncoderTuning.encoderId("{argon2@SpringSecurity_v5_8}abc")).isEqualTo("argon2@SpringSecurity_v5_8");
+        assertThat(PasswordEncoderTuning.encoderId("{noop")).isNull();
+        assertThat(PasswordEncoderTuning.encoderId("secret")).isNull();
+        assertThat(PasswordEncoderTuning.encoderId(null)).isNull();
+    }
+
+    @Test
+    public void testWeakHashesAreUpgraded() {
+        assertThat(PasswordEncoderTuning.needsUpgrade("{noop}secret", "bcrypt", 12)).isTrue();
+        assertThat(PasswordEncoderTuning.needsUpgrade("{sha256}abcdef", "bcrypt", 12)).isTrue();
+        assertThat(PasswordEncoderTuning.needsUpgrade("{MD5}abcdef", "argon2@SpringSecurity_v5_8", -1)).isTrue();
+        // never "upgrade" to another weak encoder
+        assertThat(PasswordEncoderTuning.needsUpgrade("{noop}secret", "sha256", -1)).isFalse();
+    }
+
+    @Test
+    public void testAdaptiveHashesAreNotDowngraded() {
+        assertThat(PasswordEncoderTuning.needsUpgrade("{pbkdf2@SpringSecurity_v5_8}abc", "pbkdf2", -1)).isFalse();
+        assertThat(PasswordEncoderTuning.needsUpgrade("{argon2@SpringSecurity_v5_8}abc", "argon2", -1)).isFalse();
+        assertThat(PasswordEncoderTuning.needsUpgrade("{argon2@SpringSecurity_v5_8}abc", "bcrypt", 12)).isFalse();
+        assertThat(PasswordEncoderTuning.needsUpgrade("{scrypt}abc", "bcrypt", 12)).isFalse();
+        assertThat(PasswordEncoderTuning.needsUpgrade("{bcrypt}$2a$10$abc", "argon2", -1)).isFalse();
+    }
+
+    @Test
+    public void testBCryptUpgradedOnlyToHigherStrength() {
+        assertThat(PasswordEncoderTuning.needsUpgrade("{bcrypt}$2a$10$abc", "bcrypt", 12)).isTrue();
+        assertThat(PasswordEncoderTuning.needsUpgrade("{bcrypt}$2a$12$abc", "bcrypt", 12)).isFalse();
+        assertThat(PasswordEncoderTuning.needsUpgrade("{bcrypt}$2a$14$abc", "bcrypt", 12)).isFalse();
+        // strength not tuned yet
+        assertThat(PasswordEncoderTuning.needsUpgrade("{bcrypt}$2a$10$abc", "bcrypt", -1)).isFalse();
+    }
+
+    @Test
+    public void testUnknownFormatIsNotUpgraded() {
+        assertThat(PasswordEncoderTuning.needsUpgrade("secret", "bcrypt", 12)).isFalse();
+        assertThat(PasswordEncoderTuning.needsUpgrade(null, "bcrypt", 12)).isFalse();
+        assertThat(PasswordEncoderTuning.needsUpgrade("{noop}secret", null, 12)).isFalse();
+    }
+
+    @Test
+    public void testMeasure() {
+        final Map<String, PasswordEncoder> encoders = Map.of(
+                "noop", NoOpPasswordEncoder.getInstance(),
+                "bcrypt", new BCryptPasswordEncoder(4));
+        final var costs = PasswordEncoderTuning.measure(encoders, 2);
+        assertThat(costs).containsOnlyKeys("bcrypt", "noop");
+        assertThat(costs.values()).allSatisfy(millis -> assertThat(millis).isGreaterThanOrEqualTo(0.0));
+    }
+
+    @Test
+    public void testTunedStrengthWithinBounds() {
+        assertThat(PasswordEncoderTuning.tuneBCryptStrength(1))
+                .isBetween(PasswordEncoderTuning.MIN_BCRYPT_STRENGTH, PasswordEncoderTuning.MAX_BCRYPT_STRENGTH);
+        assertThat(PasswordEncoderTuning.tuneBCryptStrength(1)).isEqualTo(PasswordEncoderTuning.MIN_BCRYPT_STRENGTH);
+    }
+}
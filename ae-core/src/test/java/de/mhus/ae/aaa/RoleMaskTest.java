@@ -0,0 +1,77 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.aaa;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoleMaskTest {
+
+    @Test
+    public void testContainsAll() {
+        final var user = RoleMask.of("mask-read", "mask-write");
+
+        assertThat(user.containsAll(RoleMask.of("mask-read"))).isTrue();
+        assertThat(user.containsAll(RoleMask.of("mask-write", "mask-read"))).isTrue();
+        assertThat(user.containsAll(RoleMask.of("mask-read", "mask-admin"))).isFalse();
+        assertThat(RoleMask.of("mask-read").containsAll(user)).isFalse();
+    }
+
+    @Test
+    public void testEmpty() {
+        assertThat(RoleMask.EMPTY.isEmpty()).isTrue();
+        assertThat(RoleMask.of((String) null)).isSameAs(RoleMask.EMPTY);
+        assertThat(RoleMask.of(List.of())).isSameAs(RoleMask.EMPTY);
+        assertThat(RoleMask.of(Arrays.asList(null, null)).isEmpty()).isTrue();
+
+        final var user = RoleMask.of("empty-read");
+        assertThat(user.isEmpty()).isFalse();
+        assertThat(user.containsAll(RoleMask.EMPTY)).isTrue();
+        assertThat(RoleMask.EMPTY.containsAll(user)).isFalse();
+    }
+
+    @Test
+    public void testCaseSensitive() {
+        assertThat(RoleMask.of("case-Admin").containsAll(RoleMask.of("case-admin"))).isFalse();
+    }
+
+    @Test
+    public void testSingleRoleIsCached() {
+        assertThat(RoleMask.of("single-read")).isSameAs(RoleMask.of("single-read"));
+    }
+
+    @Test
+    public void testMoreRolesThanOneWord() {
+        final var roles = new ArrayList<String>();
+        for (int i = 0; i < 150; i++)
+            roles.add("word-" + i);
+        final var all = RoleMask.of(roles);
+
+        for (var role : roles)
+            assertThat(all.containsAll(RoleMask.of(role))).as(role).isTrue();
+        assertThat(all.containsAll(RoleMask.of(roles.subList(60, 140)))).isTrue();
+        assertThat(RoleMask.of(roles.subList(0, 100)).containsAll(RoleMask.of("word-149"))).isFalse();
+        assertThat(RoleMask.of("word-149").containsAll(RoleMask.of("word-0"))).isFalse();
+        assertThat(RoleMask.of("word-0").containsAll(RoleMask.of("word-149"))).isFalse();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConfigFileIndexTest {
+
+    @TempDir
+    Path root;
+    private Path users;
+    private Path global;
+    private final AtomicInteger candidateCalls = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        users = Files.createDirectories(root.resolve("users"));
+        global = Files.createDirectories(root.resolve("global"));
+    }
+
+    private List<File> candidates(Configuration.SectionKey key) {
+        candidateCalls.incrementAndGet();
+        final var list = new ArrayList<File>();
+        if (key.user() != null)
+            list.add(users.resolve(key.user()).resolve(key.section() + ".yaml").toFile());
+        list.add(global.resolve(key.section() + ".yaml").toFile());
+        return list;
+    }
+
+    private static Path write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, "a=b");
+    }
+
+    @Test
+    public void testResolvesFirstExistingCandidate() throws IOException {
+        write(global.resolve("ui.yaml"));
+        write(users.resolve("alice/ui.yaml"));
+        final var index = new ConfigFileIndex(true, this::candidates);
+
+        assertThat(index.resolve(new Configuration.SectionKey("ui", "alice")))
+                .isEqualTo(users.resolve("alice/ui.yaml").toFile());
+        assertThat(index.resolve(new Configuration.SectionKey("ui", "bob")))
+                .isEqualTo(global.resolve("ui.yaml").toFile());
+        assertThat(index.resolve(new Configuration.SectionKey("ui", null)))
+                .isEqualTo(global.resolve("ui.yaml").toFile());
+        assertThat(index.resolve(new Configuration.SectionKey("missing", null))).isNull();
+    }
+
+    @Test
+    public void testCachedResultUntilFileChanged() throws IOException {
+        write(global.resolve("ui.yaml"));
+        final var index = new ConfigFileIndex(true, this::candidates);
+        final var key = new Configuration.SectionKey("ui", "alice");
+
+        assertThat(index.resolve(key)).isEqualTo(global.resolve("ui.yaml").toFile());
+        // created behind the back of the index, e.g. before the watcher reported it
+        write(users.resolve("alice/ui.yaml"));
+        assertThat(index.resolve(key)).isEqualTo(global.resolve("ui.yaml").toFile());
+        assertThat(candidateCalls).hasValue(1);
+
+        index.fileChanged(users.resolve("alice"), "ui.yaml", true);
+        assertThat(index.resolve(key)).isEqualTo(users.resolve("alice/ui.yaml").toFile());
+    }
+
+    @Test
+    public void testDeletedFileFallsBack() throws IOException {
+        write(global.resolve("ui.yaml"));
+        final var userFile = write(users.resolve("alice/ui.yaml"));
+        final var index = new ConfigFileIndex(true, this::candidates);
+        final var key = new Configuration.SectionKey("ui", "alice");
+        assertThat(index.resolve(key)).isEqualTo(userFile.toFile());
+
+        Files.delete(userFile);
+        index.fileChanged(userFile.getParent(), "ui.yaml", false);
+        assertThat(index.resolve(key)).isEqualTo(global.resolve("ui.yaml").toFile());
+    }
+
+    @Test
+    public void testNotFoundIsCachedUntilCreated() throws IOException {
+        final var index = new ConfigFileIndex(true, this::candidates);
+        final var key = new Configuration.SectionKey("ui", null);
+        assertThat(index.resolve(key)).isNull();
+        assertThat(index.resolve(key)).isNull();
+        assertThat(candidateCalls).hasValue(1);
+
+        write(global.resolve("ui.yaml"));
+        index.fileChanged(global, "ui.yaml", true);
+        assertThat(index.resolve(key)).isEqualTo(global.resolve("ui.yaml").toFile());
+    }
+
+    @Test
+    public void testInvalidateAndClear() throws IOException {
+        final var index = new ConfigFileIndex(true, this::candidates);
+        final var key = new Configuration.SectionKey("ui", null);
+        assertThat(index.resolve(key)).isNull();
+
+        write(global.resolve("ui.yaml"));
+        index.invalidate("ui");
+        // the directory listing is still cached
+        assertThat(index.resolve(key)).isNull();
+
+        index.clear();
+        assertThat(index.resolve(key)).isEqualTo(global.resolve("ui.yaml").toFile());
+    }
+
+    @Test
+    public void testUncachedProbesFileSystem() throws IOException {
+        final var index = new ConfigFileIndex(false, this::candidates);
+        final var key = new Configuration.SectionKey("ui", null);
+        assertThat(index.resolve(key)).isNull();
+        write(global.resolve("ui.yaml"));
+        assertThat(index.resolve(key)).isEqualTo(global.resolve("ui.yaml").toFile());
+    }
+}
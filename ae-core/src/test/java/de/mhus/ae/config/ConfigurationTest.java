@@ -0,0 +1,251 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.config;
+
+import de.mhus.commons.tree.ITreeNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConfigurationTest {
+
+    @TempDir
+    private Path dir;
+    private Configuration configuration;
+
+    @AfterEach
+    public void tearDown() {
+        if (configuration != null)
+            configuration.destroy();
+    }
+
+    @Test
+    public void testSectionIsCached() throws IOException {
+        write(dir.resolve("ui.yaml"), "name: global");
+        init(false, 0);
+
+        var section = configuration.getSection("ui");
+        assertThat(section.getString("name", null)).isEqualTo("global");
+        assertThat(configuration.getSection("UI")).isSameAs(section);
+    }
+
+    @Test
+    public void testUserSection() throws IOException {
+        write(dir.resolve("ui.yaml"), "name: global");
+        write(dir.resolve("users/alice/ui.yaml"), "name: alice");
+        init(false, 0);
+
+        assertThat(configuration.getSection("ui", "Alice").getString("name", null)).isEqualTo("alice");
+        assertThat(configuration.getSection("ui", "bob").getString("name", null)).isEqualTo("global");
+        assertThat(configuration.getSection("ui").getString("name", null)).isEqualTo("global");
+    }
+
+    @Test
+    public void testInvalidateSection() throws IOException {
+        final var file = dir.resolve("ui.yaml");
+        write(file, "name: first");
+        write(dir.resolve("users/alice/ui.yaml"), "name: alice");
+        init(false, 0);
+        var global = configuration.getSection("ui");
+        var alice = configuration.getSection("ui", "alice");
+
+        write(file, "name: second");
+        configuration.invalidateSection("ui", "alice");
+        assertThat(configuration.getSection("ui")).isSameAs(global);
+        assertThat(configuration.getSection("ui", "alice")).isNotSameAs(alice);
+
+        configuration.invalidateSection("UI");
+        assertThat(configuration.getSection("ui").getString("name", null)).isEqualTo("second");
+    }
+
+    @Test
+    public void testConcurrentLoadsAreCoalesced() throws Exception {
+        write(dir.resolve("ui.yaml"), "name: global");
+        init(false, 0);
+
+        final var threads = 16;
+        final var start = new CountDownLatch(1);
+        final var executor = Executors.newFixedThreadPool(threads);
+        try {
+            final var results = new ArrayList<Future<ITreeNode>>();
+            for (int i = 0; i < threads; i++)
+                results.add(executor.submit((Callable<ITreeNode>) () -> {
+                    start.await();
+                    return configuration.getSection("ui", "alice");
+                }));
+            start.countDown();
+            final var first = results.getFirst().get();
+            for (var result : results)
+                assertThat(result.get()).isSameAs(first);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCollectedSectionIsReloaded() throws IOException {
+        write(dir.resolve("ui.yaml"), "name: global");
+        init(false, 0);
+        var section = configuration.getSection("ui", "alice");
+
+        // simulate the garbage collector clearing the soft reference
+        final var sections = sections();
+        final var reference = sections.values().iterator().next();
+        reference.clear();
+        reference.enqueue();
+
+        var reloaded = configuration.getSection("ui", "alice");
+        assertThat(reloaded).isNotSameAs(section);
+        assertThat(reloaded.getString("name", null)).isEqualTo("global");
+        assertThat(sections).hasSize(1);
+        assertThat(sections.values().iterator().next()).isNotSameAs(reference);
+    }
+
+    @Test
+    public void testChangedFileIsReloadedAfterDelay() throws Exception {
+        final var file = dir.resolve("ui.yaml");
+        write(file, "name: first");
+        init(true, 1000);
+        var section = configuration.getSection("ui");
+
+        write(file, "name: second");
+        write(file, "name: third");
+        // the change is applied after the delay, not on the first event
+        Thread.sleep(300);
+        assertThat(configuration.getSection("ui")).isSameAs(section);
+
+        waitFor(() -> configuration.getSection("ui") != section);
+        assertThat(configuration.getSection("ui").getString("name", null)).isEqualTo("third");
+    }
+
+    @Test
+    public void testBrokenFileKeepsPreviousSection() throws Exception {
+        final var file = dir.resolve("ui.yaml");
+        write(file, "name: first");
+        init(true, 50);
+        var section = configuration.getSection("ui");
+
+        write(file, "name: [broken");
+        Thread.sleep(1000);
+        assertThat(configuration.getSection("ui")).isSameAs(section);
+
+        write(file, "name: fixed");
+        waitFor(() -> configuration.getSection("ui") != section);
+        assertThat(configuration.getSection("ui").getString("name", null)).isEqualTo("fixed");
+    }
+
+    @Test
+    public void testViewIsCompiledOncePerSection() throws IOException {
+        write(dir.resolve("ui.yaml"), "name: global");
+        init(false, 0);
+        final var compiled = new AtomicInteger();
+
+        var view = configuration.getView("ui", null, Name.class, c -> {
+            compiled.incrementAndGet();
+            return new Name(c.getString("name", null));
+        });
+        var again = configuration.getView("UI", null, Name.class, c -> {
+            compiled.incrementAndGet();
+            return new Name(c.getString("name", null));
+        });
+
+        assertThat(view.name()).isEqualTo("global");
+        assertThat(again).isSameAs(view);
+        assertThat(compiled).hasValue(1);
+        // another type is a separate view of the same section
+        assertThat(configuration.getView("ui", null, String.class, c -> "other")).isEqualTo("other");
+        assertThat(configuration.getView("ui", null, Name.class, c -> null)).isSameAs(view);
+    }
+
+    @Test
+    public void testViewIsRecompiledAfterReload() throws IOException {
+        final var file = dir.resolve("ui.yaml");
+        write(file, "name: first");
+        init(false, 0);
+        var view = configuration.getView("ui", null, Name.class, c -> new Name(c.getString("name", null)));
+        var version = configuration.getSectionVersion("ui", null);
+
+        write(file, "name: second");
+        configuration.invalidateSection("ui");
+        var reloaded = configuration.getView("ui", null, Name.class, c -> new Name(c.getString("name", null)));
+
+        assertThat(reloaded).isNotSameAs(view);
+        assertThat(reloaded.name()).isEqualTo("second");
+        assertThat(configuration.getSectionVersion("ui", null)).isGreaterThan(version);
+    }
+
+    @Test
+    public void testViewPerUser() throws IOException {
+        write(dir.resolve("ui.yaml"), "name: global");
+        write(dir.resolve("users/alice/ui.yaml"), "name: alice");
+        init(false, 0);
+
+        var alice = configuration.getView("ui", "alice", Name.class, c -> new Name(c.getString("name", null)));
+        var bob = configuration.getView("ui", "bob", Name.class, c -> new Name(c.getString("name", null)));
+
+        assertThat(alice.name()).isEqualTo("alice");
+        assertThat(bob.name()).isEqualTo("global");
+        assertThat(configuration.getSectionVersion("ui", "alice")).isNotEqualTo(configuration.getSectionVersion("ui", "bob"));
+    }
+
+    private void init(boolean watch, long watchDelayMillis) {
+        configuration = new Configuration();
+        ReflectionTestUtils.setField(configuration, "configurationDirectory", dir.toString());
+        ReflectionTestUtils.setField(configuration, "usersDirectory", "");
+        ReflectionTestUtils.setField(configuration, "localDirectory", "");
+        ReflectionTestUtils.setField(configuration, "tmpDirectory", dir.resolve("tmp").toString());
+        ReflectionTestUtils.setField(configuration, "watchConfiguration", watch);
+        ReflectionTestUtils.setField(configuration, "watchDelayMillis", watchDelayMillis);
+        configuration.init();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Object, Reference<?>> sections() {
+        return (Map<Object, Reference<?>>) ReflectionTestUtils.getField(configuration, "sections");
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private record Name(String name) {
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        final var end = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < end)
+            Thread.sleep(20);
+    }
+}
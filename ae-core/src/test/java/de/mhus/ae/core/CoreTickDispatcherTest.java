@@ -0,0 +1,221 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CoreTickDispatcherTest {
+
+    private CoreTickDispatcher dispatcher;
+    private Runnable tickTask;
+    private final Semaphore refreshed = new Semaphore(0);
+
+    @BeforeEach
+    public void setUp() {
+        // the tick task is captured and run by the test, the scheduler never runs it
+        var scheduler = new ScheduledThreadPoolExecutor(1) {
+            @Override
+            public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+                tickTask = command;
+                return null;
+            }
+        };
+        dispatcher = new CoreTickDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "scheduler", scheduler);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 2);
+        dispatcher.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dispatcher.destroy();
+    }
+
+    @Test
+    public void testRegisteredCoreIsRefreshedEveryTick() throws InterruptedException {
+        var core = new TestCore(true);
+        dispatcher.register(core);
+        dispatcher.register(core);
+        assertThat(dispatcher.getRegisteredCores()).isEqualTo(1);
+
+        tick(1);
+        tick(1);
+        tick(1);
+        assertThat(core.ticks).containsExactly(1L, 2L, 3L);
+        assertThat(dispatcher.getDispatchedCores()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUnregisteredCoreIsDropped() throws InterruptedException {
+        var core = new TestCore(true);
+        dispatcher.register(core);
+        tick(1);
+        dispatcher.unregister(core);
+        tick(0);
+        tick(0);
+
+        assertThat(core.ticks).containsExactly(1L);
+        assertThat(dispatcher.getRegisteredCores()).isZero();
+    }
+
+    @Test
+    public void testRegisterAgainDoesNotDuplicate() throws InterruptedException {
+        var core = new TestCore(true);
+        dispatcher.register(core);
+        tick(1);
+        dispatcher.unregister(core);
+        dispatcher.register(core);
+        tick(1);
+        tick(1);
+
+        assertThat(core.ticks).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    public void testTickInterval() throws InterruptedException {
+        var core = new TestCore(true);
+        core.interval = 3;
+        dispatcher.register(core);
+        for (int i = 0; i < 7; i++)
+            tick(i % 3 == 0 ? 1 : 0);
+
+        assertThat(core.ticks).containsExactly(1L, 4L, 7L);
+    }
+
+    @Test
+    public void testWakeUp() throws InterruptedException {
+        var core = new TestCore(true);
+        core.interval = 10;
+        dispatcher.register(core);
+        tick(1);
+        dispatcher.wakeUp(core);
+        dispatcher.wakeUp(core);
+        tick(1);
+        tick(0);
+        // wake up again after the page was hidden
+        dispatcher.wakeUp(core);
+        tick(1);
+
+        assertThat(core.ticks).containsExactly(1L, 2L, 4L);
+    }
+
+    @Test
+    public void testSkippedCores() throws InterruptedException {
+        var idle = new TestCore(false);
+        var busy = new TestCore(true);
+        dispatcher.register(idle);
+        dispatcher.register(busy);
+        tick(1);
+
+        assertThat(dispatcher.getSkippedCores()).isEqualTo(1);
+        assertThat(dispatcher.getDispatchedCores()).isEqualTo(1);
+        assertThat(idle.ticks).isEmpty();
+    }
+
+    @Test
+    public void testBatches() throws InterruptedException {
+        var cores = new ArrayList<TestCore>();
+        for (int i = 0; i < 5; i++) {
+            var core = new TestCore(true);
+            cores.add(core);
+            dispatcher.register(core);
+        }
+        tick(5);
+
+        assertThat(cores).allSatisfy(core -> assertThat(core.ticks).containsExactly(1L));
+    }
+
+    @Test
+    public void testRegisterWhileTicking() throws InterruptedException {
+        final var count = 200;
+        final var cores = new ArrayList<TestCore>();
+        for (int i = 0; i < count; i++)
+            cores.add(new TestCore(true));
+        final var started = new CountDownLatch(1);
+        final var registrar = new Thread(() -> {
+            started.countDown();
+            cores.forEach(dispatcher::register);
+        });
+        registrar.start();
+        started.await();
+        // tick concurrently with the registration, late registrations must not get lost in a drained slot
+        while (registrar.isAlive())
+            tickTask.run();
+        registrar.join();
+        tickTask.run();
+        tickTask.run();
+
+        final var lastTick = dispatcher.getTick();
+        for (var core : cores)
+            waitFor(() -> core.ticks.contains(lastTick));
+        assertThat(cores).allSatisfy(core -> assertThat(core.ticks).contains(lastTick));
+    }
+
+    private void tick(int expectedRefreshes) throws InterruptedException {
+        tickTask.run();
+        assertThat(refreshed.tryAcquire(expectedRefreshes, 5, TimeUnit.SECONDS)).isTrue();
+        assertThat(refreshed.availablePermits()).isZero();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        final var end = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < end)
+            Thread.sleep(5);
+    }
+
+    private class TestCore extends Core {
+        private final boolean refreshRequired;
+        private final List<Long> ticks = new CopyOnWriteArrayList<>();
+        private long interval = 1;
+
+        TestCore(boolean refreshRequired) {
+            this.refreshRequired = refreshRequired;
+        }
+
+        @Override
+        boolean isRefreshRequired(long counter) {
+            return refreshRequired;
+        }
+
+        @Override
+        long getTickInterval() {
+            return interval;
+        }
+
+        @Override
+        void fireRefresh(long counter) {
+            ticks.add(counter);
+            refreshed.release();
+        }
+    }
+}
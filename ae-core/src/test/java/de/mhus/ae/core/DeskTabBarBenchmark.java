@@ -0,0 +1,118 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.core;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.html.Div;
+import de.mhus.ae.ui.UiUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tab bar operations with 200 open tabs: lookup by id, switching the selection and opening and
+ * closing a tab. Not part of the test run, start the main method from the test class path.
+ * Opening a tab needs a longer warmup, Vaadin element handling is compiled late.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeskTabBarBenchmark {
+
+    private static final int TABS = 200;
+
+    private DeskTabBar tabBar;
+    private final List<DeskTab> tabs = new ArrayList<>();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        // without a logback configuration every tab operation would print debug messages
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+        // core without ui, the tab bar only needs the content and title callbacks
+        var core = new Core() {
+            @Override
+            public void setContent(Component content) {
+            }
+
+            @Override
+            public void setWindowTitle(String title, UiUtil.COLOR color) {
+            }
+
+            @Override
+            protected void updateHelpMenu(boolean setDefaultDocu) {
+            }
+
+            @Override
+            public <T> T getBean(Class<T> type) {
+                return null;
+            }
+
+            @Override
+            public void autowireObject(Object object) {
+            }
+        };
+        tabBar = new DeskTabBar(core, false);
+        for (int i = 0; i < TABS; i++)
+            tabs.add(tabBar.addTab(new DeskTab("tab" + i, "Tab " + i, true, null, new Div())));
+    }
+
+    @Benchmark
+    public Optional<DeskTab> getTab() {
+        next = (next + 1) % TABS;
+        return tabBar.getTab("tab" + next);
+    }
+
+    @Benchmark
+    public DeskTab select() {
+        next = (next + 1) % TABS;
+        return tabs.get(next).select();
+    }
+
+    @Benchmark
+    public DeskTab addAndCloseTab() {
+        var tab = tabBar.addTab(new DeskTab("extra", "Extra", true, null, new Div()));
+        tab.closeTab();
+        return tab;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DeskTabBarBenchmark.class.getSimpleName()).build()).run();
+    }
+}
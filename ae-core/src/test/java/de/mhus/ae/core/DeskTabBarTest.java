@@ -0,0 +1,183 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.core;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.html.Div;
+import de.mhus.ae.ui.UiUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeskTabBarTest {
+
+    private DeskTabBar tabBar;
+
+    @BeforeEach
+    public void setUp() {
+        // core without ui, the tab bar only needs the content and title callbacks
+        var core = new Core() {
+            @Override
+            public void setContent(Component content) {
+            }
+
+            @Override
+            public void setWindowTitle(String title, UiUtil.COLOR color) {
+            }
+
+            @Override
+            protected void updateHelpMenu(boolean setDefaultDocu) {
+            }
+
+            @Override
+            public <T> T getBean(Class<T> type) {
+                return null;
+            }
+
+            @Override
+            public void autowireObject(Object object) {
+            }
+        };
+        tabBar = new DeskTabBar(core, false);
+    }
+
+    @Test
+    public void testGetTabWithDuplicateIds() {
+        var first = tabBar.addTab(tab("logs"));
+        var second = tabBar.addTab(tab("logs"));
+
+        assertThat(tabBar.getTab("logs")).containsSame(first);
+        first.closeTab();
+        assertThat(tabBar.getTab("logs")).containsSame(second);
+        second.closeTab();
+        assertThat(tabBar.getTab("logs")).isEmpty();
+        assertThat(tabBar.getTabs()).isEmpty();
+    }
+
+    @Test
+    public void testUniqueTab() {
+        var first = tabBar.addTab("pods", "Pods", true, true, null, Div::new);
+        var second = tabBar.addTab("pods", "Pods", true, true, null, Div::new);
+        var third = tabBar.addTab("pods", "Pods", true, false, null, Div::new);
+
+        assertThat(second).isSameAs(first);
+        assertThat(third).isNotSameAs(first);
+        assertThat(tabBar.getTabs()).containsExactly(first, third);
+    }
+
+    @Test
+    public void testPanelIdsAreUniqueAndReleased() {
+        var first = tabBar.addTab(tab("logs"));
+        var second = tabBar.addTab(tab("logs"));
+
+        assertThat(first.getPanel().getId()).contains("logs");
+        assertThat(second.getPanel().getId()).contains("logs_");
+
+        first.closeTab();
+        var third = tabBar.addTab(tab("logs"));
+        assertThat(third.getPanel().getId()).contains("logs");
+    }
+
+    @Test
+    public void testLazyPanelCreatedOnSelection() {
+        var lazy = tabBar.addTab("lazy", "Lazy", true, false, null, Div::new);
+        assertThat(lazy.isPanelCreated()).isFalse();
+
+        lazy.select();
+        assertThat(lazy.isPanelCreated()).isTrue();
+        assertThat(lazy.getPanel().getId()).contains("lazy");
+        assertThat(tabBar.getSelectedTab()).isSameAs(lazy);
+    }
+
+    @Test
+    public void testSelectionFallbackOnClose() {
+        var home = tabBar.addTab(tab("home"));
+        var parent = tabBar.addTab(tab("parent"));
+        var child = tabBar.addTab(tab("child")).setParentTab(parent);
+
+        child.select();
+        child.closeTab();
+        assertThat(tabBar.getSelectedTab()).isSameAs(parent);
+
+        parent.closeTab();
+        assertThat(tabBar.getSelectedTab()).isSameAs(home);
+
+        home.closeTab();
+        assertThat(tabBar.getSelectedTab()).isNull();
+    }
+
+    @Test
+    public void testFailedLazyPanelFallsBackToParent() {
+        var parent = tabBar.addTab(tab("parent"));
+        tabBar.addTab(tab("other"));
+        var failing = tabBar.addTab("failing", "Failing", true, false, null, () -> null).setParentTab(parent);
+
+        failing.select();
+        assertThat(tabBar.getSelectedTab()).isSameAs(parent);
+        assertThat(tabBar.getTab("failing")).isEmpty();
+        assertThat(tabBar.getTabs()).doesNotContain(failing);
+    }
+
+    @Test
+    public void testPanelDisposedUnderMemoryPressureAndRecreated() {
+        var home = tabBar.addTab(tab("home"));
+        var created = new AtomicInteger();
+        var lazy = tabBar.addTab("lazy", "Lazy", true, false, null, () -> {
+            created.incrementAndGet();
+            return new Div();
+        }).setReproducable(true);
+        lazy.select();
+        var first = lazy.getPanel();
+        home.select();
+
+        tabBar.releaseIdleTabs(0, 85, 50);
+        tabBar.releaseIdleTabs(0, 0, 99);
+        assertThat(lazy.getPanel()).isSameAs(first);
+
+        tabBar.releaseIdleTabs(0, 85, 90);
+        assertThat(lazy.isPanelCreated()).isFalse();
+        assertThat(home.isPanelCreated()).isTrue();
+
+        lazy.select();
+        assertThat(lazy.getPanel()).isNotNull().isNotSameAs(first);
+        assertThat(lazy.getPanel().getId()).contains("lazy");
+        assertThat(tabBar.getSelectedTab()).isSameAs(lazy);
+        assertThat(created).hasValue(2);
+    }
+
+    @Test
+    public void testHeapUsageAfterGc() {
+        assertThat(DeskTabBar.heapUsageAfterGcPercent()).isBetween(0, 100);
+    }
+
+    @Test
+    public void testGetTabsIsSnapshot() {
+        var first = tabBar.addTab(tab("a"));
+        var tabs = tabBar.getTabs();
+        tabs.clear();
+
+        assertThat(tabBar.getTabs()).containsExactly(first);
+    }
+
+    private static DeskTab tab(String id) {
+        return new DeskTab(id, id, true, null, new Div());
+    }
+}
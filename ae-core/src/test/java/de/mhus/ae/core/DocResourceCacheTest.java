@@ -0,0 +1,142 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DocResourceCacheTest {
+
+    private DocResourceCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new DocResourceCache();
+        ReflectionTestUtils.setField(cache, "maxSize", 1024 * 1024L);
+        ReflectionTestUtils.setField(cache, "maxEntrySize", 64 * 1024L);
+    }
+
+    @Test
+    public void testCachedEntry() throws IOException {
+        var first = cache.get("/test/a.txt").orElseThrow();
+        var second = cache.get("/test/a.txt").orElseThrow();
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.contentType()).isEqualTo("text/plain;charset=UTF-8");
+        assertThat(first.etag()).startsWith("\"").endsWith("\"");
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getSize()).isEqualTo(first.size());
+    }
+
+    @Test
+    public void testNotFound() throws IOException {
+        assertThat(cache.get("/test/missing.txt")).isEmpty();
+        assertThat(cache.getEntryCount()).isZero();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws IOException {
+        final var a = cache.get("/test/a.txt").orElseThrow();
+        final var b = cache.get("/test/b.txt").orElseThrow();
+        cache.clear();
+        // room for two of the three entries
+        ReflectionTestUtils.setField(cache, "maxSize", a.size() + b.size());
+
+        cache.get("/test/a.txt");
+        cache.get("/test/b.txt");
+        cache.get("/test/a.txt");
+        cache.get("/test/c.txt");
+
+        assertThat(cache.getEntryCount()).isEqualTo(2);
+        assertThat(cache.getSize()).isLessThanOrEqualTo(a.size() + b.size());
+        final var misses = cache.getMisses();
+        cache.get("/test/a.txt");
+        cache.get("/test/c.txt");
+        assertThat(cache.getMisses()).isEqualTo(misses);
+        cache.get("/test/b.txt");
+        assertThat(cache.getMisses()).isEqualTo(misses + 1);
+    }
+
+    @Test
+    public void testEntryLargerThanCacheIsKeptAlone() throws IOException {
+        ReflectionTestUtils.setField(cache, "maxSize", 10L);
+        var page = cache.get("/test/page.html").orElseThrow();
+
+        assertThat(cache.getEntryCount()).isEqualTo(1);
+        cache.get("/test/a.txt");
+        assertThat(cache.getEntryCount()).isEqualTo(1);
+        assertThat(cache.get("/test/page.html").orElseThrow()).isNotSameAs(page);
+    }
+
+    @Test
+    public void testMaxEntrySize() throws IOException {
+        ReflectionTestUtils.setField(cache, "maxEntrySize", 1024L);
+
+        var page = cache.get("/test/page.html").orElseThrow();
+        assertThat(page.content()).hasSizeGreaterThan(1024);
+        assertThat(cache.getEntryCount()).isZero();
+        assertThat(cache.get("/test/page.html").orElseThrow()).isNotSameAs(page);
+        assertThat(cache.getMisses()).isEqualTo(2);
+
+        cache.get("/test/a.txt");
+        assertThat(cache.getEntryCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGzipThreshold() throws IOException {
+        var small = cache.get("/test/a.txt").orElseThrow();
+        var page = cache.get("/test/page.html").orElseThrow();
+        var binary = cache.get("/test/data.bin").orElseThrow();
+
+        // below the threshold and not text
+        assertThat(small.gzipContent()).isNull();
+        assertThat(binary.content()).hasSizeGreaterThan(1024);
+        assertThat(binary.contentType()).isEqualTo("application/octet-stream");
+        assertThat(binary.gzipContent()).isNull();
+
+        assertThat(page.contentType()).isEqualTo("text/html;charset=UTF-8");
+        assertThat(page.gzipContent()).isNotNull();
+        assertThat(page.gzipContent().length).isLessThan(page.content().length);
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(page.gzipContent()))) {
+            assertThat(in.readAllBytes()).isEqualTo(page.content());
+        }
+        assertThat(page.size()).isEqualTo(page.content().length + page.gzipContent().length);
+    }
+
+    @Test
+    public void testContentType() {
+        assertThat(DocResourceCache.contentType("/a.js")).endsWith(";charset=UTF-8");
+        assertThat(DocResourceCache.contentType("/a.svg")).isEqualTo("image/svg+xml;charset=UTF-8");
+        assertThat(DocResourceCache.contentType("/a.png")).isEqualTo("image/png");
+        assertThat(DocResourceCache.contentType("/a")).isEqualTo("application/octet-stream");
+    }
+
+    @Test
+    public void testEtag() {
+        assertThat(DocResourceCache.etag("abc".getBytes())).isEqualTo(DocResourceCache.etag("abc".getBytes()));
+        assertThat(DocResourceCache.etag("abc".getBytes())).isNotEqualTo(DocResourceCache.etag("abd".getBytes()));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.core;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DocResourcesServletTest {
+
+    @Test
+    public void testParseRange() {
+        assertThat(DocResourcesServlet.parseRange("bytes=0-9", 100)).containsExactly(0, 9);
+        assertThat(DocResourcesServlet.parseRange("bytes=90-", 100)).containsExactly(90, 99);
+        assertThat(DocResourcesServlet.parseRange("bytes=-10", 100)).containsExactly(90, 99);
+        assertThat(DocResourcesServlet.parseRange("bytes=-200", 100)).containsExactly(0, 99);
+        assertThat(DocResourcesServlet.parseRange("bytes=50-500", 100)).containsExactly(50, 99);
+    }
+
+    @Test
+    public void testParseRangeFullContent() {
+        assertThat(DocResourcesServlet.parseRange(null, 100)).isNull();
+        assertThat(DocResourcesServlet.parseRange("items=0-9", 100)).isNull();
+        assertThat(DocResourcesServlet.parseRange("bytes=0-9,20-29", 100)).isNull();
+        assertThat(DocResourcesServlet.parseRange("bytes=abc", 100)).isNull();
+        assertThat(DocResourcesServlet.parseRange("bytes=a-b", 100)).isNull();
+        assertThat(DocResourcesServlet.parseRange("bytes=-", 100)).isNull();
+    }
+
+    @Test
+    public void testParseRangeNotSatisfiable() {
+        assertThat(DocResourcesServlet.parseRange("bytes=100-", 100)).isEmpty();
+        assertThat(DocResourcesServlet.parseRange("bytes=20-10", 100)).isEmpty();
+        assertThat(DocResourcesServlet.parseRange("bytes=-0", 100)).isEmpty();
+        assertThat(DocResourcesServlet.parseRange("bytes=0-", 0)).isEmpty();
+    }
+
+    @Test
+    public void testMatchesETagWeakComparison() {
+        assertThat(DocResourcesServlet.matchesETag("\"abc\"", "\"abc\"")).isTrue();
+        assertThat(DocResourcesServlet.matchesETag("W/\"abc\"", "\"abc\"")).isTrue();
+        assertThat(DocResourcesServlet.matchesETag("\"abc\"", "W/\"abc\"")).isTrue();
+        assertThat(DocResourcesServlet.matchesETag("\"x\", \"abc\"", "\"abc\"")).isTrue();
+        assertThat(DocResourcesServlet.matchesETag("*", "\"abc\"")).isTrue();
+        assertThat(DocResourcesServlet.matchesETag("\"x\"", "\"abc\"")).isFalse();
+        assertThat(DocResourcesServlet.matchesETag(null, "\"abc\"")).isFalse();
+    }
+
+    @Test
+    public void testMatchesIfRangeStrongComparison() {
+        assertThat(DocResourcesServlet.matchesIfRange("\"abc\"", "\"abc\"")).isTrue();
+        assertThat(DocResourcesServlet.matchesIfRange(" \"abc\" ", "\"abc\"")).isTrue();
+        assertThat(DocResourcesServlet.matchesIfRange("W/\"abc\"", "\"abc\"")).isFalse();
+        assertThat(DocResourcesServlet.matchesIfRange("\"abc\"", "W/\"abc\"")).isFalse();
+        assertThat(DocResourcesServlet.matchesIfRange("\"x\"", "\"abc\"")).isFalse();
+        assertThat(DocResourcesServlet.matchesIfRange("Wed, 21 Oct 2015 07:28:00 GMT", "\"abc\"")).isFalse();
+        assertThat(DocResourcesServlet.matchesIfRange(null, "\"abc\"")).isFalse();
+    }
+
+    @Test
+    public void testGzipHasOwnETag() {
+        final var cache = new DocResourceCache();
+        ReflectionTestUtils.setField(cache, "maxSize", 1024 * 1024L);
+        ReflectionTestUtils.setField(cache, "maxEntrySize", 64 * 1024L);
+        final var servlet = new DocResourcesServlet();
+        ReflectionTestUtils.setField(servlet, "cache", cache);
+
+        final var identity = get(servlet, null, null);
+        final var gzip = get(servlet, "gzip, deflate", null);
+        assertThat(identity.getStatus()).isEqualTo(200);
+        assertThat(identity.getHeader("Content-Encoding")).isNull();
+        assertThat(gzip.getStatus()).isEqualTo(200);
+        assertThat(gzip.getHeader("Content-Encoding")).isEqualTo("gzip");
+        assertThat(gzip.getHeader("ETag")).isNotEqualTo(identity.getHeader("ETag")).endsWith("-gz\"");
+        assertThat(gzip.getContentLength()).isLessThan(identity.getContentLength());
+
+        // a tag only validates the representation it was sent with
+        assertThat(get(servlet, "gzip", gzip.getHeader("ETag")).getStatus()).isEqualTo(304);
+        assertThat(get(servlet, null, identity.getHeader("ETag")).getStatus()).isEqualTo(304);
+        assertThat(get(servlet, "gzip", identity.getHeader("ETag")).getStatus()).isEqualTo(200);
+        assertThat(get(servlet, null, gzip.getHeader("ETag")).getStatus()).isEqualTo(200);
+    }
+
+    private static MockHttpServletResponse get(DocResourcesServlet servlet, String acceptEncoding, String ifNoneMatch) {
+        final var request = new MockHttpServletRequest("GET", "/docs/test/page.html");
+        request.setServletPath("/docs/test/page.html");
+        if (acceptEncoding != null)
+            request.addHeader("Accept-Encoding", acceptEncoding);
+        if (ifNoneMatch != null)
+            request.addHeader("If-None-Match", ifNoneMatch);
+        final var response = new MockHttpServletResponse();
+        servlet.proxy(request, response);
+        return response;
+    }
+
+    @Test
+    public void testIsValidPath() {
+        assertThat(DocResourcesServlet.isValidPath("/index.html")).isTrue();
+        assertThat(DocResourcesServlet.isValidPath("/sub/page.html")).isTrue();
+        assertThat(DocResourcesServlet.isValidPath("index.html")).isFalse();
+        assertThat(DocResourcesServlet.isValidPath("/../secret")).isFalse();
+        assertThat(DocResourcesServlet.isValidPath("/sub/../../secret")).isFalse();
+        assertThat(DocResourcesServlet.isValidPath("/sub\\..\\secret")).isFalse();
+        assertThat(DocResourcesServlet.isValidPath("/a\0b")).isFalse();
+    }
+}
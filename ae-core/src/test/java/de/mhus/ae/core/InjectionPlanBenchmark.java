@@ -0,0 +1,127 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.core;
+
+import jakarta.annotation.PostConstruct;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the method handle and the reflection injectors of InjectionPlan for one panel autowiring.
+ * Not part of the test run, start the main method from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InjectionPlanBenchmark {
+
+    @Param({"methodhandle", "reflection"})
+    public String injector;
+
+    private GenericApplicationContext context;
+    private InjectionPlan plan;
+
+    @Setup
+    public void setUp() {
+        context = new GenericApplicationContext();
+        context.registerBean(ServiceA.class, ServiceA::new);
+        context.registerBean(ServiceB.class, ServiceB::new);
+        context.registerBean(ServiceC.class, ServiceC::new);
+        context.registerBean("firstPlugin", Plugin.class, Plugin::new);
+        context.registerBean("secondPlugin", Plugin.class, Plugin::new);
+        context.refresh();
+        plan = new InjectionPlan(Panel.class, context, "methodhandle".equals(injector));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Panel inject() {
+        var panel = new Panel();
+        plan.inject(panel);
+        return panel;
+    }
+
+    @Benchmark
+    public InjectionPlan createPlan() {
+        return new InjectionPlan(Panel.class, context, "methodhandle".equals(injector));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(InjectionPlanBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    public static class ServiceA {
+    }
+
+    public static class ServiceB {
+    }
+
+    public static class ServiceC {
+    }
+
+    public static class Plugin {
+    }
+
+    public static class Panel {
+        @Autowired
+        private ServiceA serviceA;
+        @Autowired
+        private ServiceB serviceB;
+        @Autowired
+        private ServiceC serviceC;
+        @Autowired
+        private List<Plugin> plugins;
+        private ServiceA methodService;
+        private boolean initialized;
+
+        @Autowired
+        void setServiceA(ServiceA service) {
+            methodService = service;
+        }
+
+        @PostConstruct
+        private void init() {
+            initialized = true;
+        }
+    }
+}
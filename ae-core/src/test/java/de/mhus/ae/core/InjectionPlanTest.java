@@ -0,0 +1,138 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.core;
+
+import jakarta.annotation.PostConstruct;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InjectionPlanTest {
+
+    private GenericApplicationContext context;
+
+    @BeforeEach
+    public void setUp() {
+        context = new GenericApplicationContext();
+        context.registerBean("service", Service.class, Service::new);
+        context.registerBean("firstPlugin", Plugin.class, () -> new Plugin("first"));
+        context.registerBean("secondPlugin", Plugin.class, () -> new Plugin("second"));
+        context.refresh();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        context.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testInjectFieldsMethodsAndPostConstruct(boolean useMethodHandles) {
+        var plan = new InjectionPlan(Panel.class, context, useMethodHandles);
+        var panel = new Panel();
+        plan.inject(panel);
+
+        assertThat(panel.getService()).isSameAs(context.getBean(Service.class));
+        assertThat(((BasePanel) panel).inheritedService).isSameAs(context.getBean(Service.class));
+        assertThat(panel.plugins).extracting(Plugin::name).containsExactlyInAnyOrder("first", "second");
+        assertThat(panel.firstPlugin.name()).isEqualTo("first");
+        assertThat(panel.missing).isNull();
+        assertThat(panel.methodService).isSameAs(context.getBean(Service.class));
+        assertThat(panel.calls).containsExactly("setService", "init");
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testPlanIsReusable(boolean useMethodHandles) {
+        var plan = new InjectionPlan(Panel.class, context, useMethodHandles);
+        var first = new Panel();
+        var second = new Panel();
+        plan.inject(first);
+        plan.inject(second);
+
+        assertThat(second.getService()).isSameAs(first.getService());
+        assertThat(second.plugins).isNotSameAs(first.plugins);
+        assertThat(second.calls).containsExactly("setService", "init");
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testRequiredBeanNotFound(boolean useMethodHandles) {
+        var plan = new InjectionPlan(RequiredPanel.class, context, useMethodHandles);
+        assertThatThrownBy(() -> plan.inject(new RequiredPanel()))
+                .isInstanceOf(BeanCreationException.class)
+                .hasMessageContaining("missing");
+    }
+
+    public static class Service {
+    }
+
+    public record Plugin(String name) {
+    }
+
+    public static class Missing {
+    }
+
+    public static class BasePanel {
+        @Autowired
+        private Service inheritedService;
+    }
+
+    public static class Panel extends BasePanel {
+        @Autowired
+        private Service service;
+        @Autowired
+        private List<Plugin> plugins;
+        @Autowired
+        private Plugin firstPlugin;
+        @Autowired(required = false)
+        private Missing missing;
+        private Service methodService;
+        private final List<String> calls = new ArrayList<>();
+
+        @Autowired
+        void setService(Service service) {
+            methodService = service;
+            calls.add("setService");
+        }
+
+        @PostConstruct
+        private void init() {
+            calls.add("init");
+        }
+
+        Service getService() {
+            return service;
+        }
+    }
+
+    public static class RequiredPanel {
+        @Autowired
+        private Missing missing;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.help;
+
+import de.mhus.ae.aaa.AaaUser;
+import de.mhus.ae.aaa.SecurityContext;
+import de.mhus.ae.config.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HelpConfigurationTest {
+
+    @TempDir
+    private Path dir;
+    private Configuration configuration;
+    private HelpConfiguration helpConfiguration;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        write(dir.resolve("help.yaml"), """
+                windowWidth: 400px
+                sticky: true
+                contexts:
+                  default:
+                    - name: docs
+                      action: link
+                    - name: hidden
+                      action: link
+                      enabled: false
+                    - name: ai
+                """);
+        write(dir.resolve("users/bob/help.yaml"), """
+                windowWidth: 500px
+                enabled: false
+                """);
+        configuration = new Configuration();
+        ReflectionTestUtils.setField(configuration, "configurationDirectory", dir.toString());
+        ReflectionTestUtils.setField(configuration, "usersDirectory", "");
+        ReflectionTestUtils.setField(configuration, "localDirectory", "");
+        ReflectionTestUtils.setField(configuration, "tmpDirectory", dir.resolve("tmp").toString());
+        ReflectionTestUtils.setField(configuration, "watchConfiguration", false);
+        configuration.init();
+        helpConfiguration = new HelpConfiguration();
+        ReflectionTestUtils.setField(helpConfiguration, "configuration", configuration);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        configuration.destroy();
+    }
+
+    @Test
+    public void testSettings() {
+        try (var ignored = enter("alice")) {
+            assertThat(helpConfiguration.getWindowWidth()).isEqualTo("400px");
+            assertThat(helpConfiguration.isSticky()).isTrue();
+            assertThat(helpConfiguration.isEnabled()).isTrue();
+        }
+        try (var ignored = enter("bob")) {
+            assertThat(helpConfiguration.getWindowWidth()).isEqualTo("500px");
+            assertThat(helpConfiguration.isSticky()).isFalse();
+            assertThat(helpConfiguration.isEnabled()).isFalse();
+        }
+    }
+
+    @Test
+    public void testContext() {
+        try (var ignored = enter("alice")) {
+            var context = helpConfiguration.getContext("default");
+            assertThat(context.getLinks()).extracting(HelpConfiguration.HelpLink::getName).containsExactly("docs", "hidden", "ai");
+            assertThat(context.getLinks()).extracting(HelpConfiguration.HelpLink::isEnabled).containsExactly(true, false, true);
+            assertThat(context.getLinks().get(2).getAction()).isEqualTo("not specified");
+            assertThat(helpConfiguration.getContext("unknown").getLinks()).isEmpty();
+        }
+    }
+
+    @Test
+    public void testContextIsCachedUntilReload() throws IOException {
+        try (var ignored = enter("alice")) {
+            var context = helpConfiguration.getContext("default");
+            assertThat(helpConfiguration.getContext("default")).isSameAs(context);
+            assertThat(context.getLinks()).isSameAs(context.getLinks());
+
+            write(dir.resolve("help.yaml"), """
+                    windowWidth: 300px
+                    contexts:
+                      default:
+                        - name: docs
+                    """);
+            configuration.invalidateSection("help");
+
+            var reloaded = helpConfiguration.getContext("default");
+            assertThat(reloaded).isNotSameAs(context);
+            assertThat(reloaded.getLinks()).extracting(HelpConfiguration.HelpLink::getName).containsExactly("docs");
+            assertThat(helpConfiguration.getWindowWidth()).isEqualTo("300px");
+        }
+    }
+
+    private static SecurityContext.Environment enter(String userId) {
+        return new SecurityContext(AaaUser.builder().userId(userId).build()).enter();
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.help;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HelpSearchIndexTest {
+
+    @TempDir
+    Path docs;
+
+    private HelpSearchIndex createIndex() throws IOException {
+        Files.writeString(docs.resolve("index.html"),
+                "<html><head><title>Overview</title><style>.x{}</style></head>"
+                        + "<body><h1>Overview</h1><p>Welcome to the desk. Tabs &amp; panels are explained here.</p></body></html>");
+        Files.createDirectories(docs.resolve("sub"));
+        Files.writeString(docs.resolve("sub/tabs.html"),
+                "<html><body><h1>Tabs</h1><p>Tabs can be closed. Closed tabs release memory.</p>"
+                        + "<script>var tabs = 1;</script></body></html>");
+        Files.writeString(docs.resolve("readme.txt"), "tabs tabs tabs");
+        final var index = new HelpSearchIndex();
+        index.build(docs);
+        return index;
+    }
+
+    @Test
+    public void testSearchRanksTitleFirst() throws IOException {
+        final var index = createIndex();
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.isFailed()).isFalse();
+
+        final var results = index.search("tabs", 10);
+        assertThat(results).extracting(HelpSearchIndex.Result::url)
+                .containsExactly("/docs/sub/tabs.html", "/docs/index.html");
+        assertThat(results.get(0).title()).isEqualTo("Tabs");
+        assertThat(results.get(1).snippet()).contains("Tabs & panels");
+    }
+
+    @Test
+    public void testLastWordIsPrefix() throws IOException {
+        final var index = createIndex();
+        assertThat(index.search("welc", 10)).extracting(HelpSearchIndex.Result::url)
+                .containsExactly("/docs/index.html");
+        assertThat(index.search("welc desk", 10)).isEmpty();
+        assertThat(index.search("tabs rel", 10)).extracting(HelpSearchIndex.Result::url)
+                .containsExactly("/docs/sub/tabs.html");
+    }
+
+    @Test
+    public void testSnippetOffsetsWithLengthChangingCase() throws IOException {
+        // U+0130 becomes two chars in lower case, the snippet must still start at the hit
+        Files.writeString(docs.resolve("cities.html"),
+                "<html><body><p>" + "\u0130stanbul ".repeat(100) + "and finally the harbour is described</p></body></html>");
+        final var index = new HelpSearchIndex();
+        index.build(docs);
+
+        final var results = index.search("harbour", 10);
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).snippet()).contains("the harbour is described").startsWith("…");
+        assertThat(HelpSearchIndex.tokenize("TITLE \u0130stanbul")).startsWith("title");
+    }
+
+    @Test
+    public void testScriptAndStyleAreNotIndexed() throws IOException {
+        final var index = createIndex();
+        assertThat(index.search("var", 10)).isEmpty();
+    }
+
+    @Test
+    public void testNotReady() {
+        final var index = new HelpSearchIndex();
+        assertThat(index.isReady()).isFalse();
+        assertThat(index.search("tabs", 10)).isEmpty();
+    }
+
+    @Test
+    public void testFailedBuild() {
+        final var index = new HelpSearchIndex();
+        index.build(docs.resolve("missing"));
+        assertThat(index.isReady()).isFalse();
+        assertThat(index.isFailed()).isTrue();
+    }
+}
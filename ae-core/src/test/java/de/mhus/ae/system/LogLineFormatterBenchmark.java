@@ -0,0 +1,117 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import de.mhus.ae.ui.TailRow;
+import de.mhus.commons.tools.MDate;
+import de.mhus.commons.tools.MString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares LogLineFormatter with the former per event formatting of SystemLogPanel for a stream of
+ * DEBUG events, one per millisecond. Run the main method from the test class path, the gc profiler
+ * reports the allocated bytes per event as gc.alloc.rate.norm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogLineFormatterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean throwable;
+
+    private LoggingEvent event;
+
+    @Setup
+    public void setUp() {
+        event = new LoggingEvent();
+        event.setTimeStamp(1_700_000_000_000L);
+        event.setLevel(Level.DEBUG);
+        event.setLoggerName("de.mhus.ae.system.LogLineFormatterBenchmark");
+        event.setMessage("Refresh core 42 with 7 panels");
+        if (throwable)
+            event.setThrowableProxy(new ThrowableProxy(new IllegalStateException("broken")));
+    }
+
+    @Benchmark
+    public TailRow formatter() {
+        event.setTimeStamp(event.getTimeStamp() + 1);
+        return LogLineFormatter.toRow(
+                event.getTimeStamp(),
+                event.getLevel(),
+                event.getFormattedMessage(),
+                event.getLoggerName(),
+                event.getThrowableProxy());
+    }
+
+    @Benchmark
+    public List<TailRow> previous() {
+        event.setTimeStamp(event.getTimeStamp() + 1);
+        final var rows = new ArrayList<TailRow>();
+        StringBuilder sb = new StringBuilder();
+        sb.append(MDate.toIsoDateTime(event.getTimeStamp())).append(" ");
+        sb.append(event.getLevel()).append(" ");
+        MString.fillUntil(sb, 30, ' ');
+        sb.append(event.getFormattedMessage()).append(" (");
+        sb.append(event.getLoggerName()).append(")");
+
+        var row = TailRow.builder().text(sb.toString());
+        row.color(SystemLogPanel.toColor(event.getLevel()));
+        var r = row.build();
+        rows.add(r);
+
+        if (event.getThrowableProxy() != null) {
+            var t = event.getThrowableProxy();
+            rows.add(TailRow.builder().text(t.getMessage()).color(r.getColor()).build());
+            for (var line : t.getStackTraceElementProxyArray())
+                rows.add(TailRow.builder().text("  " + line.toString()).color(r.getColor()).build());
+        }
+        return rows;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LogLineFormatterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import de.mhus.ae.ui.TailRow;
+import de.mhus.ae.ui.UiUtil;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogLineFormatterTest {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    @Test
+    public void testRowText() {
+        final var timestamp = 1_700_000_000_123L;
+        final var row = LogLineFormatter.toRow(timestamp, Level.INFO, "started", "de.mhus.Test", null);
+
+        final var prefix = TIME_FORMAT.format(Instant.ofEpochMilli(timestamp)) + " INFO ";
+        assertThat(row.getText()).isEqualTo(prefix + " ".repeat(30 - prefix.length()) + "started (de.mhus.Test)");
+        assertThat(row.getColor()).isEqualTo(UiUtil.COLOR.GREEN);
+        assertThat(row.getUserObject()).isNull();
+    }
+
+    @Test
+    public void testTimePrefixChangesWithSecond() {
+        final var second = 1_700_000_000_000L;
+        final var first = LogLineFormatter.toRow(second, Level.WARN, "a", "l", null);
+        final var sameSecond = LogLineFormatter.toRow(second + 999, Level.WARN, "a", "l", null);
+        final var nextSecond = LogLineFormatter.toRow(second + 1000, Level.WARN, "a", "l", null);
+        final var previousSecond = LogLineFormatter.toRow(second - 1, Level.WARN, "a", "l", null);
+
+        assertThat(sameSecond.getText()).isEqualTo(first.getText());
+        assertThat(nextSecond.getText()).startsWith(TIME_FORMAT.format(Instant.ofEpochMilli(second + 1000)));
+        assertThat(previousSecond.getText()).startsWith(TIME_FORMAT.format(Instant.ofEpochMilli(second - 1)));
+    }
+
+    @Test
+    public void testLevels() {
+        final var error = LogLineFormatter.toRow(0, Level.ERROR, "m", "l", null);
+        final var trace = LogLineFormatter.toRow(0, Level.TRACE, "m", "l", null);
+
+        assertThat(error.getText()).contains(" ERROR ").endsWith("m (l)");
+        assertThat(error.getText().indexOf("m (l)")).isEqualTo(30);
+        assertThat(error.getColor()).isEqualTo(UiUtil.COLOR.RED);
+        assertThat(trace.getColor()).isEqualTo(UiUtil.COLOR.NONE);
+    }
+
+    @Test
+    public void testDetails() {
+        final var throwable = new ThrowableProxy(new IllegalStateException("broken"));
+        final var withThrowable = LogLineFormatter.toRow(0, Level.ERROR, "m", "l", throwable);
+        final var withText = LogLineFormatter.toRow(0, Level.ERROR, "m", "l", "stored trace");
+        final var withoutDetails = LogLineFormatter.toRow(0, Level.ERROR, "m", "l", null);
+
+        assertThat(LogLineFormatter.details(withThrowable))
+                .contains("java.lang.IllegalStateException: broken")
+                .contains("LogLineFormatterTest");
+        assertThat(LogLineFormatter.details(withText)).isEqualTo("stored trace");
+        assertThat(LogLineFormatter.details(withoutDetails)).isNull();
+        assertThat(LogLineFormatter.details(new TailRow<>("plain"))).isNull();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static ILoggingEvent event(long timestamp, Level level, String logger, String message) {
+        final var event = new LoggingEvent();
+        event.setTimeStamp(timestamp);
+        event.setLevel(level);
+        event.setLoggerName(logger);
+        event.setMessage(message);
+        return event;
+    }
+
+    private static List<ILoggingEvent> events() {
+        final var events = new ArrayList<ILoggingEvent>();
+        events.add(event(1000, Level.INFO, "de.mhus.ae.core.Core", "core started"));
+        events.add(event(2000, Level.WARN, "de.mhus.ae.aaa.Login", "login failed"));
+        events.add(event(3000, Level.DEBUG, "de.mhus.ae.core.Core", "tick"));
+        events.add(event(4000, Level.ERROR, "org.other.Lib", "Core exploded"));
+        return events;
+    }
+
+    @Test
+    public void testQueryFilters() throws IOException {
+        final var store = new LogStore(dir.toFile(), 64 * 1024, 2);
+        store.append(events());
+        assertThat(store.getNextSeq()).isEqualTo(4);
+
+        final var all = store.query(new LogStore.LogQuery(null, null, null), store.getNextSeq(), 10);
+        assertThat(all).extracting(LogStore.LogRecord::seq).containsExactly(3L, 2L, 1L, 0L);
+
+        final var warn = store.query(new LogStore.LogQuery(Level.WARN, null, null), store.getNextSeq(), 10);
+        assertThat(warn).extracting(LogStore.LogRecord::text).containsExactly("Core exploded", "login failed");
+
+        final var core = store.query(new LogStore.LogQuery(null, "de.mhus.ae.core", null), store.getNextSeq(), 10);
+        assertThat(core).extracting(LogStore.LogRecord::text).containsExactly("tick", "core started");
+
+        final var text = store.query(new LogStore.LogQuery(null, null, "CORE"), store.getNextSeq(), 10);
+        assertThat(text).extracting(LogStore.LogRecord::logger).containsExactly("org.other.Lib", "de.mhus.ae.core.Core");
+
+        final var paged = store.query(new LogStore.LogQuery(null, null, null), 2, 1);
+        assertThat(paged).extracting(LogStore.LogRecord::seq).containsExactly(1L);
+    }
+
+    @Test
+    public void testSeqAfter() throws IOException {
+        final var store = new LogStore(dir.toFile(), 64 * 1024, 2);
+        store.append(events());
+        assertThat(store.seqAfter(2000)).isEqualTo(2);
+        assertThat(store.seqAfter(2500)).isEqualTo(2);
+        assertThat(store.seqAfter(99999)).isEqualTo(4);
+    }
+
+    @Test
+    public void testSeqAfterOutOfOrder() throws IOException {
+        final var store = new LogStore(dir.toFile(), 64 * 1024, 2);
+        // events of other threads are dispatched late
+        store.append(List.of(
+                event(1000, Level.INFO, "a", "0"),
+                event(2000, Level.INFO, "a", "1"),
+                event(9000, Level.INFO, "a", "2"),
+                event(1500, Level.INFO, "a", "3"),
+                event(3000, Level.INFO, "a", "4"),
+                event(9500, Level.INFO, "a", "5")));
+
+        assertThat(store.seqAfter(999)).isEqualTo(0);
+        assertThat(store.seqAfter(1000)).isEqualTo(1);
+        assertThat(store.seqAfter(1800)).isEqualTo(4);
+        assertThat(store.seqAfter(2000)).isEqualTo(4);
+        assertThat(store.seqAfter(3000)).isEqualTo(5);
+        assertThat(store.seqAfter(9000)).isEqualTo(5);
+        assertThat(store.seqAfter(9500)).isEqualTo(6);
+    }
+
+    @Test
+    public void testSeqAfterAcrossSegments() throws IOException {
+        final var store = new LogStore(dir.toFile(), 64 * 1024, 10);
+        final var message = "x".repeat(10000);
+        final var events = new ArrayList<ILoggingEvent>();
+        // six records fit in a segment, the first record of the second segment is late
+        for (int i = 0; i < 20; i++)
+            events.add(event(i == 6 ? 4500 : i * 1000L, Level.INFO, "a", message));
+        store.append(events);
+        assertThat(store.getSize()).isGreaterThan(64 * 1024);
+
+        assertThat(store.seqAfter(4600)).isEqualTo(7);
+        assertThat(store.seqAfter(4400)).isEqualTo(5);
+        assertThat(store.seqAfter(12000)).isEqualTo(13);
+        assertThat(store.seqAfter(-1)).isEqualTo(0);
+
+        // the running maximum is rebuilt on recovery
+        final var recovered = new LogStore(dir.toFile(), 64 * 1024, 10);
+        assertThat(recovered.seqAfter(4600)).isEqualTo(7);
+    }
+
+    @Test
+    public void testTruncateAtCharacterBoundary() throws IOException {
+        assertThat(LogStore.bytes("\u00e4\u00e4\u00e4", 3)).isEqualTo("\u00e4".getBytes(StandardCharsets.UTF_8));
+        assertThat(LogStore.bytes("a\u20ac", 3)).isEqualTo("a".getBytes(StandardCharsets.UTF_8));
+        assertThat(LogStore.bytes("\ud83d\ude00", 3)).isEmpty();
+        assertThat(LogStore.bytes("abc", 3)).isEqualTo("abc".getBytes(StandardCharsets.UTF_8));
+
+        final var store = new LogStore(dir.toFile(), 64 * 1024, 2);
+        // the limit of 16384 bytes falls into the middle of a two byte character
+        store.append(List.of(event(1000, Level.INFO, "a", "a" + "\u00e4".repeat(10000))));
+        final var text = store.query(new LogStore.LogQuery(null, null, null), store.getNextSeq(), 1).get(0).text();
+        assertThat(text).hasSize(1 + 8191).doesNotContain("\ufffd");
+    }
+
+    @Test
+    public void testRecoverAfterRestart() throws IOException {
+        new LogStore(dir.toFile(), 64 * 1024, 2).append(events());
+
+        final var store = new LogStore(dir.toFile(), 64 * 1024, 2);
+        assertThat(store.getNextSeq()).isEqualTo(4);
+        final var warn = store.query(new LogStore.LogQuery(Level.WARN, null, null), store.getNextSeq(), 10);
+        assertThat(warn).extracting(LogStore.LogRecord::text).containsExactly("Core exploded", "login failed");
+    }
+
+    @Test
+    public void testForeignFilesAreKept() throws IOException {
+        final var foreign = Files.writeString(dir.resolve("segment-0.log"), "not ours");
+        final var store = new LogStore(dir.toFile(), 64 * 1024, 1);
+        store.append(events());
+        assertThat(foreign).exists().hasContent("not ours");
+    }
+
+    @Test
+    public void testOwnerOnlyPermissions() throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) return;
+        final var storeDir = dir.resolve("logs");
+        new LogStore(storeDir.toFile(), 64 * 1024, 1).append(events());
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(storeDir))).isEqualTo("rwx------");
+        try (var files = Files.list(storeDir)) {
+            assertThat(files.toList()).isNotEmpty().allSatisfy(file ->
+                    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file))).isEqualTo("rw-------"));
+        }
+    }
+}
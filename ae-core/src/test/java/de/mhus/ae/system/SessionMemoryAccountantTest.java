@@ -0,0 +1,212 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.system;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.html.Div;
+import de.mhus.ae.core.Core;
+import de.mhus.ae.core.DeskTab;
+import de.mhus.ae.core.DeskTabBar;
+import de.mhus.ae.ui.UiUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SessionMemoryAccountantTest {
+
+    private static final long KB = 1024;
+
+    private SessionMemoryAccountant accountant;
+
+    @BeforeEach
+    public void setUp() {
+        accountant = new SessionMemoryAccountant();
+    }
+
+    @Test
+    public void testAccountWithoutBudget() throws InterruptedException {
+        var core = new TestCore("s1");
+        accountant.onCoreCreated(core);
+        var home = core.addTab("home", 4, false);
+        core.addTab("pods", 9, true);
+        select(home);
+
+        accountant.account(core, 0);
+
+        assertThat(accountant.getRetainedSize()).isEqualTo(15 * KB);
+        var session = accountant.getSessions().getFirst();
+        assertThat(session.sessionId()).isEqualTo("s1");
+        assertThat(session.tabs()).extracting(SessionMemoryAccountant.TabMemory::tabId).containsExactly("home", "pods");
+        assertThat(session.tabs()).extracting(SessionMemoryAccountant.TabMemory::elements).containsExactly(5L, 10L);
+        assertThat(core.getTabBar().getTabs()).hasSize(2);
+        assertThat(accountant.getClosedTabs()).isZero();
+    }
+
+    @Test
+    public void testBudgetClosesOldestReproducibleTabs() throws InterruptedException {
+        var core = new TestCore("s1");
+        accountant.onCoreCreated(core);
+        var fixed = core.addTab("fixed", 9, false);
+        var oldest = core.addTab("oldest", 9, true);
+        var older = core.addTab("older", 9, true);
+        var newer = core.addTab("newer", 9, true);
+        var selected = core.addTab("selected", 9, true);
+        select(fixed, oldest, older, newer, selected);
+
+        // 50 KB retained, the two oldest reproducible tabs have to go
+        accountant.account(core, 35 * KB);
+
+        assertThat(core.getTabBar().getTabs()).containsExactly(fixed, newer, selected);
+        assertThat(accountant.getClosedTabs()).isEqualTo(2);
+        assertThat(accountant.getRetainedSize()).isEqualTo(30 * KB);
+    }
+
+    @Test
+    public void testBudgetKeepsSelectedAndNotReproducibleTabs() throws InterruptedException {
+        var core = new TestCore("s1");
+        accountant.onCoreCreated(core);
+        var fixed = core.addTab("fixed", 99, false);
+        var selected = core.addTab("selected", 99, true);
+        select(fixed, selected);
+
+        accountant.account(core, 10 * KB);
+
+        assertThat(core.getTabBar().getTabs()).containsExactly(fixed, selected);
+        assertThat(accountant.getClosedTabs()).isZero();
+    }
+
+    @Test
+    public void testBudgetCoversAllSessionsOfTheUser() throws InterruptedException {
+        var first = new TestCore("s1");
+        accountant.onCoreCreated(first);
+        select(first.addTab("big", 29, false));
+        accountant.account(first, 0);
+
+        var second = new TestCore("s2");
+        accountant.onCoreCreated(second);
+        var idle = second.addTab("idle", 9, true);
+        var home = second.addTab("home", 9, true);
+        select(idle, home);
+        accountant.account(second, 45 * KB);
+
+        // 30 KB of the first session plus 20 KB exceed the budget of the user
+        assertThat(second.getTabBar().getTabs()).containsExactly(home);
+        assertThat(first.getTabBar().getTabs()).hasSize(1);
+        assertThat(accountant.getRetainedSizeByUser()).containsValue(40 * KB);
+    }
+
+    @Test
+    public void testOtherUsersAreNotCounted() throws InterruptedException {
+        var other = new TestCore("s1");
+        accountant.onCoreCreated(other);
+        sessions().put(other, new SessionMemoryAccountant.SessionMemory("s1", "bob", 100 * KB, List.of(), 0));
+
+        var core = new TestCore("s2");
+        accountant.onCoreCreated(core);
+        var idle = core.addTab("idle", 9, true);
+        var home = core.addTab("home", 9, true);
+        select(idle, home);
+        accountant.account(core, 25 * KB);
+
+        assertThat(core.getTabBar().getTabs()).containsExactly(idle, home);
+        assertThat(accountant.getRetainedSizeOfUser("bob")).isEqualTo(100 * KB);
+        assertThat(accountant.getRetainedSize()).isEqualTo(120 * KB);
+    }
+
+    @Test
+    public void testDestroyedCoreIsRemoved() {
+        var core = new TestCore("s1");
+        accountant.onCoreCreated(core);
+        core.addTab("home", 9, false);
+        accountant.account(core, 0);
+        assertThat(accountant.getSessions()).hasSize(1);
+
+        accountant.onCoreDestroyed(core);
+        assertThat(accountant.getSessions()).isEmpty();
+        assertThat(accountant.getRetainedSize()).isZero();
+        // a late tick of the destroyed core is ignored
+        accountant.account(core, 0);
+        assertThat(accountant.getSessions()).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Core, SessionMemoryAccountant.SessionMemory> sessions() {
+        return (Map<Core, SessionMemoryAccountant.SessionMemory>) ReflectionTestUtils.getField(accountant, "sessions");
+    }
+
+    private static void select(DeskTab... tabs) throws InterruptedException {
+        // the budget closes tabs ordered by the time they were unselected
+        for (var tab : tabs) {
+            tab.select();
+            Thread.sleep(2);
+        }
+    }
+
+    // core without ui, the tab bar only needs the content and title callbacks
+    private static class TestCore extends Core {
+        private final String sessionId;
+        private final DeskTabBar tabBar = new DeskTabBar(this, false);
+
+        TestCore(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        DeskTab addTab(String id, int children, boolean reproducable) {
+            var panel = new Div();
+            for (int i = 0; i < children; i++)
+                panel.add(new Div());
+            return tabBar.addTab(new DeskTab(id, id, true, null, panel).setReproducable(reproducable));
+        }
+
+        @Override
+        public DeskTabBar getTabBar() {
+            return tabBar;
+        }
+
+        @Override
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        @Override
+        public void setContent(Component content) {
+        }
+
+        @Override
+        public void setWindowTitle(String title, UiUtil.COLOR color) {
+        }
+
+        @Override
+        protected void updateHelpMenu(boolean setDefaultDocu) {
+        }
+
+        @Override
+        public <T> T getBean(Class<T> type) {
+            return null;
+        }
+
+        @Override
+        public void autowireObject(Object object) {
+        }
+    }
+}
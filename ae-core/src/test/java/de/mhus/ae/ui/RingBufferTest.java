@@ -0,0 +1,113 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.ui;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RingBufferTest {
+
+    @Test
+    public void testAddEvictsOldest() {
+        final var buffer = new RingBuffer<String>(3);
+        assertThat(buffer.add("a")).isNull();
+        assertThat(buffer.add("b")).isNull();
+        assertThat(buffer.add("c")).isNull();
+        assertThat(buffer.add("d")).isEqualTo("a");
+        assertThat(buffer.add("e")).isEqualTo("b");
+
+        assertThat(buffer.size()).isEqualTo(3);
+        assertThat(buffer.toList()).containsExactly("c", "d", "e");
+        assertThat(buffer.get(0)).isEqualTo("c");
+        assertThat(buffer.get(2)).isEqualTo("e");
+        assertThatThrownBy(() -> buffer.get(3)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> buffer.get(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    public void testAddAllReportsEvicted() {
+        final var buffer = new RingBuffer<Integer>(2);
+        final var evicted = new ArrayList<Integer>();
+        buffer.addAll(List.of(1, 2, 3, 4, 5), evicted::add);
+        assertThat(evicted).containsExactly(1, 2, 3);
+        assertThat(buffer.toList()).containsExactly(4, 5);
+    }
+
+    @Test
+    public void testRange() {
+        final var buffer = new RingBuffer<Integer>(4);
+        buffer.addAll(List.of(1, 2, 3, 4, 5, 6), null);
+        assertThat(buffer.range(1, 2)).containsExactly(4, 5);
+        assertThat(buffer.range(2, 10)).containsExactly(5, 6);
+        assertThat(buffer.range(-1, 1)).containsExactly(3);
+        assertThat(buffer.range(10, 1)).isEmpty();
+        assertThat(buffer.range(0, -1)).isEmpty();
+    }
+
+    @Test
+    public void testSetCapacityKeepsNewest() {
+        final var buffer = new RingBuffer<Integer>(4);
+        buffer.addAll(List.of(1, 2, 3, 4, 5, 6), null);
+        buffer.setCapacity(2);
+        assertThat(buffer.capacity()).isEqualTo(2);
+        assertThat(buffer.toList()).containsExactly(5, 6);
+
+        buffer.setCapacity(5);
+        buffer.addAll(List.of(7, 8, 9), null);
+        assertThat(buffer.toList()).containsExactly(5, 6, 7, 8, 9);
+    }
+
+    @Test
+    public void testRemoveAcrossWrap() {
+        final var buffer = new RingBuffer<String>(3);
+        final var b = "b";
+        buffer.addAll(List.of("x", "a", b, "c"), null);
+        assertThat(buffer.remove(b)).isTrue();
+        assertThat(buffer.remove("missing")).isFalse();
+        assertThat(buffer.toList()).containsExactly("a", "c");
+
+        buffer.add("d");
+        assertThat(buffer.toList()).containsExactly("a", "c", "d");
+        assertThat(buffer.add("e")).isEqualTo("a");
+    }
+
+    @Test
+    public void testClear() {
+        final var buffer = new RingBuffer<String>(2);
+        buffer.addAll(List.of("a", "b", "c"), null);
+        buffer.clear();
+        assertThat(buffer.size()).isZero();
+        assertThat(buffer.toList()).isEmpty();
+        assertThat(buffer.capacity()).isEqualTo(2);
+        buffer.add("d");
+        assertThat(buffer.toList()).containsExactly("d");
+    }
+
+    @Test
+    public void testMinimumCapacity() {
+        final var buffer = new RingBuffer<String>(0);
+        assertThat(buffer.capacity()).isEqualTo(1);
+        buffer.add("a");
+        assertThat(buffer.add("b")).isEqualTo("a");
+    }
+}
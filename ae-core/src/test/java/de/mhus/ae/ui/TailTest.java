@@ -0,0 +1,82 @@
+/*
+ * kt2l-core - kt2l core implementation
+ * Copyright © 2024 Mike Hummel (mh@mhus.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.mhus.ae.ui;
+
+import com.vaadin.flow.component.UI;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TailTest {
+
+    @Test
+    public void testAddRowsTrimsToMaxRows() {
+        final var tail = new Tail();
+        tail.setMaxRows(3);
+        tail.addRows(rows(0, 5));
+        tail.addRow(new TailRow("5"));
+
+        assertThat(tail.getRows()).extracting(TailRow::getText).containsExactly("3", "4", "5");
+        assertThat(tail.getContent().getChildren().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void testPendingRowsAreCappedWithoutUi() {
+        final var tail = new Tail();
+        tail.setMaxRows(3);
+        tail.appendRows(rows(0, 5));
+        tail.appendRows(rows(5, 10));
+
+        assertThat(pending(tail)).extracting(TailRow::getText).containsExactly("7", "8", "9");
+        assertThat(tail.getRows()).isEmpty();
+    }
+
+    @Test
+    public void testDetachedUiDoesNotBlockFlush() {
+        // a UI without session rejects access with an UIDetachedException
+        final var ui = new UI();
+        final var tail = new Tail();
+        ui.add(tail);
+
+        tail.appendRows(rows(0, 2));
+        assertThat(ReflectionTestUtils.getField(tail, "flushScheduled")).hasToString("false");
+        tail.appendRows(rows(2, 4));
+        assertThat(ReflectionTestUtils.getField(tail, "flushScheduled")).hasToString("false");
+
+        // flushed as soon as the UI gives access again
+        ReflectionTestUtils.invokeMethod(tail, "flushPending");
+        assertThat(tail.getRows()).extracting(TailRow::getText).containsExactly("0", "1", "2", "3");
+        assertThat(pending(tail)).isEmpty();
+        assertThat(ReflectionTestUtils.getField(tail, "pendingCount")).hasToString("0");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<TailRow> pending(Tail tail) {
+        return new ArrayList<>((Collection<TailRow>) ReflectionTestUtils.getField(tail, "pending"));
+    }
+
+    private static List<TailRow> rows(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> new TailRow(String.valueOf(i))).toList();
+    }
+}